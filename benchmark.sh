@@ -0,0 +1,5 @@
+#! /bin/sh
+# Runs the JMH benchmarks (compile with compile_benchmarks.sh). Arguments
+# are passed to JMH, e.g. "benchmark.sh WorldUpdate -p scenario=TUM" or
+# "benchmark.sh -h" for help.
+java -cp "benchmark/target:target:lib/*:benchmark/lib/*" org.openjdk.jmh.Main $*
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import interfaces.ConnectivityOptimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimScenario;
+
+/**
+ * Measures finding the near interfaces of every interface with
+ * {@link ConnectivityOptimizer#getNearInterfaces(NetworkInterface)} (and
+ * the allocation free visitor variant). The hosts use random waypoint
+ * movement and the world has been updated a while before the measurements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ConnectivityOptimizerBenchmark {
+	@Param({"1000", "10000"})
+	public int nrofHosts;
+
+	@Param({"ConnectivityGrid", "KdTreeOptimizer", "SweepAndPruneOptimizer"})
+	public String optimizer;
+
+	private List<NetworkInterface> interfaces;
+
+	@Setup
+	public void setUp() {
+		Scenarios.initSettingsFrom(Scenarios.groupSettings(nrofHosts,
+				"RandomWaypoint", "PassiveRouter") +
+				"Optimization.connectivityOptimizer = " + optimizer + "\n");
+		Scenarios.createWorld(100);
+
+		interfaces = new ArrayList<NetworkInterface>();
+		for (DTNHost host : SimScenario.getInstance().getHosts()) {
+			interfaces.addAll(host.getInterfaces());
+		}
+	}
+
+	@Benchmark
+	public void getNearInterfaces(Blackhole bh) {
+		for (int i = 0, n = interfaces.size(); i < n; i++) {
+			NetworkInterface ni = interfaces.get(i);
+			bh.consume(ni.getOptimizer().getNearInterfaces(ni));
+		}
+	}
+
+	@Benchmark
+	public void visitNearInterfaces(final Blackhole bh) {
+		ConnectivityOptimizer.NearInterfaceVisitor visitor =
+			new ConnectivityOptimizer.NearInterfaceVisitor() {
+				public void visit(NetworkInterface ni) {
+					bh.consume(ni);
+				}
+			};
+		for (int i = 0, n = interfaces.size(); i < n; i++) {
+			NetworkInterface ni = interfaces.get(i);
+			ni.getOptimizer().visitNearInterfaces(ni, visitor);
+		}
+	}
+}
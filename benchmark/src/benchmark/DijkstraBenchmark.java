@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link DijkstraPathFinder#getShortestPath(MapNode, MapNode)}
+ * between random node pairs of the Helsinki road map (data/roads.wkt).
+ * Every invocation computes one path and the pairs are cycled through in
+ * a fixed order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DijkstraBenchmark {
+	/** the map file */
+	public static final String MAP_FILE = "data/roads.wkt";
+	/** number of different node pairs */
+	private static final int NROF_PAIRS = 1000;
+
+	private DijkstraPathFinder pathFinder;
+	private MapNode[] froms;
+	private MapNode[] tos;
+	private int next;
+
+	@Setup
+	public void setUp() throws IOException {
+		WKTMapReader reader = new WKTMapReader(true);
+		reader.addPaths(new File(MAP_FILE), 1);
+		List<MapNode> nodes = reader.getMap().getNodes();
+
+		Random rng = new Random(1);
+		froms = new MapNode[NROF_PAIRS];
+		tos = new MapNode[NROF_PAIRS];
+		for (int i = 0; i < NROF_PAIRS; i++) {
+			froms[i] = nodes.get(rng.nextInt(nodes.size()));
+			tos[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+		pathFinder = new DijkstraPathFinder(null);
+		next = 0;
+	}
+
+	@Benchmark
+	public List<MapNode> getShortestPath() {
+		int i = next;
+		next = (i + 1) % NROF_PAIRS;
+		return pathFinder.getShortestPath(froms[i], tos[i]);
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.ExternalEvent;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading a whole external events file with
+ * {@link StandardEventsReader#readEvents(int)}. The file is generated
+ * to a temporary file and contains connection up and down events
+ * mixed with message creation events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class EventsReaderBenchmark {
+	@Param({"100000"})
+	public int nrofEvents;
+
+	private File eventsFile;
+
+	@Setup
+	public void setUp() throws IOException {
+		eventsFile = File.createTempFile("events", ".txt");
+		Random rng = new Random(1);
+		PrintWriter out = new PrintWriter(new FileWriter(eventsFile));
+		out.println("# generated by " + getClass().getName());
+		double time = 0;
+		for (int i = 0; i < nrofEvents; i++) {
+			time += rng.nextDouble();
+			int a = rng.nextInt(100);
+			int b = rng.nextInt(100);
+			if (i % 4 == 0) {
+				out.printf("%.2f C M%d p%d p%d %d\n", time, i, a, b,
+						1000 + rng.nextInt(100000));
+			} else {
+				out.printf("%.2f CONN p%d p%d %s\n", time, a, b,
+						i % 2 == 0 ? "up" : "down");
+			}
+		}
+		out.close();
+	}
+
+	@TearDown
+	public void tearDown() {
+		eventsFile.delete();
+	}
+
+	@Benchmark
+	public List<ExternalEvent> readEvents() {
+		StandardEventsReader reader = new StandardEventsReader(eventsFile);
+		List<ExternalEvent> events = reader.readEvents(nrofEvents);
+		reader.close();
+		return events;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * Measures {@link MaxPropDijkstra#getCosts(Integer, Set)} on a synthetic
+ * meeting probability graph where every node has met a random set of
+ * other nodes. The costs are computed from one node to the destinations
+ * of a buffer full of messages, like MaxProp router does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class MaxPropDijkstraBenchmark {
+	@Param({"100", "1000"})
+	public int nrofNodes;
+
+	/** how many other nodes each node has met */
+	@Param({"20"})
+	public int nrofMet;
+
+	/** how many destinations the costs are computed for */
+	@Param({"100"})
+	public int nrofTargets;
+
+	private Map<Integer, MeetingProbabilitySet> probs;
+	private Set<Integer> targets;
+
+	@Setup
+	public void setUp() {
+		Random rng = new Random(1);
+		probs = new HashMap<Integer, MeetingProbabilitySet>();
+		for (int i = 0; i < nrofNodes; i++) {
+			MeetingProbabilitySet set = new MeetingProbabilitySet(
+					MeetingProbabilitySet.INFINITE_SET_SIZE, 1.0);
+			for (int j = 0; j < nrofMet; j++) {
+				set.updateMeetingProbFor(rng.nextInt(nrofNodes),
+						rng.nextDouble() / nrofMet);
+			}
+			probs.put(i, set);
+		}
+
+		targets = new HashSet<Integer>();
+		while (targets.size() < Math.min(nrofTargets, nrofNodes - 1)) {
+			int t = 1 + rng.nextInt(nrofNodes - 1);
+			targets.add(t);
+		}
+	}
+
+	@Benchmark
+	public Map<Integer, Double> getCosts() {
+		return new MaxPropDijkstra(probs).getCosts(0, targets);
+	}
+}
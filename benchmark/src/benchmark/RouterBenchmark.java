@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import routing.ActiveRouter;
+import core.DTNHost;
+import core.Message;
+import core.SimScenario;
+
+/**
+ * Measures ActiveRouter's <CODE>tryAllMessagesToAllConnections()</CODE>
+ * with epidemic routers. All the hosts are stationary in the same location
+ * (and hence connected to each other) and they all carry replicas of the
+ * same messages, so every message is offered to every connection and
+ * rejected; no transfers are started and the state stays the same between
+ * the invocations.
+ * <P>
+ * Because nothing changes, the router skips all but the first of such
+ * attempts. {@link #tryAllMessagesToAllConnections()} forgets the
+ * previous attempt before each invocation, so every invocation runs the
+ * whole offer loop, and {@link #skipUnchangedAttempt()} measures the
+ * skipped attempts.
+ * </P>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class RouterBenchmark {
+	@Param({"10"})
+	public int nrofHosts;
+
+	@Param({"100", "1000"})
+	public int nrofMessages;
+
+	private ActiveRouter router;
+	private Method tryAll;
+	private Field failedConnections;
+
+	@Setup
+	public void setUp() throws Exception {
+		Scenarios.initSettingsFrom(Scenarios.groupSettings(nrofHosts,
+				"StationaryMovement", "EpidemicRouter"));
+		Scenarios.createWorld(1);
+
+		List<DTNHost> hosts = SimScenario.getInstance().getHosts();
+		DTNHost host = hosts.get(0);
+		for (int i = 0; i < nrofMessages; i++) {
+			Message m = new Message(host, host, "M" + i, 1000);
+			for (DTNHost h : hosts) {
+				h.createNewMessage(m.replicate());
+			}
+		}
+
+		router = (ActiveRouter)hosts.get(1).getRouter();
+		tryAll = ActiveRouter.class.getDeclaredMethod(
+				"tryAllMessagesToAllConnections");
+		tryAll.setAccessible(true);
+		failedConnections = ActiveRouter.class.getDeclaredField(
+				"failedConnections");
+		failedConnections.setAccessible(true);
+	}
+
+	@Benchmark
+	public Object tryAllMessagesToAllConnections() throws Exception {
+		failedConnections.set(router, null); // don't skip the attempt
+		return tryAll.invoke(router);
+	}
+
+	@Benchmark
+	public Object skipUnchangedAttempt() throws Exception {
+		return tryAll.invoke(router);
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+
+import core.Settings;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Helpers for setting up the simulator for the benchmarks. All paths are
+ * relative to the simulator's root directory, where the benchmarks must be
+ * run from. Every benchmark runs in its own JVM, so the static state of the
+ * simulator doesn't need to be reset between them.
+ */
+final class Scenarios {
+	/** settings files of the working day movement (WDM) scenario */
+	static final String[] WDM = {"wdm_settings/Density500.txt",
+		"benchmark/settings/wdm.txt"};
+	/** settings files of the TUM schedule movement scenario */
+	static final String[] TUM = {"group_16.txt", "accessPoints0.txt"};
+
+	private Scenarios() { }
+
+	/**
+	 * Initializes the settings from the given files (later files override
+	 * the settings of the earlier ones)
+	 * @param files The settings files
+	 */
+	static void initSettings(String[] files) {
+		Settings.init(files[0]);
+		for (int i = 1; i < files.length; i++) {
+			Settings.addSettings(files[i]);
+		}
+	}
+
+	/**
+	 * Initializes the settings from a string
+	 * @param settings The settings in properties file format
+	 */
+	static void initSettingsFrom(String settings) {
+		Settings.initFromStream(new ByteArrayInputStream(
+				settings.getBytes()));
+	}
+
+	/**
+	 * Creates the world of the scenario defined in the current settings and
+	 * runs it for the given number of updates
+	 * @param nrofUpdates How many times the world is updated
+	 * @return The world
+	 */
+	static World createWorld(int nrofUpdates) {
+		World world = SimScenario.getInstance().getWorld();
+		for (int i = 0; i < nrofUpdates; i++) {
+			world.update();
+		}
+		return world;
+	}
+
+	/**
+	 * Returns the settings for a scenario with one group of hosts that use
+	 * a simple broadcast interface
+	 * @param nrofHosts Number of hosts
+	 * @param movement Movement model of the hosts
+	 * @param router Router of the hosts
+	 * @return The settings in properties file format
+	 */
+	static String groupSettings(int nrofHosts, String movement,
+			String router) {
+		return "Scenario.name = benchmark\n" +
+			"Scenario.endTime = 100000\n" +
+			"Scenario.updateInterval = 1\n" +
+			"Scenario.simulateConnections = true\n" +
+			"Scenario.nrofHostGroups = 1\n" +
+			"MovementModel.worldSize = 3000, 3000\n" +
+			"MovementModel.rngSeed = 1\n" +
+			"Events.nrof = 0\n" +
+			"Group.groupID = n\n" +
+			"Group.nrofHosts = " + nrofHosts + "\n" +
+			"Group.movementModel = " + movement + "\n" +
+			"Group.nodeLocation = 100, 100\n" +
+			"Group.speed = 0.5, 1.5\n" +
+			"Group.waitTime = 0, 120\n" +
+			"Group.router = " + router + "\n" +
+			"Group.bufferSize = 1000M\n" +
+			"Group.nrofInterfaces = 1\n" +
+			"Group.interface1 = radio\n" +
+			"radio.type = SimpleBroadcastInterface\n" +
+			"radio.transmitRange = 10\n" +
+			"radio.transmitSpeed = 250k\n";
+	}
+}
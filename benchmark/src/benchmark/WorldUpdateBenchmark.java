@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.World;
+
+/**
+ * Measures one {@link World#update()} in the bundled working day movement
+ * and TUM schedule movement scenarios.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2G"})
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class WorldUpdateBenchmark {
+	/** number of updates run before the measurements */
+	private static final int NROF_SETUP_UPDATES = 100;
+
+	@Param({"WDM", "TUM"})
+	public String scenario;
+
+	private World world;
+
+	@Setup
+	public void setUp() {
+		Scenarios.initSettings("TUM".equals(scenario) ? Scenarios.TUM :
+			Scenarios.WDM);
+		world = Scenarios.createWorld(NROF_SETUP_UPDATES);
+	}
+
+	@Benchmark
+	public void update() {
+		world.update();
+	}
+}
@@ -0,0 +1,10 @@
+#! /bin/sh
+# Compiles the JMH benchmarks of the benchmark folder. Compile the simulator
+# first with compile.sh. JMH is not included: put jmh-core,
+# jmh-generator-annprocess and their dependencies (jopt-simple and
+# commons-math3) to benchmark/lib before compiling.
+targetdir=benchmark/target
+
+if [ ! -d "$targetdir" ]; then mkdir $targetdir; fi
+
+javac -cp "target:lib/*:benchmark/lib/*" -d $targetdir benchmark/src/benchmark/*.java
@@ -0,0 +1,41 @@
+#! /bin/sh
+# Compares the connectivity optimizers (Optimization.connectivityOptimizer)
+# in the bundled working day movement (WDM) and TUM schedule scenarios.
+# Compile first with compile.sh and run from this directory.
+# usage: optimizer_benchmark.sh [optimizer class names...]
+
+optimizers=${*:-"ConnectivityGrid KdTreeOptimizer SweepAndPruneOptimizer"}
+tmpdir=${TMPDIR:-/tmp}/optbench$$
+mkdir -p $tmpdir
+
+# settings the WDM files expect from the default settings
+cat > $tmpdir/wdm.txt <<END
+Scenario.endTime = 20000
+Events.nrof = 0
+Group.nrofInterfaces = 1
+Group.interface1 = btInterface
+btInterface.type = SimpleBroadcastInterface
+btInterface.transmitSpeed = 250k
+btInterface.transmitRange = 10
+Report.reportDir = $tmpdir
+END
+
+cat > $tmpdir/tum.txt <<END
+Scenario.endTime = 600
+Report.reportDir = $tmpdir
+END
+
+run() {
+	name=$1; shift
+	for opt in $optimizers; do
+		echo "Optimization.connectivityOptimizer = $opt" > $tmpdir/opt.txt
+		time=`java -Xmx2G -cp "target:lib/*" core.DTNSim -b 1 "$@" \
+			$tmpdir/opt.txt 2>/dev/null | grep "Simulation done in" | sed 's/.* in //'`
+		echo "$name $opt $time"
+	done
+}
+
+run WDM wdm_settings/Density2000.txt $tmpdir/wdm.txt
+run TUM group_16.txt accessPoints0.txt $tmpdir/tum.txt
+
+rm -rf $tmpdir
@@ -0,0 +1,140 @@
+#! /bin/sh
+# Runs a large scale scenario with different numbers of hosts and prints the
+# throughput (simulated seconds per wall clock second), peak heap usage and
+# garbage collection time of each run. The scenario is generated on the
+# Helsinki map: pedestrians and cars on shortest paths, random waypoint
+# walkers, a grid of stationary nodes and trams with a second, long range
+# interface. ProfilerReport's per phase and per class profiles and the
+# output of each run (scale_<hosts>_<router>.log) are left in the results
+# folder. A failed run is reported to stderr and left out of the table, and
+# the script then exits with a non-zero status. Compile first with
+# compile.sh and run from this directory.
+# usage: scale_benchmark.sh [host counts...]
+# environment: END_TIME (simulated seconds, default 300), ROUTER (default
+# EpidemicRouter), RESULTS (results folder, default scale_results) and
+# JAVA_OPTS (default -Xmx16G)
+
+sizes=${*:-"10000 50000 100000"}
+endtime=${END_TIME:-300}
+router=${ROUTER:-EpidemicRouter}
+results=${RESULTS:-scale_results}
+javaopts=${JAVA_OPTS:-"-Xmx16G"}
+tmpdir=${TMPDIR:-/tmp}/scalebench$$
+mkdir -p $tmpdir $results
+
+# group sizes: 50 % pedestrians, 20 % cars, 20 % walkers, 9 % stationary
+# and 1 % trams; one message generator per 1000 hosts, since the generators
+# take only integer intervals
+scenario() {
+	n=$1
+	awk -v n=$n -v endtime=$endtime -v router=$router -v dir=$results '
+	BEGIN {
+		trams = int(n / 100); if (trams < 1) trams = 1
+		stationary = int(n * 9 / 100)
+		cars = int(n / 5)
+		walkers = int(n / 5)
+		pedestrians = n - trams - stationary - cars - walkers
+		rows = int(sqrt(stationary * 3000 / 4000)); if (rows < 1) rows = 1
+		spacing = int(4000 / (stationary / rows + 1))
+		generators = int(n / 1000); if (generators < 1) generators = 1
+
+		print "Scenario.name = scale_" n "_" router
+		print "Scenario.simulateConnections = true"
+		print "Scenario.updateInterval = 1.0"
+		print "Scenario.endTime = " endtime
+		print "Scenario.nrofHostGroups = 5"
+
+		print "btInterface.type = SimpleBroadcastInterface"
+		print "btInterface.transmitSpeed = 250k"
+		print "btInterface.transmitRange = 10"
+		print "highspeedInterface.type = SimpleBroadcastInterface"
+		print "highspeedInterface.transmitSpeed = 10M"
+		print "highspeedInterface.transmitRange = 1000"
+
+		print "Group.movementModel = ShortestPathMapBasedMovement"
+		print "Group.router = " router
+		print "Group.bufferSize = 5M"
+		print "Group.waitTime = 0, 120"
+		print "Group.nrofInterfaces = 1"
+		print "Group.interface1 = btInterface"
+		print "Group.speed = 0.5, 1.5"
+		print "Group.msgTtl = 300"
+
+		print "Group1.groupID = p"
+		print "Group1.nrofHosts = " pedestrians
+		print "Group2.groupID = c"
+		print "Group2.okMaps = 1"
+		print "Group2.speed = 2.7, 13.9"
+		print "Group2.nrofHosts = " cars
+		print "Group3.groupID = w"
+		print "Group3.movementModel = RandomWaypoint"
+		print "Group3.nrofHosts = " walkers
+		print "Group4.groupID = s"
+		print "Group4.movementModel = GridLocation"
+		print "Group4.nrofHosts = " stationary
+		print "Group4.GridLocation.rows = " rows
+		print "Group4.GridLocation.spacing = " spacing
+		print "Group4.GridLocation.location = 300, 200"
+		print "Group4.GridLocation.randomOffset = " spacing / 2
+		print "Group5.groupID = t"
+		print "Group5.movementModel = MapRouteMovement"
+		print "Group5.routeFile = data/tram3.wkt"
+		print "Group5.routeType = 1"
+		print "Group5.waitTime = 10, 30"
+		print "Group5.speed = 7, 10"
+		print "Group5.bufferSize = 50M"
+		print "Group5.nrofInterfaces = 2"
+		print "Group5.interface2 = highspeedInterface"
+		print "Group5.nrofHosts = " trams
+
+		print "Events.nrof = " generators
+		for (i = 1; i <= generators; i++) {
+			print "Events" i ".class = MessageEventGenerator"
+			print "Events" i ".interval = 25, 35"
+			print "Events" i ".size = 50k, 500k"
+			print "Events" i ".hosts = 0, " n - 1
+			print "Events" i ".prefix = M" i "_"
+		}
+
+		print "MovementModel.rngSeed = 1"
+		print "MovementModel.worldSize = 4500, 3400"
+		print "MovementModel.warmup = 100"
+		print "MapBasedMovement.nrofMapFiles = 4"
+		print "MapBasedMovement.mapFile1 = data/roads.wkt"
+		print "MapBasedMovement.mapFile2 = data/main_roads.wkt"
+		print "MapBasedMovement.mapFile3 = data/pedestrian_paths.wkt"
+		print "MapBasedMovement.mapFile4 = data/shops.wkt"
+
+		print "Report.nrofReports = 1"
+		print "Report.warmup = 0"
+		print "Report.reportDir = " dir
+		print "Report.report1 = ProfilerReport"
+	}'
+}
+
+failed=0
+echo "hosts sim_s wall_s sim_s_per_wall_s peak_heap_mb gc_s"
+for n in $sizes; do
+	scenario $n > $tmpdir/scale.txt
+	report=$results/scale_${n}_${router}_ProfilerReport.txt
+	log=$results/scale_${n}_${router}.log
+	rm -f $report
+	java $javaopts -cp "target:lib/*" core.DTNSim -b 1 $tmpdir/scale.txt \
+		> $log 2>&1
+	status=$?
+	if [ $status -ne 0 ] || [ ! -s $report ]; then
+		echo "Run with $n hosts failed (exit status $status); see $log" >&2
+		failed=1
+		continue
+	fi
+	awk -v n=$n '
+		/^sim_time:/ { sim = $2 }
+		/^wall_time:/ { wall = $2 }
+		/^sim_s_per_wall_s:/ { rate = $2 }
+		/^peak_heap_mb:/ { heap = $2 }
+		/^gc_time:/ { gc = $2 }
+		END { print n, sim, wall, rate, heap, gc }' $report
+done
+
+rm -rf $tmpdir
+exit $failed
@@ -0,0 +1,607 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import input.EventQueue;
+import input.ExternalEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import util.LongHashMap;
+
+/**
+ * <P>Event driven contact detection. Instead of checking the distances of
+ * near interfaces on every update, this engine follows the linear
+ * trajectories of the hosts towards their current destinations and computes
+ * the exact times when each pair of interfaces gets in and out of range.
+ * Connections are created and torn down at those times as external events,
+ * independently of the update interval.</P>
+ *
+ * <P>The trajectories are learned from the movement listener calls that the
+ * hosts make when they get a new destination. The trajectory of such host
+ * starts from its location in the beginning of the next update, when also
+ * the predictions of its pairs are recomputed. After reaching its
+ * destination, a host is expected to stay in place until it gets a new
+ * destination.</P>
+ *
+ * <P>Only pairs of hosts that can get in range soon are predicted. Each
+ * recomputed host gets a prediction window that lasts until it has moved
+ * at most one grid cell (the cell size is the longest transmit range) or
+ * {@value #MAX_WINDOW} seconds have passed, and the host is put into the
+ * cells its trajectory covers during the window. The candidates for a pair
+ * are the hosts in the nearby cells whose windows' areas are within the
+ * range and the hosts that are currently connected. At the end of the
+ * window, the host's predictions are recomputed for a new window (already
+ * before the end when no connection changes happen before it, so the
+ * window ends are not seen as external events). Hosts that are not moving
+ * have a window without an end.</P>
+ *
+ * <P><strong>Note:</strong> only path based movement (where the hosts get
+ * new destinations through {@link DTNHost#move(double)}) and interfaces that
+ * are always active are supported. Changes in the interfaces' transmit
+ * ranges are not noticed. The hosts' updates still update the state of
+ * the existing connections (see {@link NetworkInterface#updateConnections()}),
+ * but interfaces that need polling for that are not supported.</P>
+ */
+public class ContactPredictionEngine implements EventQueue,
+		MovementListener {
+	/** Maximum length of a prediction window (seconds) */
+	public static final double MAX_WINDOW = 60;
+
+	/** all hosts in the simulation, indexed by their addresses */
+	private DTNHost[] hosts;
+	/** starting time of the current trajectory of each host */
+	private double[] startTimes;
+	/** location at the start of the current trajectory of each host */
+	private double[] startXs, startYs;
+	/** velocity of each host */
+	private double[] velXs, velYs;
+	/** time when each host reaches its destination */
+	private double[] endTimes;
+	/** current destination of each host */
+	private double[] destXs, destYs;
+	/** current speed of each host */
+	private double[] speeds;
+	/** trajectory version of each host; increased on every recompute */
+	private int[] versions;
+	/** hosts whose trajectory has changed since the latest recompute */
+	private boolean[] dirty;
+	private List<DTNHost> dirtyHosts;
+	/** predicted connection state changes */
+	private PriorityQueue<ContactEvent> events;
+	/** number of created events (used for ordering same time events) */
+	private long eventCounter;
+
+	/** longest transmit range of all interfaces */
+	private double maxRange;
+	/** side length of the grid cells */
+	private double cellSize;
+	/** addresses of the hosts whose window's area overlaps each cell */
+	private LongHashMap<List<Integer>> cells;
+	/** is each host in the grid */
+	private boolean[] inGrid;
+	/** bounding box of each host's trajectory during its window */
+	private double[] minXs, minYs, maxXs, maxYs;
+	/** hosts whose predictions are being recomputed */
+	private boolean[] pending;
+	/** the recompute number when each host was last predicted with the
+	 * host being recomputed (for skipping duplicate candidates) */
+	private int[] checked;
+	private int checkCount;
+
+	/**
+	 * Creates a new contact prediction engine for the given hosts
+	 * @param hosts All hosts in the simulation
+	 * @throws SettingsError if some host has an interface whose activeness
+	 * is not static or that must be updated by polling
+	 */
+	public ContactPredictionEngine(List<DTNHost> hosts) {
+		int maxAddress = -1;
+		this.maxRange = 0;
+		for (DTNHost h : hosts) {
+			if (!h.hasStaticActiveness()) {
+				throw new SettingsError("Contact prediction does not " +
+						"support interface activity times, scan intervals, " +
+						"or energy models (host " + h + ")");
+			}
+			maxAddress = Math.max(maxAddress, h.getAddress());
+			for (NetworkInterface ni : h.getInterfaces()) {
+				if (ni.requiresPolling()) {
+					throw new SettingsError("Contact prediction does not " +
+							"support interface " + ni + " (host " + h + ")");
+				}
+				maxRange = Math.max(maxRange, ni.getTransmitRange());
+			}
+			h.setContactsPredicted(true);
+		}
+
+		int n = maxAddress + 1;
+		this.hosts = new DTNHost[n];
+		this.startTimes = new double[n];
+		this.startXs = new double[n];
+		this.startYs = new double[n];
+		this.velXs = new double[n];
+		this.velYs = new double[n];
+		this.endTimes = new double[n];
+		this.destXs = new double[n];
+		this.destYs = new double[n];
+		this.speeds = new double[n];
+		this.versions = new int[n];
+		this.dirty = new boolean[n];
+		this.dirtyHosts = new ArrayList<DTNHost>();
+		this.events = new PriorityQueue<ContactEvent>();
+		this.eventCounter = 0;
+		this.cellSize = maxRange > 0 ? maxRange : 1;
+		this.cells = new LongHashMap<List<Integer>>();
+		this.inGrid = new boolean[n];
+		this.minXs = new double[n];
+		this.minYs = new double[n];
+		this.maxXs = new double[n];
+		this.maxYs = new double[n];
+		this.pending = new boolean[n];
+		this.checked = new int[n];
+		this.checkCount = 0;
+
+		for (DTNHost h : hosts) {
+			this.hosts[h.getAddress()] = h;
+			initialLocation(h, h.getLocation());
+		}
+	}
+
+	private void markDirty(DTNHost host) {
+		int i = host.getAddress();
+		if (!dirty[i]) {
+			dirty[i] = true;
+			dirtyHosts.add(host);
+		}
+	}
+
+	public void initialLocation(DTNHost host, Coord location) {
+		newDestination(host, location, 0);
+	}
+
+	public void newDestination(DTNHost host, Coord destination,
+			double speed) {
+		int i = host.getAddress();
+		destXs[i] = destination.getX();
+		destYs[i] = destination.getY();
+		speeds[i] = speed;
+		markDirty(host);
+	}
+
+	/**
+	 * Starts a new trajectory for the host from its current location towards
+	 * its current destination. The host then moves exactly along the
+	 * trajectory until it gets a new destination.
+	 * @param i Address of the host
+	 * @param now The current time
+	 */
+	private void setTrajectory(int i, double now) {
+		Coord loc = hosts[i].getLocation();
+		double dx = destXs[i] - loc.getX();
+		double dy = destYs[i] - loc.getY();
+		double dist = Math.sqrt(dx*dx + dy*dy);
+
+		startTimes[i] = now;
+		startXs[i] = loc.getX();
+		startYs[i] = loc.getY();
+		if (dist > 0 && speeds[i] > 0) {
+			velXs[i] = dx * speeds[i] / dist;
+			velYs[i] = dy * speeds[i] / dist;
+			endTimes[i] = now + dist / speeds[i];
+		} else {
+			velXs[i] = 0;
+			velYs[i] = 0;
+			endTimes[i] = now;
+		}
+	}
+
+	public double nextEventsTime() {
+		if (!dirtyHosts.isEmpty()) {
+			double now = SimClock.getTime();
+			List<Integer> changed = new ArrayList<Integer>(dirtyHosts.size());
+			for (DTNHost h : dirtyHosts) {
+				setTrajectory(h.getAddress(), now);
+				dirty[h.getAddress()] = false;
+				changed.add(h.getAddress());
+			}
+			dirtyHosts.clear();
+			recompute(changed, now);
+		}
+
+		ContactEvent ev = events.peek();
+		while (ev != null && (!ev.isValid() || ev.isWindowEnd())) {
+			events.poll();
+			if (ev.isValid()) {
+				/* no connection changes before the end of the window, so the
+				 * next window can be started already */
+				List<Integer> ended = new ArrayList<Integer>(1);
+				ended.add(ev.a);
+				recompute(ended, ev.getTime());
+			}
+			ev = events.peek();
+		}
+		return ev == null ? Double.MAX_VALUE : ev.getTime();
+	}
+
+	public ExternalEvent nextEvent() {
+		double time = nextEventsTime();
+		if (time == Double.MAX_VALUE) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+
+		/* handle all the state changes of the same time in one event */
+		List<ContactEvent> batch = new ArrayList<ContactEvent>();
+		while (!events.isEmpty() && events.peek().getTime() == time) {
+			ContactEvent ev = events.poll();
+			if (ev.isValid()) {
+				batch.add(ev);
+			}
+		}
+		return new ContactBatchEvent(time, batch);
+	}
+
+	/**
+	 * Starts new prediction windows for hosts and recomputes the
+	 * predictions of all their pairs that can change state during the
+	 * windows
+	 * @param recomputed Addresses of the hosts
+	 * @param now The current time
+	 */
+	private void recompute(List<Integer> recomputed, double now) {
+		for (int a : recomputed) {
+			versions[a]++;
+			setWindow(a, now);
+			pending[a] = true;
+		}
+
+		for (int a : recomputed) {
+			checkCount++;
+			for (NetworkInterface ia : hosts[a].getInterfaces()) {
+				for (Connection con : ia.getConnections()) {
+					predictHosts(a, con.getOtherNode(hosts[a]).getAddress(),
+							now);
+				}
+			}
+			for (int cx = cell(minXs[a] - maxRange),
+					maxCx = cell(maxXs[a] + maxRange); cx <= maxCx; cx++) {
+				for (int cy = cell(minYs[a] - maxRange),
+						maxCy = cell(maxYs[a] + maxRange); cy <= maxCy; cy++) {
+					List<Integer> hostsInCell = cells.get(key(cx, cy));
+					if (hostsInCell == null) {
+						continue;
+					}
+					for (int b : hostsInCell) {
+						if (isNear(a, b)) {
+							predictHosts(a, b, now);
+						}
+					}
+				}
+			}
+		}
+
+		for (int a : recomputed) {
+			pending[a] = false;
+		}
+	}
+
+	/**
+	 * Recomputes the predictions of all interface pairs of two hosts (unless
+	 * they were already recomputed)
+	 */
+	private void predictHosts(int a, int b, double now) {
+		if (b == a || checked[b] == checkCount || (pending[b] && b < a)) {
+			return; /* pairs of recomputed hosts are computed once */
+		}
+		checked[b] = checkCount;
+
+		for (NetworkInterface ia : hosts[a].getInterfaces()) {
+			for (NetworkInterface ib : hosts[b].getInterfaces()) {
+				if (ia.getTransmitRange() > 0 && ia.getInterfaceType()
+						.equals(ib.getInterfaceType())) {
+					predictPair(ia, a, ib, b, now);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts a new prediction window for a host: moves the host to the grid
+	 * cells of the window's area and schedules the end of the window.
+	 * The area covers the trajectory from the current simulation time,
+	 * which is earlier than the start of the window when the window is
+	 * started in advance.
+	 * @param a Address of the host
+	 * @param now Start time of the window
+	 */
+	private void setWindow(int a, double now) {
+		removeFromGrid(a);
+
+		double end = Double.MAX_VALUE;
+		if (endTimes[a] > now) {
+			double length = Math.min(MAX_WINDOW, cellSize / speeds[a]);
+			if (now + length < endTimes[a]) {
+				end = now + length;
+			}
+		}
+
+		/* the trajectory is linear until the end of the window */
+		double from = Math.min(now, SimClock.getTime());
+		minXs[a] = Math.min(getX(a, from), getX(a, end));
+		maxXs[a] = Math.max(getX(a, from), getX(a, end));
+		minYs[a] = Math.min(getY(a, from), getY(a, end));
+		maxYs[a] = Math.max(getY(a, from), getY(a, end));
+		for (int cx = cell(minXs[a]); cx <= cell(maxXs[a]); cx++) {
+			for (int cy = cell(minYs[a]); cy <= cell(maxYs[a]); cy++) {
+				List<Integer> hostsInCell = cells.get(key(cx, cy));
+				if (hostsInCell == null) {
+					hostsInCell = new ArrayList<Integer>(4);
+					cells.put(key(cx, cy), hostsInCell);
+				}
+				hostsInCell.add(a);
+			}
+		}
+		inGrid[a] = true;
+
+		if (end < Double.MAX_VALUE) {
+			events.add(new ContactEvent(end, eventCounter++, a));
+		}
+	}
+
+	private void removeFromGrid(int a) {
+		if (!inGrid[a]) {
+			return;
+		}
+		for (int cx = cell(minXs[a]); cx <= cell(maxXs[a]); cx++) {
+			for (int cy = cell(minYs[a]); cy <= cell(maxYs[a]); cy++) {
+				List<Integer> hostsInCell = cells.get(key(cx, cy));
+				hostsInCell.remove(Integer.valueOf(a));
+				if (hostsInCell.isEmpty()) {
+					cells.remove(key(cx, cy));
+				}
+			}
+		}
+		inGrid[a] = false;
+	}
+
+	/**
+	 * Returns true if the areas of two hosts' windows are within the
+	 * longest transmit range from each other
+	 */
+	private boolean isNear(int a, int b) {
+		double gapX = Math.max(0, Math.max(minXs[a] - maxXs[b],
+				minXs[b] - maxXs[a]));
+		double gapY = Math.max(0, Math.max(minYs[a] - maxYs[b],
+				minYs[b] - maxYs[a]));
+		return gapX*gapX + gapY*gapY <= maxRange*maxRange;
+	}
+
+	private int cell(double coordinate) {
+		return (int)Math.floor(coordinate / cellSize);
+	}
+
+	private static long key(int cx, int cy) {
+		return ((long)cx << 32) | (cy & 0xffffffffL);
+	}
+
+	/**
+	 * Fixes the current connection state of a pair of interfaces (if
+	 * needed) and schedules the next change of the state
+	 */
+	private void predictPair(NetworkInterface ia, int a, NetworkInterface ib,
+			int b, double now) {
+		double range = Math.min(ia.getTransmitRange(),
+				ib.getTransmitRange());
+		double dx = getX(a, now) - getX(b, now);
+		double dy = getY(a, now) - getY(b, now);
+		double c = dx*dx + dy*dy - range*range;
+		boolean inRange = c < 0;
+		if (c == 0) {
+			/* exactly at the range: in range unless moving away (like when
+			 * a predicted change happens at this time) */
+			double wx = (now < endTimes[a] ? velXs[a] : 0) -
+				(now < endTimes[b] ? velXs[b] : 0);
+			double wy = (now < endTimes[a] ? velYs[a] : 0) -
+				(now < endTimes[b] ? velYs[b] : 0);
+			inRange = dx*wx + dy*wy <= 0;
+		}
+
+		if (inRange != ia.isConnected(ib)) {
+			schedule(now, ia, a, ib, b, inRange);
+		} else {
+			scheduleNext(ia, a, ib, b, now, inRange);
+		}
+	}
+
+	/**
+	 * Schedules the next time when the range state of the pair changes
+	 * from the given state, if such time exists
+	 */
+	private void scheduleNext(NetworkInterface ia, int a, NetworkInterface ib,
+			int b, double now, boolean inRange) {
+		double range = Math.min(ia.getTransmitRange(),
+				ib.getTransmitRange());
+		double time = nextChange(a, b, now, range, inRange);
+		if (time < Double.MAX_VALUE) {
+			schedule(time, ia, a, ib, b, !inRange);
+		}
+	}
+
+	private void schedule(double time, NetworkInterface ia, int a,
+			NetworkInterface ib, int b, boolean up) {
+		events.add(new ContactEvent(time, eventCounter++, ia, a, ib, b, up));
+	}
+
+	/**
+	 * Computes the first time after the given time when the two hosts get
+	 * in range (if they are not in range now) or out of range (if they are)
+	 * @param a Address of the first host
+	 * @param b Address of the second host
+	 * @param now The time to start from
+	 * @param range Range of the connection
+	 * @param inRange Are the hosts in range at the moment
+	 * @return Time of the next change or Double.MAX_VALUE if the state
+	 * never changes
+	 */
+	private double nextChange(int a, int b, double now, double range,
+			boolean inRange) {
+		/* the relative motion is linear between the end times */
+		double ea = endTimes[a];
+		double eb = endTimes[b];
+		double[] limits = {Math.min(ea, eb), Math.max(ea, eb),
+				Double.MAX_VALUE};
+		double start = now;
+
+		for (double end : limits) {
+			if (end <= start) {
+				continue;
+			}
+			double dx = getX(a, start) - getX(b, start);
+			double dy = getY(a, start) - getY(b, start);
+			double wx = (start < ea ? velXs[a] : 0) -
+				(start < eb ? velXs[b] : 0);
+			double wy = (start < ea ? velYs[a] : 0) -
+				(start < eb ? velYs[b] : 0);
+			double c = dx*dx + dy*dy - range*range;
+
+			if (start > now && (c <= 0) != inRange) {
+				return start; /* rounding error at a speed change */
+			}
+
+			double qa = wx*wx + wy*wy;
+			double qb = 2 * (dx*wx + dy*wy);
+			double disc = qb*qb - 4*qa*c;
+			if (qa > 0 && disc > 0) {
+				double root = Math.sqrt(disc);
+				double t = inRange ? (-qb + root) / (2*qa) :
+					(-qb - root) / (2*qa);
+				if (t > 0 && start + t < end) {
+					return start + t;
+				}
+			}
+			start = end;
+		}
+
+		return Double.MAX_VALUE;
+	}
+
+	private double getX(int i, double time) {
+		double t = Math.min(Math.max(time, startTimes[i]), endTimes[i]);
+		return startXs[i] + velXs[i] * (t - startTimes[i]);
+	}
+
+	private double getY(int i, double time) {
+		double t = Math.min(Math.max(time, startTimes[i]), endTimes[i]);
+		return startYs[i] + velYs[i] * (t - startTimes[i]);
+	}
+
+	/**
+	 * A predicted change in the connection state of a pair of interfaces
+	 * or the end of a host's prediction window
+	 */
+	private class ContactEvent implements Comparable<ContactEvent> {
+		private double time;
+		private long order;
+		private NetworkInterface ia, ib;
+		private int a, b;
+		private int versionA, versionB;
+		private boolean up;
+
+		public ContactEvent(double time, long order, NetworkInterface ia,
+				int a, NetworkInterface ib, int b, boolean up) {
+			this.time = time;
+			this.order = order;
+			this.ia = ia;
+			this.a = a;
+			this.ib = ib;
+			this.b = b;
+			this.versionA = versions[a];
+			this.versionB = versions[b];
+			this.up = up;
+		}
+
+		/**
+		 * Creates an event for the end of a host's prediction window
+		 */
+		public ContactEvent(double time, long order, int a) {
+			this(time, order, null, a, null, a, false);
+		}
+
+		public double getTime() {
+			return this.time;
+		}
+
+		/**
+		 * Returns true if neither of the hosts has changed its trajectory
+		 * after this event was predicted
+		 */
+		public boolean isValid() {
+			return versionA == versions[a] && versionB == versions[b];
+		}
+
+		/**
+		 * Returns true if this is the end of a prediction window
+		 */
+		public boolean isWindowEnd() {
+			return ia == null;
+		}
+
+		/**
+		 * Changes the connection state and schedules the next change
+		 */
+		public void process() {
+			if (up) {
+				ia.createConnection(ib);
+			} else {
+				ia.destroyConnection(ib);
+			}
+			scheduleNext(ia, a, ib, b, time, up);
+		}
+
+		public int compareTo(ContactEvent other) {
+			if (this.time != other.time) {
+				return this.time < other.time ? -1 : 1;
+			}
+			return this.order < other.order ? -1 :
+				(this.order > other.order ? 1 : 0);
+		}
+	}
+
+	/**
+	 * External event that changes the connection states of all the pairs
+	 * whose state changes at the same time
+	 */
+	private class ContactBatchEvent extends ExternalEvent {
+		private static final long serialVersionUID = 42L;
+		private List<ContactEvent> batch;
+
+		public ContactBatchEvent(double time, List<ContactEvent> batch) {
+			super(time);
+			this.batch = batch;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			List<Integer> windowEnds = new ArrayList<Integer>();
+			for (ContactEvent ev : batch) {
+				if (ev.isWindowEnd()) {
+					windowEnds.add(ev.a);
+				} else {
+					ev.process();
+				}
+			}
+			if (!windowEnds.isEmpty()) {
+				recompute(windowEnds, this.time);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "CONTACTS @" + this.time + " " + batch.size() + " changes";
+		}
+	}
+}
@@ -6,7 +6,9 @@ package core;
 
 /**
  * Class to hold 2D coordinates and perform simple arithmetics and
- * transformations
+ * transformations. Subclasses may keep the coordinates elsewhere (see
+ * {@link HostPositions}) by overriding the getters, {@link #translate} and
+ * {@link #setLocation(double, double)}.
  */
 public class Coord implements Cloneable, Comparable<Coord> {
 	private double x;
@@ -19,7 +21,8 @@ public class Coord implements Cloneable, Comparable<Coord> {
 	 * @param y Initial Y-coordinate
 	 */
 	public Coord(double x, double y) {
-		setLocation(x, y);
+		this.x = x;
+		this.y = y;
 	}
 
 	/**
@@ -40,8 +43,7 @@ public class Coord implements Cloneable, Comparable<Coord> {
 	 * @param c The other coordinate
 	 */
 	public void setLocation(Coord c) {
-		this.x = c.x;
-		this.y = c.y;
+		setLocation(c.getX(), c.getY());
 	}
 
 	/**
@@ -62,8 +64,8 @@ public class Coord implements Cloneable, Comparable<Coord> {
 	 * @return The distance between this and another coordinate
 	 */
 	public double distance(Coord other) {
-		double dx = this.x - other.x;
-		double dy = this.y - other.y;
+		double dx = getX() - other.getX();
+		double dy = getY() - other.getY();
 
 		return Math.sqrt(dx * dx + dy * dy);
 	}
@@ -92,7 +94,7 @@ public class Coord implements Cloneable, Comparable<Coord> {
 	 * @return a text representation of the coordinate
 	 */
 	public String toString() {
-		return String.format("(%.14f,%.14f)", x, y);
+		return String.format("(%.14f,%.14f)", getX(), getY());
 	}
 
 	/**
@@ -119,7 +121,8 @@ public class Coord implements Cloneable, Comparable<Coord> {
 		if (c == this) {
 			return true;
 		} else {
-			return (x == c.x && y == c.y); // XXX: == for doubles...
+			// XXX: == for doubles...
+			return (getX() == c.getX() && getY() == c.getY());
 		}
 	}
 
@@ -135,7 +138,7 @@ public class Coord implements Cloneable, Comparable<Coord> {
 	 * (actually a hash of the String made of the coordinates)
 	 */
 	public int hashCode() {
-		return (x + "," + y).hashCode();
+		return (getX() + "," + getY()).hashCode();
 	}
 
 	/**
@@ -147,13 +150,16 @@ public class Coord implements Cloneable, Comparable<Coord> {
 	 *         after the other coordinate
 	 */
 	public int compareTo(Coord other) {
-		if (this.y < other.y) {
+		double x = getX(), y = getY();
+		double otherX = other.getX(), otherY = other.getY();
+
+		if (y < otherY) {
 			return -1;
-		} else if (this.y > other.y) {
+		} else if (y > otherY) {
 			return 1;
-		} else if (this.x < other.x) {
+		} else if (x < otherX) {
 			return -1;
-		} else if (this.x > other.x) {
+		} else if (x > otherX) {
 			return 1;
 		} else {
 			return 0;
@@ -22,7 +22,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	private static int nextAddress = 0;
 	private int address;
 
-	private Coord location; 	// where is the host
+	private Coord location; 	// where is the host (view to HostPositions)
 	private Coord destination;	// where is it going
 
 	private MessageRouter router;
@@ -36,6 +36,18 @@ public class DTNHost implements Comparable<DTNHost> {
 	private List<MovementListener> movListeners;
 	private List<NetworkInterface> net;
 	private ModuleCommunicationBus comBus;
+	/** is the next move computed by {@link #prepareMove(double)} */
+	private boolean movePrepared;
+	private double preparedDx, preparedDy;
+	/** location of the node at the end of the last update */
+	private double updatedX, updatedY;
+	/** message state version of the router at the end of the last update */
+	private int updatedMessageVersion;
+	/** have the connections changed since the last update */
+	private boolean changedSinceUpdate;
+	/** are the connections created and torn down by predicted contact
+	 * events instead of the interfaces' updates */
+	private boolean contactsPredicted;
 
 	static {
 		DTNSim.registerForReset(DTNHost.class.getCanonicalName());
@@ -57,8 +69,10 @@ public class DTNHost implements Comparable<DTNHost> {
 			ModuleCommunicationBus comBus,
 			MovementModel mmProto, MessageRouter mRouterProto) {
 		this.comBus = comBus;
-		this.location = new Coord(0,0);
 		this.address = getNextAddress();
+		HostPositions.ensureCapacity(address);
+		HostPositions.setLocation(address, 0, 0);
+		this.location = HostPositions.view(address);
 		this.groupId = groupId;
 		this.name = groupId+address;
 		this.net = new ArrayList<NetworkInterface>();
@@ -81,10 +95,15 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.movement.setHost(this);
 		setRouter(mRouterProto.replicate());
 
-		this.location = movement.getInitialLocation();
+		Coord initialLocation = movement.getInitialLocation();
+		if (initialLocation != null) {
+			HostPositions.setLocation(address, initialLocation.getX(),
+					initialLocation.getY());
+		}
 
 		this.nextTimeToMove = movement.nextPathAvailable();
 		this.path = null;
+		this.changedSinceUpdate = true;
 
 		if (movLs != null) { // inform movement listeners about the location
 			for (MovementListener l : movLs) {
@@ -167,10 +186,12 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param con  The connection object whose state changed
 	 */
 	public void connectionUp(Connection con) {
+		this.changedSinceUpdate = true;
 		this.router.changedConnection(con);
 	}
 
 	public void connectionDown(Connection con) {
+		this.changedSinceUpdate = true;
 		this.router.changedConnection(con);
 	}
 
@@ -189,7 +210,8 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 	/**
-	 * Returns the current location of this host.
+	 * Returns the current location of this host. The location is a view to
+	 * {@link HostPositions}: it follows the host when the host moves.
 	 * @return The location
 	 */
 	public Coord getLocation() {
@@ -207,11 +229,15 @@ public class DTNHost implements Comparable<DTNHost> {
 
 
 	/**
-	 * Sets the Node's location overriding any location set by movement model
+	 * Sets the Node's location overriding any location set by movement model.
+	 * The location objects returned by {@link #getLocation()} before this
+	 * call keep the old location.
 	 * @param location The location to set
 	 */
 	public void setLocation(Coord location) {
-		this.location = location.clone();
+		HostPositions.detach(this.location);
+		HostPositions.setLocation(address, location.getX(), location.getY());
+		this.location = HostPositions.view(address);
 	}
 
 	/**
@@ -334,18 +360,76 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param simulateConnections Should network layer be updated too
 	 */
 	public void update(boolean simulateConnections) {
+		update(simulateConnections, null);
+	}
+
+	/**
+	 * Updates node's network layer and router and records the time spent
+	 * in the interface and router updates to the given profiler.
+	 * @param simulateConnections Should network layer be updated too
+	 * @param profiler The profiler or null if the updates are not profiled
+	 */
+	public void update(boolean simulateConnections, SimProfiler profiler) {
 		if (!isRadioActive()) {
 			// Make sure inactive nodes don't have connections
 			tearDownAllConnections();
 			return;
 		}
 
-		if (simulateConnections) {
+		if (simulateConnections || this.contactsPredicted) {
 			for (NetworkInterface i : net) {
-				i.update();
+				long start = profiler != null ? System.nanoTime() : 0;
+				long bytes = profiler != null ? profiler.getAllocatedBytes() : 0;
+				if (simulateConnections) {
+					i.update();
+				}
+				else { // connections are created by contact events
+					i.updateConnections();
+				}
+				if (profiler != null) {
+					profiler.addInterfaceTime(i, System.nanoTime() - start,
+							profiler.getAllocatedBytes() - bytes);
+				}
 			}
 		}
+		long start = profiler != null ? System.nanoTime() : 0;
+		long bytes = profiler != null ? profiler.getAllocatedBytes() : 0;
 		this.router.update();
+		if (profiler != null) {
+			profiler.addRouterTime(this.router, System.nanoTime() - start,
+					profiler.getAllocatedBytes() - bytes);
+		}
+
+		this.updatedX = HostPositions.getX(address);
+		this.updatedY = HostPositions.getY(address);
+		this.updatedMessageVersion = this.router.getMessageStateVersion();
+		this.changedSinceUpdate = false;
+	}
+
+	/**
+	 * Returns true if updating this node would not change anything: the
+	 * node hasn't moved, its connections and messages haven't changed since
+	 * the last update, it has no connections, and its router is idle (see
+	 * {@link MessageRouter#isIdle()}). A new connection to an idle node can
+	 * only be found by the other (moving) node, so skipping the idle nodes'
+	 * updates is possible only if all nodes look for new connections on
+	 * every update (see {@link #hasStaticActiveness()}).
+	 * @return true if the node is idle
+	 */
+	boolean isIdle() {
+		if (this.changedSinceUpdate ||
+				HostPositions.getX(address) != this.updatedX ||
+				HostPositions.getY(address) != this.updatedY ||
+				this.router.getMessageStateVersion() !=
+					this.updatedMessageVersion) {
+			return false;
+		}
+		for (int i=0, n = net.size(); i < n; i++) {
+			if (net.get(i).getConnections().size() > 0) {
+				return false;
+			}
+		}
+		return this.router.isIdle();
 	}
 
 	/**
@@ -389,24 +473,112 @@ public class DTNHost implements Comparable<DTNHost> {
 		}
 
 		possibleMovement = timeIncrement * speed;
-		distance = this.location.distance(this.destination);
+		distance = HostPositions.distance(address, this.destination);
 
 		while (possibleMovement >= distance) {
 			// node can move past its next destination
-			this.location.setLocation(this.destination); // snap to destination
+			HostPositions.setLocation(address, this.destination.getX(),
+					this.destination.getY()); // snap to destination
 			possibleMovement -= distance;
 			if (!setNextWaypoint()) { // get a new waypoint
 				return; // no more waypoints left
 			}
-			distance = this.location.distance(this.destination);
+			distance = HostPositions.distance(address, this.destination);
 		}
 
 		// move towards the point for possibleMovement amount
 		dx = (possibleMovement/distance) * (this.destination.getX() -
-				this.location.getX());
+				HostPositions.getX(address));
 		dy = (possibleMovement/distance) * (this.destination.getY() -
-				this.location.getY());
-		this.location.translate(dx, dy);
+				HostPositions.getY(address));
+		HostPositions.translate(address, dx, dy);
+	}
+
+	/**
+	 * Computes the next move of the node without changing any state that
+	 * is visible outside this node. Only moves that don't reach the current
+	 * destination are computed; the rest are left for
+	 * {@link #commitMove(double)}. Used in the parallel compute phase of
+	 * the world update.
+	 * @param timeIncrement How long time the node moves
+	 */
+	void prepareMove(double timeIncrement) {
+		this.movePrepared = false;
+
+		if (this.destination == null ||
+				SimClock.getTime() < this.nextTimeToMove) {
+			return;
+		}
+
+		double possibleMovement = timeIncrement * speed;
+		double distance = HostPositions.distance(address, this.destination);
+		if (possibleMovement >= distance) {
+			return; /* needs a new waypoint */
+		}
+
+		this.preparedDx = (possibleMovement/distance) *
+			(this.destination.getX() - HostPositions.getX(address));
+		this.preparedDy = (possibleMovement/distance) *
+			(this.destination.getY() - HostPositions.getY(address));
+		this.movePrepared = true;
+	}
+
+	/**
+	 * Moves the node using the move computed by
+	 * {@link #prepareMove(double)} or, if it wasn't computed, as
+	 * {@link #move(double)} would. The result is always the same as with
+	 * {@link #move(double)}.
+	 * @param timeIncrement How long time the node moves
+	 */
+	void commitMove(double timeIncrement) {
+		if (!this.movePrepared) {
+			move(timeIncrement);
+			return;
+		}
+
+		this.movePrepared = false;
+		if (isMovementActive()) {
+			HostPositions.translate(address, this.preparedDx, this.preparedDy);
+		}
+	}
+
+	/**
+	 * Returns true if all network interfaces of this node have
+	 * static activeness
+	 * @return true if the activeness of this node can't change
+	 * @see NetworkInterface#hasStaticActiveness()
+	 */
+	boolean hasStaticActiveness() {
+		for (NetworkInterface i : net) {
+			if (!i.hasStaticActiveness()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sets whether the connections of this node are created and torn down
+	 * by predicted contact events. If so, the updates of the node update
+	 * only the existing connections of the interfaces when connections are
+	 * not simulated otherwise.
+	 * @param contactsPredicted Are the contacts predicted
+	 * @see ContactPredictionEngine
+	 * @see NetworkInterface#updateConnections()
+	 */
+	void setContactsPredicted(boolean contactsPredicted) {
+		this.contactsPredicted = contactsPredicted;
+	}
+
+	/**
+	 * Prepares the next update of all network interfaces of this node.
+	 * Used in the parallel compute phase of the world update.
+	 * @see NetworkInterface#prepareUpdate()
+	 */
+	void prepareUpdate() {
+		for (NetworkInterface i : net) {
+			i.prepareUpdate();
+		}
 	}
 
 	/**
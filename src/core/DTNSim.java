@@ -6,9 +6,19 @@ package core;
 
 import gui.DTNSimGUI;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ui.DTNSimTextUI;
 
@@ -23,6 +33,12 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/**
+	 * If this option ({@value}) is given right after the number of batch
+	 * runs, the batch runs are run concurrently. The option must be followed
+	 * by the number of runs to run at the same time.
+	 */
+	public static final String CONCURRENT_RUNS_FLAG = "-j";
 
 	/**
 	 * Name of the static method that all resettable classes must have
@@ -43,6 +59,9 @@ public class DTNSim {
 	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings
 	 * files for the simulation run (if any). For GUI mode, the number before
 	 * settings files (if given) is the run index to use for that run.
+	 * In batch mode, the number of runs can be followed by
+	 * {@link #CONCURRENT_RUNS_FLAG} and the number of runs to run
+	 * concurrently (see {@link #runConcurrently(String[], int, int[], int)}).
 	 * 
 	 * @param args Command line arguments
 	 */
@@ -52,6 +71,7 @@ public class DTNSim {
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		int nrofConcurrentRuns = 1;
 
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
@@ -64,6 +84,11 @@ public class DTNSim {
 				} else {
 					nrofRuns = parseNrofRuns(args[1]);
 					firstConfIndex = 2;
+					if (args.length > 3 &&
+							args[2].equals(CONCURRENT_RUNS_FLAG)) {
+						nrofConcurrentRuns = parseNrofConcurrentRuns(args[3]);
+						firstConfIndex = 4;
+					}
 				}
 			} else { /* GUI mode */
 				try { /* is there a run index for the GUI mode ? */
@@ -78,6 +103,12 @@ public class DTNSim {
 			confFiles = new String[] { null };
 		}
 
+		if (batchMode && nrofConcurrentRuns > 1) {
+			runConcurrently(confFiles, firstConfIndex, nrofRuns,
+					nrofConcurrentRuns);
+			return;
+		}
+
 		initSettings(confFiles, firstConfIndex);
 
 		if (batchMode) {
@@ -96,6 +127,135 @@ public class DTNSim {
 		}
 	}
 
+	/**
+	 * Runs the given range of batch runs so that (at most) the given number
+	 * of runs are running at the same time. Since the simulator keeps its
+	 * state in static fields, every run is run in an isolated context: all
+	 * the classes of the simulator are loaded again by a separate class
+	 * loader for each run. Hence the runs don't share any state and each
+	 * run produces the same results as it would in a sequential batch run.
+	 * 
+	 * @param confFiles      The command line arguments
+	 * @param firstConfIndex Index of the first config file name
+	 * @param nrofRuns       The first and (last_run_index - 1)
+	 * @param nrofThreads    How many runs to run at the same time
+	 */
+	private static void runConcurrently(final String[] confFiles,
+			final int firstConfIndex, int[] nrofRuns, int nrofThreads) {
+		final URL[] classPath = getClassPath();
+		final int lastRun = nrofRuns[1];
+		long startTime = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(nrofThreads);
+		List<Future<?>> runs = new ArrayList<Future<?>>();
+
+		for (int i = nrofRuns[0]; i < nrofRuns[1]; i++) {
+			final int runIndex = i;
+			runs.add(executor.submit(new Runnable() {
+				public void run() {
+					print("Run " + (runIndex + 1) + "/" + lastRun);
+					runIsolated(classPath, confFiles, firstConfIndex,
+							runIndex);
+					print("Run " + (runIndex + 1) + "/" + lastRun + " done");
+				}
+			}));
+		}
+		executor.shutdown();
+
+		for (Future<?> run : runs) {
+			try {
+				run.get();
+			} catch (InterruptedException e) {
+				System.err.println("Interrupted while waiting for the runs");
+				System.exit(-1);
+			} catch (ExecutionException e) {
+				System.err.println("Batch run failed: " + e.getCause());
+				e.getCause().printStackTrace();
+				System.exit(-1);
+			}
+		}
+
+		double duration = (System.currentTimeMillis() - startTime) / 1000.0;
+		print("---\nAll done in " + String.format("%.2f", duration) + "s");
+	}
+
+	/**
+	 * Loads the simulator using a new class loader and calls
+	 * {@link #runBatchRun(String[], int, int)} of the loaded
+	 * simulator.
+	 * 
+	 * @param classPath      Where to load the classes from
+	 * @param confFiles      The command line arguments
+	 * @param firstConfIndex Index of the first config file name
+	 * @param runIndex       Run index of the run
+	 */
+	private static void runIsolated(URL[] classPath, String[] confFiles,
+			int firstConfIndex, int runIndex) {
+		/* parent is the loader of the platform classes so that all the
+		 * classes from the class path are loaded again */
+		URLClassLoader loader = new URLClassLoader(classPath,
+				ClassLoader.getSystemClassLoader().getParent());
+		Thread.currentThread().setContextClassLoader(loader);
+
+		try {
+			Class<?> sim = Class.forName(DTNSim.class.getName(), true,
+					loader);
+			Method m = sim.getMethod("runBatchRun", String[].class,
+					int.class, int.class);
+			m.invoke(null, confFiles, firstConfIndex, runIndex);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new SimError((Exception)cause);
+		} catch (Exception e) {
+			throw new SimError("Can't start run " + (runIndex + 1), e);
+		} finally {
+			try {
+				loader.close();
+			} catch (IOException e) {
+				/* nothing to do; the run is over anyway */
+			}
+		}
+	}
+
+	/**
+	 * Runs a single batch run. Used by the concurrent batch mode for running
+	 * a run in an isolated context; do not call otherwise.
+	 * 
+	 * @param confFiles      The command line arguments
+	 * @param firstConfIndex Index of the first config file name
+	 * @param runIndex       Run index of the run
+	 */
+	public static void runBatchRun(String[] confFiles, int firstConfIndex,
+			int runIndex) {
+		initSettings(confFiles, firstConfIndex);
+		Settings.setRunIndex(runIndex);
+		resetForNextRun();
+		new DTNSimTextUI().start();
+	}
+
+	/**
+	 * Returns the class path of the simulator as URLs
+	 * 
+	 * @return The class path entries
+	 */
+	private static URL[] getClassPath() {
+		String[] entries = System.getProperty("java.class.path").split(
+				File.pathSeparator);
+		URL[] urls = new URL[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			try {
+				urls[i] = new File(entries[i]).toURI().toURL();
+			} catch (MalformedURLException e) {
+				throw new SimError("Invalid class path entry " + entries[i]);
+			}
+		}
+		return urls;
+	}
+
 	/**
 	 * Initializes Settings
 	 * 
@@ -218,6 +378,31 @@ public class DTNSim {
 		return val;
 	}
 
+	/**
+	 * Parses the number of concurrent runs from a command line argument
+	 * 
+	 * @param arg The argument to parse
+	 * @return The number of concurrent runs
+	 */
+	private static int parseNrofConcurrentRuns(String arg) {
+		int val = 0;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of concurrent runs");
+			System.exit(-1);
+		}
+
+		if (val < 1) {
+			System.err.println("Number of concurrent runs can't be smaller " +
+					"than 1");
+			System.exit(-1);
+		}
+
+		return val;
+	}
+
 	/**
 	 * Prints text to stdout
 	 * 
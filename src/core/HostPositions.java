@@ -0,0 +1,200 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Locations of all hosts, stored in two primitive coordinate arrays indexed
+ * by the host addresses. Host movement, connectivity grid updates and range
+ * checks read and write the arrays directly; the {@link Coord} objects that
+ * {@link DTNHost#getLocation()} returns are only views to the arrays.
+ */
+public class HostPositions {
+	/** Initial size of the coordinate arrays */
+	private static final int INITIAL_CAPACITY = 64;
+
+	private static double[] xs;
+	private static double[] ys;
+
+	static {
+		DTNSim.registerForReset(HostPositions.class.getCanonicalName());
+		reset();
+	}
+
+	private HostPositions() {}
+
+	/**
+	 * Resets the store; all previously stored locations are forgotten
+	 */
+	public static void reset() {
+		xs = new double[INITIAL_CAPACITY];
+		ys = new double[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Makes room for the location of the host with the given address
+	 * @param address The address of the host
+	 */
+	static synchronized void ensureCapacity(int address) {
+		if (address < xs.length) {
+			return;
+		}
+		int capacity = xs.length;
+		while (capacity <= address) {
+			capacity *= 2;
+		}
+		/* ys first so that an address below xs.length is always valid */
+		ys = Arrays.copyOf(ys, capacity);
+		xs = Arrays.copyOf(xs, capacity);
+	}
+
+	/**
+	 * Returns the x coordinate of a host
+	 * @param address The address of the host
+	 * @return The x coordinate
+	 */
+	public static double getX(int address) {
+		return xs[address];
+	}
+
+	/**
+	 * Returns the y coordinate of a host
+	 * @param address The address of the host
+	 * @return The y coordinate
+	 */
+	public static double getY(int address) {
+		return ys[address];
+	}
+
+	/**
+	 * Sets the location of a host
+	 * @param address The address of the host
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 */
+	static void setLocation(int address, double x, double y) {
+		xs[address] = x;
+		ys[address] = y;
+	}
+
+	/**
+	 * Moves a host by dx and dy
+	 * @param address The address of the host
+	 * @param dx How much to move in X-direction
+	 * @param dy How much to move in Y-direction
+	 */
+	static void translate(int address, double dx, double dy) {
+		xs[address] += dx;
+		ys[address] += dy;
+	}
+
+	/**
+	 * Returns the distance between two hosts. The result is the same as
+	 * with {@link Coord#distance(Coord)}.
+	 * @param address1 The address of the first host
+	 * @param address2 The address of the second host
+	 * @return The distance
+	 */
+	public static double distance(int address1, int address2) {
+		double dx = xs[address1] - xs[address2];
+		double dy = ys[address1] - ys[address2];
+
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Returns the distance from a host to a coordinate. The result is the
+	 * same as with {@link Coord#distance(Coord)}.
+	 * @param address The address of the host
+	 * @param c The coordinate
+	 * @return The distance
+	 */
+	public static double distance(int address, Coord c) {
+		double dx = xs[address] - c.getX();
+		double dy = ys[address] - c.getY();
+
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Returns a coordinate view to the location of a host. Reading the view
+	 * returns the current location and changing it moves the host, until
+	 * the view is detached with {@link #detach(Coord)}.
+	 * @param address The address of the host
+	 * @return The view
+	 */
+	static Coord view(int address) {
+		return new LocationView(address);
+	}
+
+	/**
+	 * Detaches a view from the store: the view keeps the location it has
+	 * now and changing it doesn't move the host anymore. Used when a host's
+	 * location is replaced, since the location object used to be replaced
+	 * too.
+	 * @param view The view returned by {@link #view(int)}
+	 */
+	static void detach(Coord view) {
+		((LocationView)view).detach();
+	}
+
+	/**
+	 * Coordinate that reads and writes the location of a host in the store
+	 */
+	private static class LocationView extends Coord {
+		private final int address;
+		private boolean attached;
+
+		private LocationView(int address) {
+			super(0, 0);
+			this.address = address;
+			this.attached = true;
+		}
+
+		private void detach() {
+			super.setLocation(getX(), getY());
+			this.attached = false;
+		}
+
+		@Override
+		public void setLocation(double x, double y) {
+			if (attached) {
+				xs[address] = x;
+				ys[address] = y;
+			} else {
+				super.setLocation(x, y);
+			}
+		}
+
+		@Override
+		public void translate(double dx, double dy) {
+			if (attached) {
+				xs[address] += dx;
+				ys[address] += dy;
+			} else {
+				super.translate(dx, dy);
+			}
+		}
+
+		@Override
+		public double getX() {
+			return attached ? xs[address] : super.getX();
+		}
+
+		@Override
+		public double getY() {
+			return attached ? ys[address] : super.getY();
+		}
+
+		/**
+		 * Returns a plain coordinate with the current location
+		 */
+		@Override
+		public Coord clone() {
+			return new Coord(getX(), getY());
+		}
+	}
+}
@@ -5,10 +5,10 @@
 package core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
@@ -20,10 +20,13 @@ public class Message implements Comparable<Message> {
 	private DTNHost to;
 	/** Identifier of the message */
 	private String id;
+	/** Interned index of the identifier */
+	private int idIndex;
 	/** Size of the message (bytes) */
 	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path;
+	/** Last node of the path this message has passed. The earlier nodes
+	 * are shared with the replicates the message was copied from. */
+	private PathNode path;
 	/** Next unique identifier to be given */
 	private static int nextUniqueId;
 	/** Unique ID of this message */
@@ -45,6 +48,9 @@ public class Message implements Comparable<Message> {
 	 * stored in the properties should be immutable because only a shallow
 	 * copy of the properties is made when replicating messages */
 	private Map<String, Object> properties;
+	/** true if the properties map is shared with other replicates and must
+	 * be copied before it's modified */
+	private boolean propertiesShared;
 
 	/** Application ID of the application that created the message */
 	private String	appID;
@@ -66,8 +72,9 @@ public class Message implements Comparable<Message> {
 		this.from = from;
 		this.to = to;
 		this.id = id;
+		this.idIndex = MessageIdIndex.intern(id);
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();
+		this.path = null;
 		this.uniqueId = nextUniqueId;
 
 		this.timeCreated = SimClock.getTime();
@@ -76,12 +83,36 @@ public class Message implements Comparable<Message> {
 		this.responseSize = 0;
 		this.requestMsg = null;
 		this.properties = null;
+		this.propertiesShared = false;
 		this.appID = null;
 
 		Message.nextUniqueId++;
 		addNodeOnPath(from);
 	}
 
+	/**
+	 * Creates a replicate of a message. The ID is not interned again but
+	 * the index is copied from the other message, and the path is shared
+	 * with the other message without creating a path node for the sender.
+	 * @param m The message to replicate
+	 */
+	private Message(Message m) {
+		this.from = m.from;
+		this.to = m.to;
+		this.id = m.id;
+		this.idIndex = m.idIndex;
+		this.size = m.size;
+		this.path = m.path;
+		this.uniqueId = nextUniqueId;
+
+		this.timeReceived = SimClock.getTime();
+		this.properties = null;
+		this.propertiesShared = false;
+
+		Message.nextUniqueId++;
+		copyFrom(m);
+	}
+
 	/**
 	 * Returns the node this message is originally from
 	 * @return the node this message is originally from
@@ -106,6 +137,16 @@ public class Message implements Comparable<Message> {
 		return this.id;
 	}
 
+	/**
+	 * Returns the interned index of the message ID. All replicates of the
+	 * message have the same index.
+	 * @return The index of the message id
+	 * @see MessageIdIndex
+	 */
+	public int getIdIndex() {
+		return this.idIndex;
+	}
+
 	/**
 	 * Returns an ID that is unique per message instance
 	 * (different for replicates too)
@@ -128,15 +169,36 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.path = new PathNode(node, this.path);
 	}
 
 	/**
-	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * Returns a list of nodes this message has passed so far. The list is
+	 * created on every call; use {@link #getHopCount()} or
+	 * {@link #isOnPath(DTNHost)} when the whole list is not needed.
+	 * Modifying the list doesn't change the path of the message.
+	 * @return A list of the nodes (the creator first)
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		DTNHost[] hops = new DTNHost[this.path.index + 1];
+		for (PathNode n = this.path; n != null; n = n.previous) {
+			hops[n.index] = n.host;
+		}
+		return new ArrayList<DTNHost>(Arrays.asList(hops));
+	}
+
+	/**
+	 * Returns true if the given node is on the path this message has passed
+	 * @param node The node to look for
+	 * @return true if the message has passed the node
+	 */
+	public boolean isOnPath(DTNHost node) {
+		for (PathNode n = this.path; n != null; n = n.previous) {
+			if (n.host == node) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -144,7 +206,7 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return this.path.index;
 	}
 
 	/**
@@ -163,6 +225,25 @@ public class Message implements Comparable<Message> {
 		}
 	}
 
+	/**
+	 * Returns the (sim)time when the TTL of the message expires
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + this.initTtl * 60;
+	}
+
+	/**
+	 * Returns true if the TTL of the message has expired
+	 * @return true if the current sim time is at or past the expiry time
+	 */
+	public boolean isExpired() {
+		return SimClock.getTime() >= getExpiryTime();
+	}
+
 
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
@@ -250,13 +331,15 @@ public class Message implements Comparable<Message> {
 	}
 
 	/**
-	 * Deep copies message data from other message. If new fields are
+	 * Copies message data from other message. The path and the properties
+	 * are shared with the other message until either of the messages
+	 * modifies them, so copying takes constant time. If new fields are
 	 * introduced to this class, most likely they should be copied here too
 	 * (unless done in constructor).
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
+		this.path = m.path;
 		this.timeCreated = m.timeCreated;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
@@ -264,10 +347,9 @@ public class Message implements Comparable<Message> {
 		this.appID = m.appID;
 
 		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
-			}
+			this.properties = m.properties;
+			this.propertiesShared = true;
+			m.propertiesShared = true;
 		}
 	}
 
@@ -317,6 +399,11 @@ public class Message implements Comparable<Message> {
 			   that don't use the property feature  */
 			this.properties = new HashMap<String, Object>();
 		}
+		else if (this.propertiesShared) {
+			/* copy on write; the other replicates keep the old values */
+			this.properties = new HashMap<String, Object>(this.properties);
+			this.propertiesShared = false;
+		}
 
 		this.properties.put(key, value);
 	}
@@ -326,9 +413,7 @@ public class Message implements Comparable<Message> {
 	 * @return A replicate of the message
 	 */
 	public Message replicate() {
-		Message m = new Message(from, to, id, size);
-		m.copyFrom(this);
-		return m;
+		return new Message(this);
 	}
 
 	/**
@@ -360,4 +445,22 @@ public class Message implements Comparable<Message> {
 		this.appID = appID;
 	}
 
+	/**
+	 * Node of a message path. The path of a message is a linked list from
+	 * the last node back to the creator, so replicates can share the nodes
+	 * they have passed together and add only their own hops.
+	 */
+	private static class PathNode {
+		private final DTNHost host;
+		private final PathNode previous;
+		/** index of the node on the path (0 for the creator) */
+		private final int index;
+
+		public PathNode(DTNHost host, PathNode previous) {
+			this.host = host;
+			this.previous = previous;
+			this.index = previous == null ? 0 : previous.index + 1;
+		}
+	}
+
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Interns message IDs to dense integer indexes (0, 1, 2, ...). All the
+ * replicates of a message share the same index (see
+ * {@link Message#getIdIndex()}), so routers and reports can keep track of
+ * messages with primitive keys and sets instead of hashing the ID strings.
+ * The string IDs are needed only when messages are referred to from outside
+ * the simulation (e.g., external events and report output).
+ */
+public class MessageIdIndex {
+	/** indexes of the interned IDs */
+	private static HashMap<String, Integer> indexes;
+	/** interned IDs by their index */
+	private static List<String> ids;
+
+	static {
+		DTNSim.registerForReset(MessageIdIndex.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Returns the index of a message ID, giving the ID a new index if it
+	 * doesn't have one yet
+	 * @param id The message ID
+	 * @return The index of the ID
+	 */
+	public static int intern(String id) {
+		Integer index = indexes.get(id);
+		if (index == null) {
+			index = ids.size();
+			indexes.put(id, index);
+			ids.add(id);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index of a message ID
+	 * @param id The message ID
+	 * @return The index of the ID or -1 if the ID hasn't been interned
+	 */
+	public static int indexOf(String id) {
+		Integer index = indexes.get(id);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the message ID of an index
+	 * @param index The index
+	 * @return The message ID
+	 */
+	public static String getId(int index) {
+		return ids.get(index);
+	}
+
+	/**
+	 * Returns the number of interned IDs (i.e., one bigger than the biggest
+	 * index)
+	 * @return The number of interned IDs
+	 */
+	public static int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Forgets all the interned IDs
+	 */
+	public static void reset() {
+		indexes = new HashMap<String, Integer>();
+		ids = new ArrayList<String>();
+	}
+}
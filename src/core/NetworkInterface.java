@@ -4,7 +4,6 @@
  */
 package core;
 
-import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
 import java.util.ArrayList;
@@ -60,6 +59,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected double oldTransmitRange;
 	protected int transmitSpeed;
 	protected ConnectivityOptimizer optimizer = null;
+	/** tries to connect to every visited near interface (see
+	 * {@link ConnectivityOptimizer#visitNearInterfaces}) */
+	protected final ConnectivityOptimizer.NearInterfaceVisitor connector =
+		new ConnectivityOptimizer.NearInterfaceVisitor() {
+			public void visit(NetworkInterface ni) {
+				connect(ni);
+			}
+		};
 	/** scanning interval, or 0.0 if n/a */
 	protected double scanInterval;
 	private double lastScanTime;
@@ -155,7 +162,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 		System.out.println("SETTING INTERFACE");
 		if (transmitRange > 0) {
-			optimizer = ConnectivityGrid.ConnectivityGridFactory(
+			optimizer = ConnectivityOptimizer.getOptimizer(
 					this.interfacetype.hashCode(), transmitRange);
 			optimizer.addInterface(this);
 		} else {
@@ -256,6 +263,28 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return active;
 	}
 
+	/**
+	 * Returns true if querying the activeness of this interface can't have
+	 * any side effects, i.e., the interface is always active, it has no
+	 * scanning interval, it has a non-zero range and its host has no energy
+	 * model. For such interfaces {@link #isActive()} and
+	 * {@link #isScanning()} always return true.
+	 * @return true if the activeness of the interface can't change
+	 */
+	protected boolean hasStaticActiveness() {
+		return (ah == null || ah.isAlwaysActive()) && scanInterval == 0 &&
+			transmitRange > 0 && !host.getComBus().containsProperty(
+					EnergyModel.ENERGY_VALUE_ID);
+	}
+
+	/**
+	 * Returns the connectivity optimizer this interface uses
+	 * @return the connectivity optimizer or null if no optimizer is used
+	 */
+	public ConnectivityOptimizer getOptimizer() {
+		return this.optimizer;
+	}
+
 	/**
 	 * Checks if this interface is currently in the scanning mode
 	 * @return True if the interface is scanning; false if not
@@ -360,8 +389,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			smallerRange = myRange;
 		}
 
-		return this.host.getLocation().distance(
-				anotherInterface.getHost().getLocation()) <= smallerRange;
+		return HostPositions.distance(this.host.getAddress(),
+				anotherInterface.getHost().getAddress()) <= smallerRange;
 	}
 
 	/**
@@ -398,6 +427,42 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	abstract public void update();
 
+	/**
+	 * Updates the state of the current connections without creating or
+	 * tearing down any (e.g., recalculates transmission speeds). Called by
+	 * {@link #update()} and, when the connections are created and torn down
+	 * by a {@link ContactPredictionEngine} instead, on every host update.
+	 * The default implementation updates all the connections.
+	 */
+	public void updateConnections() {
+		for (int i=0, n = connections.size(); i < n; i++) {
+			connections.get(i).update();
+		}
+	}
+
+	/**
+	 * Returns true if the connections of this interface can't be updated
+	 * without {@link #update()}, e.g., because the connection speeds depend
+	 * on interfaces that are near but not connected. Contact prediction
+	 * doesn't support such interfaces. The default implementation returns
+	 * false.
+	 * @return true if the interface must be updated by polling
+	 */
+	protected boolean requiresPolling() {
+		return false;
+	}
+
+	/**
+	 * Computes in advance anything the next {@link #update()} call can use
+	 * without changing the outcome of the update. This is called from the
+	 * parallel compute phase of {@link World#update()}, so the method must
+	 * not change any state that is visible to other interfaces or hosts.
+	 * Called only when all interfaces of the world have
+	 * {@link #hasStaticActiveness() static activeness}.
+	 * The default implementation does nothing.
+	 */
+	public void prepareUpdate() { }
+
 	/**
 	 * Notifies all the connection listeners about a change in connections.
 	 * @param type Type of the change (e.g. {@link #CON_DOWN} )
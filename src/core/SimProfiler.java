@@ -0,0 +1,311 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import routing.MessageRouter;
+
+/**
+ * Collects the wall clock time, the number of calls and the allocated
+ * memory of the different phases of the world updates. The time spent in
+ * the interface and router updates and in the update listener callbacks is
+ * also collected per class. The allocations are measured only from the
+ * thread running the simulation (and only if the JVM supports measuring
+ * them), so the work done in the parallel compute phases (see
+ * {@link World}) isn't included. The garbage collection time and the peak
+ * heap usage are collected for the whole JVM. The profiler is enabled by
+ * setting it to the world ({@link World#setProfiler(SimProfiler)}).
+ */
+public class SimProfiler {
+	/** Phase of processing the external events */
+	public static final int EVENTS = 0;
+	/** Phase of moving the hosts */
+	public static final int MOVEMENT = 1;
+	/** Phase of updating the network interfaces (connectivity detection) */
+	public static final int INTERFACES = 2;
+	/** Phase of updating the routers */
+	public static final int ROUTERS = 3;
+	/** Phase of calling the update listeners */
+	public static final int UPDATE_LISTENERS = 4;
+	/** Number of phases */
+	public static final int NROF_PHASES = 5;
+	/** Names of the phases */
+	private static final String[] PHASE_NAMES = {"events", "movement",
+		"interfaces", "routers", "update_listeners"};
+
+	private Counter[] phases;
+	private Counter updates;
+	private Map<Class<?>, Counter> interfaces;
+	private Map<Class<?>, Counter> routers;
+	private Map<Class<?>, Counter> listeners;
+	/** garbage collection time and count when the profiler was created */
+	private long startGcMillis, startGcCount;
+	/** thread bean for measuring the allocations or null if not supported */
+	private com.sun.management.ThreadMXBean allocationBean;
+
+	/**
+	 * Constructor. Resets the peak heap usage of the JVM.
+	 */
+	public SimProfiler() {
+		this.phases = new Counter[NROF_PHASES];
+		for (int i = 0; i < NROF_PHASES; i++) {
+			phases[i] = new Counter();
+		}
+		this.updates = new Counter();
+		this.interfaces = new HashMap<Class<?>, Counter>();
+		this.routers = new HashMap<Class<?>, Counter>();
+		this.listeners = new HashMap<Class<?>, Counter>();
+
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean =
+				(com.sun.management.ThreadMXBean)threadBean;
+			if (bean.isThreadAllocatedMemorySupported()) {
+				bean.setThreadAllocatedMemoryEnabled(true);
+				this.allocationBean = bean;
+			}
+		}
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+		this.startGcMillis = getTotalGcMillis();
+		this.startGcCount = getTotalGcCount();
+	}
+
+	/**
+	 * Returns the number of bytes the current thread has allocated so far.
+	 * The difference of two calls is the memory allocated between them.
+	 * @return The allocated bytes or 0 if the JVM doesn't support measuring
+	 * the allocations
+	 */
+	public long getAllocatedBytes() {
+		if (this.allocationBean == null) {
+			return 0;
+		}
+		return allocationBean.getThreadAllocatedBytes(
+				Thread.currentThread().getId());
+	}
+
+	/**
+	 * Adds time to a phase
+	 * @param phase The phase (e.g. {@link #MOVEMENT})
+	 * @param nanos The time (nanoseconds)
+	 * @param calls Number of calls done during the time
+	 * @param bytes Memory allocated during the time (bytes)
+	 */
+	public void addPhaseTime(int phase, long nanos, int calls, long bytes) {
+		phases[phase].add(nanos, calls, bytes);
+	}
+
+	/**
+	 * Adds the time of one whole world update
+	 * @param nanos The time (nanoseconds)
+	 * @param bytes Memory allocated during the update (bytes)
+	 */
+	public void addUpdateTime(long nanos, long bytes) {
+		updates.add(nanos, 1, bytes);
+	}
+
+	/**
+	 * Adds the time of one interface update to the interfaces phase and to
+	 * the interface's class
+	 * @param ni The updated interface
+	 * @param nanos The time (nanoseconds)
+	 * @param bytes Memory allocated during the update (bytes)
+	 */
+	public void addInterfaceTime(NetworkInterface ni, long nanos,
+			long bytes) {
+		phases[INTERFACES].add(nanos, 1, bytes);
+		getCounter(interfaces, ni.getClass()).add(nanos, 1, bytes);
+	}
+
+	/**
+	 * Adds the time of one router update to the routers phase and to the
+	 * router's class
+	 * @param router The updated router
+	 * @param nanos The time (nanoseconds)
+	 * @param bytes Memory allocated during the update (bytes)
+	 */
+	public void addRouterTime(MessageRouter router, long nanos, long bytes) {
+		phases[ROUTERS].add(nanos, 1, bytes);
+		getCounter(routers, router.getClass()).add(nanos, 1, bytes);
+	}
+
+	/**
+	 * Adds the time of one update listener call to the update listeners
+	 * phase and to the listener's class
+	 * @param ul The called listener
+	 * @param nanos The time (nanoseconds)
+	 * @param bytes Memory allocated during the call (bytes)
+	 */
+	public void addListenerTime(UpdateListener ul, long nanos, long bytes) {
+		phases[UPDATE_LISTENERS].add(nanos, 1, bytes);
+		getCounter(listeners, ul.getClass()).add(nanos, 1, bytes);
+	}
+
+	/**
+	 * Returns the garbage collection time of the JVM since the profiler
+	 * was created
+	 * @return The garbage collection time (milliseconds)
+	 */
+	public long getGcMillis() {
+		return getTotalGcMillis() - this.startGcMillis;
+	}
+
+	/**
+	 * Returns the number of garbage collections of the JVM since the
+	 * profiler was created
+	 * @return The number of garbage collections
+	 */
+	public long getGcCount() {
+		return getTotalGcCount() - this.startGcCount;
+	}
+
+	/**
+	 * Returns the peak heap usage of the JVM since the profiler was created.
+	 * The value is the sum of the peak usages of the heap memory pools, so
+	 * it is an upper bound of the real peak.
+	 * @return The peak heap usage (bytes)
+	 */
+	public long getPeakHeapBytes() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	private static long getTotalGcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : getGcBeans()) {
+			millis += Math.max(gc.getCollectionTime(), 0);
+		}
+		return millis;
+	}
+
+	private static long getTotalGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : getGcBeans()) {
+			count += Math.max(gc.getCollectionCount(), 0);
+		}
+		return count;
+	}
+
+	private static List<GarbageCollectorMXBean> getGcBeans() {
+		return ManagementFactory.getGarbageCollectorMXBeans();
+	}
+
+	/**
+	 * Returns the name of a phase
+	 * @param phase The phase
+	 * @return The name of the phase
+	 */
+	public static String getPhaseName(int phase) {
+		return PHASE_NAMES[phase];
+	}
+
+	/**
+	 * Returns the counter of a phase
+	 * @param phase The phase
+	 * @return The counter of the phase
+	 */
+	public Counter getPhase(int phase) {
+		return phases[phase];
+	}
+
+	/**
+	 * Returns the counter of the whole world updates
+	 * @return The counter of the whole world updates
+	 */
+	public Counter getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * Returns the interface update counters by interface class
+	 * @return The interface update counters by interface class
+	 */
+	public Map<Class<?>, Counter> getInterfaceCounters() {
+		return interfaces;
+	}
+
+	/**
+	 * Returns the router update counters by router class
+	 * @return The router update counters by router class
+	 */
+	public Map<Class<?>, Counter> getRouterCounters() {
+		return routers;
+	}
+
+	/**
+	 * Returns the update listener call counters by listener class
+	 * @return The update listener call counters by listener class
+	 */
+	public Map<Class<?>, Counter> getListenerCounters() {
+		return listeners;
+	}
+
+	private static Counter getCounter(Map<Class<?>, Counter> map,
+			Class<?> c) {
+		Counter counter = map.get(c);
+		if (counter == null) {
+			counter = new Counter();
+			map.put(c, counter);
+		}
+		return counter;
+	}
+
+	/**
+	 * Total time, number of calls and allocated memory of one profiled item
+	 */
+	public static class Counter {
+		private long nanos;
+		private long calls;
+		private long bytes;
+
+		private void add(long nanos, int calls, long bytes) {
+			this.nanos += nanos;
+			this.calls += calls;
+			this.bytes += bytes;
+		}
+
+		/**
+		 * Returns the total time
+		 * @return The total time (nanoseconds)
+		 */
+		public long getNanos() {
+			return this.nanos;
+		}
+
+		/**
+		 * Returns the number of calls
+		 * @return The number of calls
+		 */
+		public long getCalls() {
+			return this.calls;
+		}
+
+		/**
+		 * Returns the total allocated memory
+		 * @return The allocated memory (bytes)
+		 */
+		public long getBytes() {
+			return this.bytes;
+		}
+	}
+}
@@ -42,6 +42,11 @@ public class SimScenario implements Serializable {
 	public static final String UP_INT_S = "updateInterval";
 	/** simulate connections -setting id ({@value}) */
 	public static final String SIM_CON_S = "simulateConnections";
+	/**
+	 * Predict contacts from the host trajectories -setting id ({@value}).
+	 * Boolean. Default is false. See {@link ContactPredictionEngine}.
+	 */
+	public static final String PREDICT_CONTACTS_S = "predictContacts";
 
 	/** namespace for interface type settings ({@value}) */
 	public static final String INTTYPE_NS = "Interface";
@@ -164,9 +169,21 @@ public class SimScenario implements Serializable {
 
 		createHosts();
 
+		List<EventQueue> eventQueues = eqHandler.getEventQueues();
+		boolean pollConnections = simulateConnections;
+		s.setNameSpace(SCENARIO_NS);
+		if (simulateConnections && s.getBoolean(PREDICT_CONTACTS_S, false)) {
+			/* connections are created by the predicted contact events */
+			ContactPredictionEngine engine =
+				new ContactPredictionEngine(hosts);
+			addMovementListener(engine);
+			eventQueues = new ArrayList<EventQueue>(eventQueues);
+			eventQueues.add(engine);
+			pollConnections = false;
+		}
+
 		this.world = new World(hosts, worldSizeX, worldSizeY, updateInterval,
-				updateListeners, simulateConnections,
-				eqHandler.getEventQueues());
+				updateListeners, pollConnections, eventQueues);
 	}
 
 	/**
@@ -12,6 +12,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import interfaces.ConnectivityOptimizer;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -37,6 +41,43 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Should host movement and connectivity detection be computed in
+	 * parallel -setting id ({@value}). Boolean (true/false) variable.
+	 * Default is {@link #DEF_PARALLEL_UPDATES}. Every update is done in two
+	 * phases: side effect free parts (e.g., moving along the current path
+	 * segment and finding interfaces in range) are computed in parallel and
+	 * the results are then committed in the normal update order, so the
+	 * results are the same as with the serial update.
+	 */
+	public static final String PARALLEL_UPDATES_S = "parallelUpdates";
+	/** should the parallel update be used -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_PARALLEL_UPDATES = false;
+	/**
+	 * Number of threads used for the parallel update -setting id
+	 * ({@value}). Integer value. Default is the number of available
+	 * processors.
+	 */
+	public static final String NROF_THREADS_S = "nrofThreads";
+
+	/**
+	 * Should the updates of idle hosts be skipped -setting id ({@value}).
+	 * Boolean (true/false) variable. Default is {@link #DEF_SKIP_IDLE_HOSTS}.
+	 * A host is idle if it hasn't moved, its connections and messages haven't
+	 * changed since its last update, it has no connections and its router
+	 * has nothing to do (see {@link DTNHost#isIdle()}). Scheduled updates
+	 * (see {@link #scheduleUpdate(double)}) update all hosts. Skipping is
+	 * used only if the activeness of all interfaces is static. New
+	 * connections to idle hosts are found by the moving hosts, so the
+	 * initiator (and the order) of connections may differ from the updates
+	 * without skipping.
+	 */
+	public static final String SKIP_IDLE_HOSTS_S = "skipIdleHosts";
+	/** should the updates of idle hosts be skipped -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_SKIP_IDLE_HOSTS = false;
+
 	private int sizeX;
 	private int sizeY;
 	private List<EventQueue> eventQueues;
@@ -56,6 +97,14 @@ public class World {
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
 	private boolean simulateConOnce;
+	/** pool for the parallel compute phases or null for serial updates */
+	private ForkJoinPool pool;
+	/** connectivity optimizers used by the hosts' interfaces */
+	private List<ConnectivityOptimizer> optimizers;
+	/** profiler of the updates or null if profiling is off */
+	private SimProfiler profiler;
+	/** should the updates of idle hosts be skipped */
+	private boolean skipIdleHosts;
 
 	/**
 	 * Constructor.
@@ -91,6 +140,38 @@ public class World {
 		}
 		simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
 
+		if (s.getBoolean(PARALLEL_UPDATES_S, DEF_PARALLEL_UPDATES)) {
+			int nrofThreads = s.getInt(NROF_THREADS_S,
+					Runtime.getRuntime().availableProcessors());
+			if (nrofThreads < 1) {
+				throw new SettingsError("Too small value (" + nrofThreads +
+						") for " + OPTIMIZATION_SETTINGS_NS + "." +
+						NROF_THREADS_S);
+			}
+			this.pool = new ForkJoinPool(nrofThreads);
+		}
+		else {
+			this.pool = null;
+		}
+
+		this.optimizers = new ArrayList<ConnectivityOptimizer>();
+		for (DTNHost host : this.hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				ConnectivityOptimizer opt = ni.getOptimizer();
+				if (opt != null && !optimizers.contains(opt)) {
+					optimizers.add(opt);
+				}
+			}
+		}
+
+		this.skipIdleHosts = s.getBoolean(SKIP_IDLE_HOSTS_S,
+				DEF_SKIP_IDLE_HOSTS);
+		for (int i=0, n = hosts.size(); i < n && skipIdleHosts; i++) {
+			if (!hosts.get(i).hasStaticActiveness()) {
+				this.skipIdleHosts = false; /* some hosts may not scan */
+			}
+		}
+
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
@@ -145,45 +226,110 @@ public class World {
 	/**
 	 * Update (move, connect, disconnect etc.) all hosts in the world.
 	 * Runs all external events that are due between the time when
-	 * this method is called and after one update interval.
+	 * this method is called and after one update interval. If profiling
+	 * is on, the time spent in the different phases of the update is
+	 * recorded to the profiler.
 	 */
 	public void update () {
+		long updateStart = profiler != null ? System.nanoTime() : 0;
+		long updateBytes = profiler != null ? profiler.getAllocatedBytes() : 0;
 		double runUntil = SimClock.getTime() + this.updateInterval;
 
+		long start = profiler != null ? System.nanoTime() : 0;
+		long bytes = profiler != null ? profiler.getAllocatedBytes() : 0;
 		setNextEventQueue();
+		if (profiler != null) {
+			profiler.addPhaseTime(SimProfiler.EVENTS,
+					System.nanoTime() - start, 0,
+					profiler.getAllocatedBytes() - bytes);
+		}
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
+			start = profiler != null ? System.nanoTime() : 0;
+			bytes = profiler != null ? profiler.getAllocatedBytes() : 0;
 			simClock.setTime(this.nextQueueEventTime);
 			ExternalEvent ee = this.nextEventQueue.nextEvent();
 			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			if (profiler != null) {
+				profiler.addPhaseTime(SimProfiler.EVENTS,
+						System.nanoTime() - start, 1,
+						profiler.getAllocatedBytes() - bytes);
+			}
+			// update all hosts after every event
+			updateHosts(this.nextEventQueue == this.scheduledUpdates);
+			start = profiler != null ? System.nanoTime() : 0;
+			bytes = profiler != null ? profiler.getAllocatedBytes() : 0;
 			setNextEventQueue();
+			if (profiler != null) {
+				profiler.addPhaseTime(SimProfiler.EVENTS,
+						System.nanoTime() - start, 0,
+						profiler.getAllocatedBytes() - bytes);
+			}
 		}
 
+		start = profiler != null ? System.nanoTime() : 0;
+		bytes = profiler != null ? profiler.getAllocatedBytes() : 0;
 		moveHosts(this.updateInterval);
+		if (profiler != null) {
+			profiler.addPhaseTime(SimProfiler.MOVEMENT,
+					System.nanoTime() - start, 1,
+					profiler.getAllocatedBytes() - bytes);
+		}
 		simClock.setTime(runUntil);
 
-		updateHosts();
+		updateHosts(false);
 
 		/* inform all update listeners */
 		for (UpdateListener ul : this.updateListeners) {
+			start = profiler != null ? System.nanoTime() : 0;
+			bytes = profiler != null ? profiler.getAllocatedBytes() : 0;
 			ul.updated(this.hosts);
+			if (profiler != null) {
+				profiler.addListenerTime(ul, System.nanoTime() - start,
+						profiler.getAllocatedBytes() - bytes);
+			}
+		}
+
+		if (profiler != null) {
+			profiler.addUpdateTime(System.nanoTime() - updateStart,
+					profiler.getAllocatedBytes() - updateBytes);
 		}
 	}
 
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
-	 * are made in random order.
+	 * are made in random order. If skipping idle hosts is on, only the
+	 * hosts that are not idle are updated unless all hosts must be updated.
+	 * @param updateAll If true, idle hosts are updated too
 	 */
-	private void updateHosts() {
+	private void updateHosts(boolean updateAll) {
+		boolean skipIdle = this.skipIdleHosts && !updateAll;
+
+		if (simulateConnections) {
+			long start = this.profiler != null ? System.nanoTime() : 0;
+			long bytes = this.profiler != null ?
+					profiler.getAllocatedBytes() : 0;
+			for (int i=0, n = optimizers.size(); i < n; i++) {
+				optimizers.get(i).startUpdateRound();
+			}
+			if (this.pool != null) {
+				prepareConnectivity();
+			}
+			if (this.profiler != null) {
+				profiler.addPhaseTime(SimProfiler.INTERFACES,
+						System.nanoTime() - start, 0,
+						profiler.getAllocatedBytes() - bytes);
+			}
+		}
+
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				hosts.get(i).update(simulateConnections);
+				updateHost(hosts.get(i), skipIdle);
 			}
 		}
 		else { // update order randomizing is on
@@ -195,7 +341,7 @@ public class World {
 				if (this.isCancelled) {
 					break;
 				}
-				this.updateOrder.get(i).update(simulateConnections);
+				updateHost(this.updateOrder.get(i), skipIdle);
 			}
 		}
 
@@ -204,17 +350,75 @@ public class World {
 		}
 	}
 
+	/**
+	 * Updates one host (and records the update times if profiling is on)
+	 * @param host The host to update
+	 * @param skipIdle If true, the host is not updated if it is idle
+	 */
+	private void updateHost(DTNHost host, boolean skipIdle) {
+		if (skipIdle && host.isIdle()) {
+			return;
+		}
+		if (this.profiler != null) {
+			host.update(simulateConnections, profiler);
+		}
+		else {
+			host.update(simulateConnections);
+		}
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (this.pool != null) {
+			/* compute the moves in parallel and commit them in order */
+			pool.invoke(new HostTask(HostTask.MOVE, timeIncrement, 0,
+					hosts.size()));
+			for (int i=0,n = hosts.size(); i<n; i++) {
+				hosts.get(i).commitMove(timeIncrement);
+			}
+			return;
+		}
+
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);
 		}
 	}
 
+	/**
+	 * Runs the parallel compute phase of connectivity detection: finds the
+	 * interfaces in range of every interface. This is done only if the
+	 * activeness of all interfaces is static, since otherwise the checks
+	 * made during the (serial) interface updates may have side effects.
+	 */
+	private void prepareConnectivity() {
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			if (!hosts.get(i).hasStaticActiveness()) {
+				return;
+			}
+		}
+
+		for (ConnectivityOptimizer opt : this.optimizers) {
+			opt.snapshotLocations();
+		}
+		pool.invoke(new HostTask(HostTask.CONNECTIVITY, 0, 0, hosts.size()));
+	}
+
+	/**
+	 * Releases the resources of the world when the simulation is done:
+	 * shuts down the thread pool of the parallel update (if any). Possible
+	 * later updates are done serially.
+	 */
+	public void close() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+			this.pool = null;
+		}
+	}
+
 	/**
 	 * Asynchronously cancels the currently running simulation
 	 */
@@ -222,6 +426,15 @@ public class World {
 		this.isCancelled = true;
 	}
 
+	/**
+	 * Sets the profiler that records the time spent in the different phases
+	 * of the updates
+	 * @param profiler The profiler or null to turn profiling off
+	 */
+	public void setProfiler(SimProfiler profiler) {
+		this.profiler = profiler;
+	}
+
 	/**
 	 * Returns the hosts in a list
 	 * @return the hosts in a list
@@ -272,4 +485,57 @@ public class World {
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
 	}
+
+	/**
+	 * Fork-join task for the parallel compute phases of the update. Splits
+	 * the given range of hosts until it is small enough to be computed in
+	 * one task.
+	 */
+	@SuppressWarnings("serial")
+	private class HostTask extends RecursiveAction {
+		/** task type for computing the moves of the hosts */
+		static final int MOVE = 1;
+		/** task type for preparing the interface updates of the hosts */
+		static final int CONNECTIVITY = 2;
+		/** max number of hosts computed in one task */
+		private static final int NROF_HOSTS_PER_TASK = 64;
+
+		private final int type;
+		private final double timeIncrement;
+		private final int from;
+		private final int to;
+
+		/**
+		 * Constructor.
+		 * @param type Type of the task ({@link #MOVE} or
+		 * {@link #CONNECTIVITY})
+		 * @param timeIncrement How long time the hosts move
+		 * @param from Index of the first host to compute
+		 * @param to Index of the last host to compute + 1
+		 */
+		public HostTask(int type, double timeIncrement, int from, int to) {
+			this.type = type;
+			this.timeIncrement = timeIncrement;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > NROF_HOSTS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new HostTask(type, timeIncrement, from, mid),
+						new HostTask(type, timeIncrement, mid, to));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				if (type == MOVE) {
+					hosts.get(i).prepareMove(timeIncrement);
+				} else {
+					hosts.get(i).prepareUpdate();
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Reads external events from a compact binary file of fixed size records.
+ * The records are read through a memory mapped window of the file and
+ * decoded only when the events are requested, so no parsing is needed and
+ * the only objects created per event are the events themselves. Files of
+ * any size can be read since the window is moved along the file.
+ * </P>
+ * <P>
+ * File format (all values big-endian):<BR>
+ * Header ({@value #HEADER_SIZE} bytes): magic number {@value #MAGIC}
+ * (int), format version (int), number of records (long), offset of the
+ * string table (long) and 8 reserved bytes.<BR>
+ * Records ({@value #RECORD_SIZE} bytes each, in time order): time (double),
+ * event type (byte), 3 reserved bytes, first host address (int), second host
+ * address (int), index of the message or interface id in the string table
+ * or -1 (int), message size (int) and response size (int).<BR>
+ * String table: number of strings (int) and the strings in the modified
+ * UTF-8 format of {@link DataOutputStream#writeUTF(String)}. Every distinct
+ * message and interface id is stored only once.
+ * </P>
+ * <P>
+ * Files can be created from standard external events files (see
+ * {@link StandardEventsReader}) with {@link #storeToCompactFile(String,
+ * ExternalEventsReader)} or from the command line:<BR>
+ * <TT>java -cp target input.CompactEventsReader &lt;input file&gt;
+ * &lt;output file&gt;</TT>
+ * </P>
+ */
+public class CompactEventsReader implements ExternalEventsReader {
+	/** Extension of compact external events files ({@value}) */
+	public static final String COMPACT_EXT = ".cee";
+	/** Magic number at the start of the files ({@value}) */
+	public static final int MAGIC = 0x434545AA;
+	/** Version of the file format ({@value}) */
+	public static final int VERSION = 1;
+	/** Size of the file header in bytes ({@value}) */
+	public static final int HEADER_SIZE = 32;
+	/** Size of one record in bytes ({@value}) */
+	public static final int RECORD_SIZE = 32;
+
+	/** Record type of connection up events */
+	public static final byte TYPE_CONN_UP = 1;
+	/** Record type of connection down events */
+	public static final byte TYPE_CONN_DOWN = 2;
+	/** Record type of message creation events */
+	public static final byte TYPE_CREATE = 3;
+	/** Record type of message transfer start events */
+	public static final byte TYPE_SEND = 4;
+	/** Record type of message delivered events */
+	public static final byte TYPE_DELIVERED = 5;
+	/** Record type of message transfer aborted events */
+	public static final byte TYPE_ABORT = 6;
+	/** Record type of message dropped events */
+	public static final byte TYPE_DROP = 7;
+	/** Record type of message removed events */
+	public static final byte TYPE_REMOVE = 8;
+
+	/** Maximum number of records mapped at once */
+	private static final int WINDOW_RECORDS = 1 << 20;
+	/** Number of events read at once when converting files */
+	private static final int CONVERT_CHUNK = 10000;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private MappedByteBuffer window;
+	/** index of the first record of the mapped window */
+	private long windowStart;
+	/** number of records in the mapped window */
+	private int windowRecords;
+	/** index of the next record to read */
+	private long nextRecord;
+	private long nrofRecords;
+	private String[] strings;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 */
+	public CompactEventsReader(File eventsFile) {
+		try {
+			this.file = new RandomAccessFile(eventsFile, "r");
+			this.channel = file.getChannel();
+			if (file.readInt() != MAGIC) {
+				throw new SimError("Not a compact external events file: " +
+						eventsFile.getAbsolutePath());
+			}
+			int version = file.readInt();
+			if (version != VERSION) {
+				throw new SimError("Unsupported version " + version +
+						" of compact external events file " +
+						eventsFile.getAbsolutePath());
+			}
+			this.nrofRecords = file.readLong();
+			readStrings(eventsFile, file.readLong());
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+		this.nextRecord = 0;
+		this.windowStart = 0;
+		this.windowRecords = 0;
+	}
+
+	/**
+	 * Reads the string table of the file
+	 * @param eventsFile The file
+	 * @param offset Offset of the string table in the file
+	 */
+	private void readStrings(File eventsFile, long offset)
+			throws IOException {
+		FileInputStream fis = new FileInputStream(eventsFile);
+		try {
+			fis.getChannel().position(offset);
+			DataInputStream in = new DataInputStream(
+					new BufferedInputStream(fis));
+			this.strings = new String[in.readInt()];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = in.readUTF();
+			}
+		} finally {
+			fis.close();
+		}
+	}
+
+	/**
+	 * Reads and decodes the next events from the file
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		long left = nrofRecords - nextRecord;
+		int count = (int)Math.min(nrof, Math.max(left, 0));
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(count);
+
+		for (int i = 0; i < count; i++) {
+			if (nextRecord >= windowStart + windowRecords) {
+				mapWindow(nextRecord);
+			}
+			int pos = (int)(nextRecord - windowStart) * RECORD_SIZE;
+			events.add(decode(pos));
+			nextRecord++;
+		}
+
+		return events;
+	}
+
+	/**
+	 * Maps the window of records starting from the given record
+	 * @param first Index of the first record of the window
+	 */
+	private void mapWindow(long first) {
+		this.windowStart = first;
+		this.windowRecords = (int)Math.min(WINDOW_RECORDS,
+				nrofRecords - first);
+		try {
+			this.window = channel.map(FileChannel.MapMode.READ_ONLY,
+					HEADER_SIZE + first * RECORD_SIZE,
+					(long)windowRecords * RECORD_SIZE);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Decodes the record at the given position of the window
+	 * @param pos Position of the record in the window
+	 * @return The event of the record
+	 */
+	private ExternalEvent decode(int pos) {
+		double time = window.getDouble(pos);
+		byte type = window.get(pos + 8);
+		int host1 = window.getInt(pos + 12);
+		int host2 = window.getInt(pos + 16);
+		int stringIndex = window.getInt(pos + 20);
+		String id = stringIndex < 0 ? null : strings[stringIndex];
+
+		switch (type) {
+		case TYPE_CONN_UP:
+			return new ConnectionEvent(host1, host2, id, true, time);
+		case TYPE_CONN_DOWN:
+			return new ConnectionEvent(host1, host2, id, false, time);
+		case TYPE_CREATE:
+			return new MessageCreateEvent(host1, host2, id,
+					window.getInt(pos + 24), window.getInt(pos + 28), time);
+		case TYPE_SEND:
+			return new MessageRelayEvent(host1, host2, id, time,
+					MessageRelayEvent.SENDING);
+		case TYPE_DELIVERED:
+			return new MessageRelayEvent(host1, host2, id, time,
+					MessageRelayEvent.TRANSFERRED);
+		case TYPE_ABORT:
+			return new MessageRelayEvent(host1, host2, id, time,
+					MessageRelayEvent.ABORTED);
+		case TYPE_DROP:
+			return new MessageDeleteEvent(host1, id, time, true);
+		case TYPE_REMOVE:
+			return new MessageDeleteEvent(host1, id, time, false);
+		default:
+			throw new SimError("Invalid event type " + type + " in record " +
+					nextRecord + " of compact external events file");
+		}
+	}
+
+	public void close() {
+		this.window = null;
+		try {
+			this.file.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Checks if the given file is a compact external events file
+	 * @param file The file to check
+	 * @return True if the file has the right extension and magic number,
+	 * false if not
+	 */
+	public static boolean isCompactEeFile(File file) {
+		if (!file.getName().endsWith(COMPACT_EXT)) {
+			return false;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(
+					new FileInputStream(file));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false; // read failed -> not a valid file
+		}
+	}
+
+	/**
+	 * Reads all the events from a reader and stores them to a compact file.
+	 * The events are read and written in chunks so files of any size can be
+	 * converted.
+	 * @param fileName Path to the file where the events are stored
+	 * @param reader The reader where the events are read from
+	 * @return Number of events stored
+	 * @throws IOException if something in storing went wrong
+	 */
+	public static long storeToCompactFile(String fileName,
+			ExternalEventsReader reader) throws IOException {
+		Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+		long nrofRecords = 0;
+
+		FileOutputStream fos = new FileOutputStream(fileName);
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(fos, 1 << 16));
+		try {
+			out.write(new byte[HEADER_SIZE]); // filled in the end
+
+			List<ExternalEvent> events = reader.readEvents(CONVERT_CHUNK);
+			while (events.size() > 0) {
+				for (ExternalEvent ee : events) {
+					writeRecord(out, ee, stringIndexes, strings);
+					nrofRecords++;
+				}
+				events = reader.readEvents(CONVERT_CHUNK);
+			}
+
+			long stringTableOffset = HEADER_SIZE + nrofRecords * RECORD_SIZE;
+			out.writeInt(strings.size());
+			for (String s : strings) {
+				out.writeUTF(s);
+			}
+			out.flush();
+
+			fos.getChannel().position(0);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(nrofRecords);
+			out.writeLong(stringTableOffset);
+		} finally {
+			out.close();
+		}
+
+		return nrofRecords;
+	}
+
+	/**
+	 * Writes one event as a record
+	 */
+	private static void writeRecord(DataOutputStream out, ExternalEvent ee,
+			Map<String, Integer> stringIndexes, List<String> strings)
+			throws IOException {
+		byte type;
+		int host1;
+		int host2;
+		String id;
+		int size = 0;
+		int respSize = 0;
+
+		if (ee instanceof ConnectionEvent) {
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			type = ce.isUp ? TYPE_CONN_UP : TYPE_CONN_DOWN;
+			host1 = ce.fromAddr;
+			host2 = ce.toAddr;
+			id = ce.interfaceId;
+		}
+		else if (ee instanceof MessageEvent) {
+			MessageEvent me = (MessageEvent)ee;
+			host1 = me.fromAddr;
+			host2 = me.toAddr;
+			id = me.id;
+			if (ee instanceof MessageCreateEvent) {
+				type = TYPE_CREATE;
+				size = ((MessageCreateEvent)ee).getSize();
+				respSize = ((MessageCreateEvent)ee).getResponseSize();
+			}
+			else if (ee instanceof MessageRelayEvent) {
+				int stage = ((MessageRelayEvent)ee).getStage();
+				type = stage == MessageRelayEvent.SENDING ? TYPE_SEND :
+					(stage == MessageRelayEvent.TRANSFERRED ?
+							TYPE_DELIVERED : TYPE_ABORT);
+			}
+			else if (ee instanceof MessageDeleteEvent) {
+				type = ((MessageDeleteEvent)ee).isDrop() ?
+						TYPE_DROP : TYPE_REMOVE;
+			}
+			else {
+				throw new SimError("Can't store event " + ee);
+			}
+		}
+		else {
+			throw new SimError("Can't store event " + ee);
+		}
+
+		int stringIndex = -1;
+		if (id != null) {
+			Integer index = stringIndexes.get(id);
+			if (index == null) {
+				index = strings.size();
+				stringIndexes.put(id, index);
+				strings.add(id);
+			}
+			stringIndex = index;
+		}
+
+		out.writeDouble(ee.getTime());
+		out.writeByte(type);
+		out.writeByte(0);
+		out.writeShort(0);
+		out.writeInt(host1);
+		out.writeInt(host2);
+		out.writeInt(stringIndex);
+		out.writeInt(size);
+		out.writeInt(respSize);
+	}
+
+	/**
+	 * Converts a standard external events file to a compact file.
+	 * @param args The input file and the output file
+	 * @throws IOException if the conversion fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Usage: CompactEventsReader <standard events " +
+					"file> <compact events file (" + COMPACT_EXT + ")>");
+			System.exit(1);
+		}
+
+		ExternalEventsReader reader =
+			new StandardEventsReader(new File(args[0]));
+		long nrof = storeToCompactFile(args[1], reader);
+		reader.close();
+		System.out.println("Stored " + nrof + " events to " + args[1]);
+	}
+}
@@ -48,6 +48,9 @@ public class EventQueueHandler  {
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** read external events ahead in a background thread -setting id
+	 * ({@value}). Boolean. Default = true. */
+	public static final String PREFETCH_SETTING = "prefetch";
 
 	private List<EventQueue> queues;
 
@@ -70,8 +73,9 @@ public class EventQueueHandler  {
 					preload = s.getInt(PRELOAD_SETTING);
 				}
 				path = s.getSetting(PATH_SETTING);
+				boolean prefetch = s.getBoolean(PREFETCH_SETTING, true);
 
-				queues.add(new ExternalEventsQueue(path, preload));
+				queues.add(new ExternalEventsQueue(path, preload, prefetch));
 			}
 			else if (s.contains(CLASS_SETTING)) { // event generator class
 				String className = CLASS_PACKAGE + "." +
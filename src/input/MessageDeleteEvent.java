@@ -31,6 +31,14 @@ public class MessageDeleteEvent extends MessageEvent {
 		this.drop = drop;
 	}
 
+	/**
+	 * Returns true if the delete is caused by a drop
+	 * @return true if the delete is a drop, false if it is a normal removal
+	 */
+	public boolean isDrop() {
+		return this.drop;
+	}
+
 	/**
 	 * Deletes the message
 	 */
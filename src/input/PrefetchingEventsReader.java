@@ -0,0 +1,200 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.DTNSim;
+import core.SimError;
+
+/**
+ * External events reader that reads the events of another reader ahead in a
+ * background thread. At most {@value #NROF_BUFFERS} chunks of events are
+ * read ahead, so the simulation thread can process one chunk while the next
+ * ones are read and parsed, and has to wait only if the reading is slower
+ * than the simulation. Errors of the background reading are thrown (as
+ * SimErrors) to the reading thread when it reaches the chunk that failed.
+ */
+public class PrefetchingEventsReader implements ExternalEventsReader {
+	/** Maximum number of event chunks read ahead ({@value}) */
+	public static final int NROF_BUFFERS = 2;
+
+	/** readers whose background threads may still be running */
+	private static List<PrefetchingEventsReader> readers;
+
+	static {
+		DTNSim.registerForReset(PrefetchingEventsReader.class.
+				getCanonicalName());
+		reset();
+	}
+
+	private ExternalEventsReader reader;
+	private BlockingQueue<Chunk> chunks;
+	private Thread thread;
+	private volatile boolean closed;
+	/** the chunk the events are currently returned from */
+	private List<ExternalEvent> current;
+	/** index of the next event to return from the current chunk */
+	private int currentIndex;
+	private boolean allEventsRead;
+
+	/**
+	 * Constructor. Starts reading events from the given reader.
+	 * @param reader The reader whose events are read ahead
+	 * @param chunkSize Number of events to read at once
+	 */
+	public PrefetchingEventsReader(ExternalEventsReader reader,
+			final int chunkSize) {
+		this.reader = reader;
+		this.chunks = new ArrayBlockingQueue<Chunk>(NROF_BUFFERS);
+		this.current = new ArrayList<ExternalEvent>(0);
+		this.currentIndex = 0;
+		this.allEventsRead = false;
+		this.closed = false;
+
+		this.thread = new Thread("PrefetchingEventsReader") {
+			@Override
+			public void run() {
+				prefetch(chunkSize);
+			}
+		};
+		this.thread.setDaemon(true);
+		synchronized (readers) {
+			readers.add(this);
+		}
+		this.thread.start();
+	}
+
+	/**
+	 * Reads chunks of events to the queue until all events are read, the
+	 * reading fails or the reader is closed
+	 * @param chunkSize Number of events to read at once
+	 */
+	private void prefetch(int chunkSize) {
+		try {
+			while (!closed) {
+				List<ExternalEvent> events = reader.readEvents(chunkSize);
+				chunks.put(new Chunk(events, null));
+				if (events.size() == 0) {
+					break; // all events read
+				}
+			}
+		} catch (InterruptedException e) {
+			// closed while waiting for space in the queue
+		} catch (SimError e) {
+			putError(e);
+		} catch (Exception e) {
+			putError(e);
+		} finally {
+			reader.close();
+			synchronized (readers) {
+				readers.remove(this);
+			}
+		}
+	}
+
+	/**
+	 * Puts an error of reading to the queue
+	 * @param error The error (SimError or Exception)
+	 */
+	private void putError(Throwable error) {
+		try {
+			chunks.put(new Chunk(null, error));
+		} catch (InterruptedException e) {
+			// closed while waiting for space in the queue
+		}
+	}
+
+	/**
+	 * Returns the next events that have been read ahead. Waits only if no
+	 * events have been read yet.
+	 * @param nrof Maximum number of events to return
+	 * @return Events in a List (empty list if there are no more events)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		if (currentIndex >= current.size() && !allEventsRead) {
+			current = takeChunk();
+			currentIndex = 0;
+			allEventsRead = current.size() == 0;
+		}
+
+		int left = current.size() - currentIndex;
+		if (currentIndex == 0 && nrof >= left) {
+			currentIndex = left; // return the whole chunk as it is
+			return current;
+		}
+
+		int count = Math.min(nrof, left);
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>(
+				current.subList(currentIndex, currentIndex + count));
+		currentIndex += count;
+		return events;
+	}
+
+	/**
+	 * Takes the next chunk from the queue, waiting for it if necessary
+	 * @return The events of the chunk
+	 */
+	private List<ExternalEvent> takeChunk() {
+		if (closed) {
+			throw new SimError("Reading events from a closed reader");
+		}
+		Chunk chunk;
+		try {
+			chunk = chunks.take();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while waiting for events", e);
+		}
+
+		if (chunk.error != null) {
+			allEventsRead = true;
+			if (chunk.error instanceof SimError) {
+				throw (SimError)chunk.error;
+			}
+			throw new SimError("Reading external events failed: " +
+					chunk.error.getMessage(), (Exception)chunk.error);
+		}
+		return chunk.events;
+	}
+
+	/**
+	 * Stops the background reading and closes the reader.
+	 */
+	public void close() {
+		this.closed = true;
+		this.thread.interrupt();
+	}
+
+	/**
+	 * Stops the background reading of all readers
+	 */
+	public static void reset() {
+		if (readers != null) {
+			synchronized (readers) {
+				for (PrefetchingEventsReader r : readers) {
+					r.closed = true;
+					r.thread.interrupt();
+				}
+			}
+		}
+		readers = new ArrayList<PrefetchingEventsReader>();
+	}
+
+	/**
+	 * Chunk of events read in the background or the error of reading them
+	 */
+	private static class Chunk {
+		private List<ExternalEvent> events;
+		private Throwable error;
+
+		public Chunk(List<ExternalEvent> events, Throwable error) {
+			this.events = events;
+			this.error = error;
+		}
+	}
+}
@@ -9,12 +9,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.lang.Integer;
-import java.lang.NumberFormatException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Pattern;
 
 import core.SimError;
 
@@ -66,12 +62,11 @@ public class StandardEventsReader implements ExternalEventsReader {
 	/** Message identifier to use to refer to all messages ({@value}) */
 	public static final String ALL_MESSAGES_ID = "*";
 
-	//private Scanner scanner;
 	private BufferedReader reader;
+	private LineTokenizer tokenizer = new LineTokenizer();
 
 	public StandardEventsReader(File eventsFile){
 		try {
-			//this.scanner = new Scanner(eventsFile);
 			this.reader = new BufferedReader(new FileReader(eventsFile));
 		} catch (FileNotFoundException e) {
 			throw new SimError(e.getMessage(),e);
@@ -82,135 +77,27 @@ public class StandardEventsReader implements ExternalEventsReader {
 	public List<ExternalEvent> readEvents(int nrof) {
 		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
 		int eventsRead = 0;
-		// skip empty and comment lines
-		Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
 
-		String line;
-		try {
-			line = this.reader.readLine();
-		} catch (IOException e1) {
-			throw new SimError("Reading from external event file failed.");
-		}
-		while (eventsRead < nrof && line != null) {
-			Scanner lineScan = new Scanner(line);
-			if (skipPattern.matcher(line).matches()) {
-				// skip empty and comment lines
-				try {
-					line = this.reader.readLine();
-				} catch (IOException e) {
-					throw new SimError("Reading from external event file " +
-							"failed.");
-				}
-				continue;
+		while (eventsRead < nrof) {
+			String line;
+			try {
+				line = this.reader.readLine();
+			} catch (IOException e) {
+				throw new SimError("Reading from external event file failed.");
+			}
+			if (line == null) {
+				break; // end of file
 			}
 
-			double time;
-			String action;
-			String msgId;
-			int hostAddr;
-			int host2Addr;
+			tokenizer.setLine(line);
+			if (!tokenizer.hasNext() || tokenizer.startsWith('#')) {
+				continue; // skip empty and comment lines
+			}
 
 			try {
-				time = lineScan.nextDouble();
-				action = lineScan.next();
-
-				if (action.equals(DROP)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
-							time, true));
-				}
-				else if (action.equals(REMOVE)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
-							time, false));
-				}
-				else if (action.equals(CONNECTION)) {
-					String connEventType;
-					boolean isUp;
-					hostAddr = getHostAddress(lineScan.next());
-					host2Addr = getHostAddress(lineScan.next());
-					connEventType = lineScan.next();
-
-					String interfaceId = null;
-					if (lineScan.hasNext()) {
-						interfaceId = lineScan.next();
-					}
-
-					if (connEventType.equalsIgnoreCase(CONNECTION_UP)) {
-						isUp = true;
-					}
-					else if (connEventType.equalsIgnoreCase(CONNECTION_DOWN)) {
-						isUp = false;
-					}
-					else {
-						throw new SimError("Unknown up/down value '" +
-								connEventType + "'");
-					}
-
-					ConnectionEvent ce = new ConnectionEvent(hostAddr,
-							host2Addr, interfaceId, isUp, time);
-
-					events.add(ce);
-				}
-				else {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-
-					host2Addr = getHostAddress(lineScan.next());
-
-					if (action.equals(CREATE)){
-						int size = 0;
-
-						if (lineScan.hasNextInt()){
-							size = lineScan.nextInt();
-						}
-						else if (lineScan.hasNext()){
-							size = convertToInteger(lineScan.next());
-						}else{
-							throw new Exception("Invalid number of columns for CREATE event");
-						}
-
-						int respSize = 0;
-						if (lineScan.hasNextInt()) {
-							respSize = lineScan.nextInt();
-						}
-						else if(lineScan.hasNext()) {
-							respSize = convertToInteger(lineScan.next());
-						}
-						events.add(new MessageCreateEvent(hostAddr, host2Addr,
-								msgId, size, respSize, time));
-					}
-					else {
-						int stage = -1;
-						if (action.equals(SEND)) {
-							stage = MessageRelayEvent.SENDING;
-						}
-						else if (action.equals(DELIVERED)) {
-							stage = MessageRelayEvent.TRANSFERRED;
-						}
-						else if (action.equals(ABORT)) {
-							stage = MessageRelayEvent.ABORTED;
-						}
-						else {
-							throw new SimError("Unknown action '" + action +
-								"' in external events");
-						}
-						events.add(new MessageRelayEvent(hostAddr, host2Addr,
-								msgId, time, stage));
-					}
-				}
-				// discard the newline in the end
-				if (lineScan.hasNextLine()) {
-					lineScan.nextLine(); // TODO: test
-				}
+				events.add(parseEvent());
 				eventsRead++;
-				if (eventsRead < nrof) {
-					line = this.reader.readLine();
-				}
 			} catch (Exception e) {
-				e.printStackTrace();
 				throw new SimError("Can't parse external event " +
 						(eventsRead+1) + " from '" + line + "'", e);
 			}
@@ -219,6 +106,90 @@ public class StandardEventsReader implements ExternalEventsReader {
 		return events;
 	}
 
+	/**
+	 * Parses an event from the tokenizer's line
+	 * @return The event
+	 * @throws SimError if the line isn't a valid event
+	 */
+	private ExternalEvent parseEvent() {
+		double time = Double.parseDouble(tokenizer.next());
+		String action = tokenizer.next();
+		String msgId;
+		int hostAddr;
+		int host2Addr;
+
+		if (action.equals(DROP)) {
+			msgId = tokenizer.next();
+			hostAddr = getHostAddress(tokenizer.next());
+			return new MessageDeleteEvent(hostAddr, msgId, time, true);
+		}
+		else if (action.equals(REMOVE)) {
+			msgId = tokenizer.next();
+			hostAddr = getHostAddress(tokenizer.next());
+			return new MessageDeleteEvent(hostAddr, msgId, time, false);
+		}
+		else if (action.equals(CONNECTION)) {
+			boolean isUp;
+			hostAddr = getHostAddress(tokenizer.next());
+			host2Addr = getHostAddress(tokenizer.next());
+			String connEventType = tokenizer.next();
+
+			String interfaceId = null;
+			if (tokenizer.hasNext()) {
+				interfaceId = tokenizer.next();
+			}
+
+			if (connEventType.equalsIgnoreCase(CONNECTION_UP)) {
+				isUp = true;
+			}
+			else if (connEventType.equalsIgnoreCase(CONNECTION_DOWN)) {
+				isUp = false;
+			}
+			else {
+				throw new SimError("Unknown up/down value '" +
+						connEventType + "'");
+			}
+
+			return new ConnectionEvent(hostAddr, host2Addr, interfaceId,
+					isUp, time);
+		}
+
+		msgId = tokenizer.next();
+		hostAddr = getHostAddress(tokenizer.next());
+		host2Addr = getHostAddress(tokenizer.next());
+
+		if (action.equals(CREATE)){
+			if (!tokenizer.hasNext()) {
+				throw new SimError("Invalid number of columns for CREATE " +
+						"event");
+			}
+			int size = convertToInteger(tokenizer.next());
+
+			int respSize = 0;
+			if (tokenizer.hasNext()) {
+				respSize = convertToInteger(tokenizer.next());
+			}
+			return new MessageCreateEvent(hostAddr, host2Addr, msgId, size,
+					respSize, time);
+		}
+
+		int stage;
+		if (action.equals(SEND)) {
+			stage = MessageRelayEvent.SENDING;
+		}
+		else if (action.equals(DELIVERED)) {
+			stage = MessageRelayEvent.TRANSFERRED;
+		}
+		else if (action.equals(ABORT)) {
+			stage = MessageRelayEvent.ABORTED;
+		}
+		else {
+			throw new SimError("Unknown action '" + action +
+				"' in external events");
+		}
+		return new MessageRelayEvent(hostAddr, host2Addr, msgId, time, stage);
+	}
+
 	/**
 	 * Parses a host address from a hostId string (the numeric part after
 	 * optional non-numeric part).
@@ -227,19 +198,21 @@ public class StandardEventsReader implements ExternalEventsReader {
 	 * @throws SimError if no address could be parsed from the id
 	 */
 	private int getHostAddress(String hostId) {
-		String addressPart = "";
-		if (hostId.matches("^\\d+$")) {
-			addressPart = hostId; // host id is only the address
-		}
-		else if (hostId.matches("^\\D+\\d+$")) {
-			String [] parts = hostId.split("\\D");
-			addressPart = parts[parts.length-1]; // last occurence is the addr
+		int digitsStart = hostId.length();
+		while (digitsStart > 0 &&
+				Character.isDigit(hostId.charAt(digitsStart - 1))) {
+			digitsStart--;
 		}
-		else {
+		if (digitsStart == hostId.length()) {
 			throw new SimError("Invalid host ID '" + hostId + "'");
 		}
+		for (int i = 0; i < digitsStart; i++) {
+			if (Character.isDigit(hostId.charAt(i))) {
+				throw new SimError("Invalid host ID '" + hostId + "'");
+			}
+		}
 
-		return Integer.parseInt(addressPart);
+		return Integer.parseInt(hostId.substring(digitsStart));
 	}
 
 	public void close() {
@@ -248,12 +221,35 @@ public class StandardEventsReader implements ExternalEventsReader {
 		} catch (IOException e) {}
 	}
 
+	/**
+	 * Converts a size value with an optional data unit (k, M, G, kiB, MiB or
+	 * GiB) to an integer
+	 * @param str The value to convert
+	 * @return The value as an integer
+	 * @throws NumberFormatException if the value isn't valid
+	 */
 	private int convertToInteger(String str){
-		String dataUnit = str.replaceAll("[\\d.]","").trim();
-		String numericPart = str.replaceAll("[^\\d.]","");
-		int number = Integer.parseInt(numericPart);
+		int unitStart = 0;
+		while (unitStart < str.length() &&
+				Character.isDigit(str.charAt(unitStart))) {
+			unitStart++;
+		}
+		if (unitStart == str.length()) {
+			return Integer.parseInt(str); // no data unit
+		}
+
+		String dataUnit = str.substring(unitStart);
+		int number;
+		try {
+			number = Integer.parseInt(str.substring(0, unitStart));
+		} catch (NumberFormatException e) {
+			number = -1;
+		}
 
-		if (dataUnit.equals("k")) {
+		if (number < 0) {
+			throw new NumberFormatException("Invalid number format for StandardEventsReader: ["+str+"]");
+		}
+		else if (dataUnit.equals("k")) {
 			return (number * 1000);
 		}
 		else if (dataUnit.equals("M")) {
@@ -276,4 +272,63 @@ public class StandardEventsReader implements ExternalEventsReader {
 		}
 	}
 
+	/**
+	 * Splits a line to whitespace separated tokens. The same tokenizer is
+	 * used for all the lines.
+	 */
+	private static class LineTokenizer {
+		private String line;
+		private int pos;
+
+		/**
+		 * Starts tokenizing a new line
+		 * @param line The line
+		 */
+		public void setLine(String line) {
+			this.line = line;
+			this.pos = 0;
+		}
+
+		/**
+		 * Returns true if the line has more tokens
+		 * @return true if the line has more tokens
+		 */
+		public boolean hasNext() {
+			skipWhitespace();
+			return pos < line.length();
+		}
+
+		/**
+		 * Returns true if the next token starts with the given character
+		 * @param c The character
+		 * @return true if the next token starts with the character
+		 */
+		public boolean startsWith(char c) {
+			return hasNext() && line.charAt(pos) == c;
+		}
+
+		/**
+		 * Returns the next token
+		 * @return The next token
+		 * @throws SimError if there are no more tokens
+		 */
+		public String next() {
+			if (!hasNext()) {
+				throw new SimError("Missing field");
+			}
+			int start = pos;
+			while (pos < line.length() &&
+					!Character.isWhitespace(line.charAt(pos))) {
+				pos++;
+			}
+			return line.substring(start, pos);
+		}
+
+		private void skipWhitespace() {
+			while (pos < line.length() &&
+					Character.isWhitespace(line.charAt(pos))) {
+				pos++;
+			}
+		}
+	}
 }
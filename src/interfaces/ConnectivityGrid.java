@@ -5,13 +5,15 @@
 package interfaces;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 import movement.MovementModel;
 
-import core.Coord;
 import core.DTNSim;
+import core.HostPositions;
 import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
@@ -53,15 +55,41 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public static final String CELL_SIZE_MULT_S = "cellSizeMult";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
+	/**
+	 * Should every unordered pair of interfaces be checked for a new
+	 * connection only once per update round -setting id ({@value}).
+	 * Used in {@link World#OPTIMIZATION_SETTINGS_NS} name space. Boolean
+	 * (true/false) variable. Default is false.
+	 * If enabled, the cells of all interfaces are updated in the beginning
+	 * of every update round and interfaces don't try to connect to the
+	 * interfaces that have already looked for new connections in the same
+	 * round. This roughly halves the number of checks but the side that
+	 * creates a connection may differ from the normal mode.
+	 */
+	public static final String CHECK_PAIRS_ONCE_S = "checkPairsOnce";
 
 	private GridCell[][] cells;
 	private HashMap<NetworkInterface, GridCell> ginterfaces;
+	/** all interfaces in the order they were added */
+	private ArrayList<NetworkInterface> interfaceList;
+	/** number of the current update round */
+	private int updateRound;
 	private int cellSize;
 	private int rows;
 	private int cols;
 	private static int worldSizeX;
 	private static int worldSizeY;
 	private static int cellSizeMultiplier;
+	private static boolean checkPairsOnce;
+
+	/** interfaces sorted by their cells at the time of the latest snapshot
+	 * or null if there is no valid snapshot */
+	private NetworkInterface[] snapInterfaces;
+	/** index of the first interface of each cell in snapInterfaces; the
+	 * interfaces of cell (row,col) start at index row*(cols+2)+col */
+	private int[] snapCellStart;
+	/** sort keys used by retainNearInterfaces */
+	private long[] sortKeys;
 
 	static HashMap<Integer,ConnectivityGrid> gridobjects;
 
@@ -85,6 +113,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		else {
 			cellSizeMultiplier = DEF_CON_CELL_SIZE_MULT;
 		}
+		checkPairsOnce = s.getBoolean(CHECK_PAIRS_ONCE_S, false);
 		if (cellSizeMultiplier < 1) {
 			throw new SettingsError("Too small value (" + cellSizeMultiplier +
 					") for " + World.OPTIMIZATION_SETTINGS_NS +
@@ -106,10 +135,12 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 
 		for (int i=0; i<rows+2; i++) {
 			for (int j=0; j<cols+2; j++) {
-				this.cells[i][j] = new GridCell();
+				this.cells[i][j] = new GridCell(i, j);
 			}
 		}
 		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		interfaceList = new ArrayList<NetworkInterface>();
+		updateRound = 0;
 	}
 
 	/**
@@ -137,9 +168,12 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
-		GridCell c = cellFromCoord(ni.getLocation());
+		GridCell c = cellOf(ni);
 		c.addInterface(ni);
-		ginterfaces.put(ni,c);
+		if (ginterfaces.put(ni,c) == null) {
+			interfaceList.add(ni);
+		}
+		snapInterfaces = null;
 	}
 
 	/**
@@ -151,7 +185,10 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		if (c != null) {
 			c.removeInterface(ni);
 		}
-		ginterfaces.remove(ni);
+		if (ginterfaces.remove(ni) != null) {
+			interfaceList.remove(ni);
+		}
+		snapInterfaces = null;
 	}
 
 	/**
@@ -170,7 +207,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public void updateLocation(NetworkInterface ni) {
 		GridCell oldCell = (GridCell)ginterfaces.get(ni);
-		GridCell newCell = cellFromCoord(ni.getLocation());
+		GridCell newCell = cellOf(ni);
 
 		if (newCell != oldCell) {
 			oldCell.moveInterface(ni, newCell);
@@ -179,15 +216,25 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	}
 
 	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells
+	 * Returns the row of the cell where the interface currently is
+	 * @param ni The interface
+	 * @return The row index
 	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
+	private int rowOf(NetworkInterface ni) {
 		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
+		int address = ni.getHost().getAddress();
+		return (int)(HostPositions.getY(address)/cellSize) + 1;
+	}
+
+	/**
+	 * Returns the column of the cell where the interface currently is
+	 * @param ni The interface
+	 * @return The column index
+	 */
+	private int colOf(NetworkInterface ni) {
+		// +1 due empty cells on both sides of the matrix
+		int address = ni.getHost().getAddress();
+		return (int)(HostPositions.getX(address)/cellSize) + 1;
 	}
 
 	/**
@@ -206,17 +253,16 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	}
 
 	/**
-	 * Get the cell having the specific coordinates
-	 * @param c Coordinates
+	 * Get the cell where the interface currently is
+	 * @param ni The interface
 	 * @return The cell
 	 */
-	private GridCell cellFromCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
+	private GridCell cellOf(NetworkInterface ni) {
+		int row = rowOf(ni);
+		int col = colOf(ni);
 
 		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " +
-		c + " is out of world's bounds";
+		ni.getLocation() + " is out of world's bounds";
 
 		return this.cells[row][col];
 	}
@@ -240,8 +286,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		GridCell loc = (GridCell)ginterfaces.get(ni);
 
 		if (loc != null) {
-			GridCell[] neighbors =
-				getNeighborCellsByCoord(ni.getLocation());
+			GridCell[] neighbors = getNeighborCells(rowOf(ni), colOf(ni));
 			for (int i=0; i < neighbors.length; i++) {
 				niList.addAll(neighbors[i].getInterfaces());
 			}
@@ -251,6 +296,198 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	}
 
 
+	/**
+	 * Calls the visitor for all interfaces in the neighboring cells (and in
+	 * the same cell) of the given interface, in the same order as
+	 * {@link #getNearInterfaces(NetworkInterface)} lists them, without
+	 * allocating any new objects.
+	 * @param ni The interface whose neighboring interfaces are visited
+	 * @param visitor The visitor to call
+	 */
+	@Override
+	public void visitNearInterfaces(NetworkInterface ni,
+			NearInterfaceVisitor visitor) {
+		if (ginterfaces.get(ni) == null) {
+			return;
+		}
+
+		int row = rowOf(ni);
+		int col = colOf(ni);
+		for (int i = row - 1; i <= row + 1; i++) {
+			GridCell[] cellRow = cells[i];
+			for (int j = col - 1; j <= col + 1; j++) {
+				ArrayList<NetworkInterface> list = cellRow[j].interfaces;
+				for (int k = 0, n = list.size(); k < n; k++) {
+					visitor.visit(list.get(k));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts a new update round. If every pair of interfaces is checked only
+	 * once per round, updates the cells of all interfaces so that all
+	 * interfaces see each other in the cells they currently are.
+	 */
+	@Override
+	public void startUpdateRound() {
+		if (!checkPairsOnce) {
+			return;
+		}
+
+		updateRound++;
+		for (int i = 0, n = interfaceList.size(); i < n; i++) {
+			updateLocation(interfaceList.get(i));
+		}
+	}
+
+	@Override
+	public boolean checksPairsOnce() {
+		return checkPairsOnce;
+	}
+
+	@Override
+	public int getUpdateRound() {
+		return updateRound;
+	}
+
+	/**
+	 * Returns the index of the cell where the interface currently is in the
+	 * snapshot arrays
+	 * @param ni The interface
+	 * @return The cell index
+	 */
+	private int snapIndexOf(NetworkInterface ni) {
+		return rowOf(ni) * (cols + 2) + colOf(ni);
+	}
+
+	/**
+	 * Stores the current cells of all interfaces in a compact array sorted
+	 * by the cells. Unlike the cells of the grid, which are updated only when
+	 * an interface is updated, the snapshot contains the exact current cell
+	 * of every interface.
+	 * @return true
+	 */
+	@Override
+	public boolean snapshotLocations() {
+		int nrofCells = (rows + 2) * (cols + 2);
+		int nrofInterfaces = ginterfaces.size();
+		NetworkInterface[] unsorted = new NetworkInterface[nrofInterfaces];
+		int[] cellIndexes = new int[nrofInterfaces];
+
+		if (snapCellStart == null) {
+			snapCellStart = new int[nrofCells + 1];
+		} else {
+			Arrays.fill(snapCellStart, 0);
+		}
+
+		/* counting sort by the cell index */
+		int i = 0;
+		for (NetworkInterface ni : ginterfaces.keySet()) {
+			int index = snapIndexOf(ni);
+			unsorted[i] = ni;
+			cellIndexes[i] = index;
+			snapCellStart[index + 1]++;
+			i++;
+		}
+		for (i = 0; i < nrofCells; i++) {
+			snapCellStart[i + 1] += snapCellStart[i];
+		}
+
+		NetworkInterface[] sorted = new NetworkInterface[nrofInterfaces];
+		int[] next = Arrays.copyOf(snapCellStart, nrofCells);
+		for (i = 0; i < nrofInterfaces; i++) {
+			sorted[next[cellIndexes[i]]++] = unsorted[i];
+		}
+
+		this.snapInterfaces = sorted;
+		return true;
+	}
+
+	/**
+	 * Adds all interfaces that were in the neighboring cells (or in the
+	 * same cell) of the given interface at the time of the latest snapshot
+	 * to the given list. Can be called concurrently.
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @param near The list where to add the interfaces
+	 * @return True if the interfaces were added, false if there was no
+	 * valid snapshot
+	 */
+	@Override
+	public boolean getSnapshotNearInterfaces(NetworkInterface ni,
+			List<NetworkInterface> near) {
+		NetworkInterface[] snap = this.snapInterfaces;
+		if (snap == null) {
+			return false;
+		}
+		if (!ginterfaces.containsKey(ni)) {
+			return true; /* getNearInterfaces returns nothing either */
+		}
+
+		int index = snapIndexOf(ni);
+		int rowLength = cols + 2;
+		/* three neighboring cells of a row are next to each other */
+		for (int first = index - rowLength - 1; first <= index + rowLength - 1;
+				first += rowLength) {
+			for (int i = snapCellStart[first], n = snapCellStart[first + 3];
+					i < n; i++) {
+				near.add(snap[i]);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes the interfaces that are not in the neighboring cells of the
+	 * given interface and orders the rest the same way as
+	 * {@link #getNearInterfaces(NetworkInterface)} lists them.
+	 * @param ni The interface whose neighboring interfaces are retained
+	 * @param candidates The candidate interfaces
+	 */
+	@Override
+	public void retainNearInterfaces(NetworkInterface ni,
+			List<NetworkInterface> candidates) {
+		int n = 0;
+
+		if (ginterfaces.get(ni) != null) {
+			int row = rowOf(ni);
+			int col = colOf(ni);
+
+			if (sortKeys == null || sortKeys.length < candidates.size()) {
+				sortKeys = new long[candidates.size() * 2];
+			}
+
+			for (int i = 0, size = candidates.size(); i < size; i++) {
+				NetworkInterface c = candidates.get(i);
+				GridCell cell = ginterfaces.get(c);
+				if (cell == null) {
+					continue;
+				}
+				int dRow = cell.row - row;
+				int dCol = cell.col - col;
+				if (dRow < -1 || dRow > 1 || dCol < -1 || dCol > 1) {
+					continue;
+				}
+
+				/* order by the neighbor cell and by the position in it */
+				long key = ((long)((dRow + 1) * 3 + dCol + 1) << 32) |
+					cell.interfaces.indexOf(c);
+				int j = n;
+				while (j > 0 && sortKeys[j - 1] > key) {
+					sortKeys[j] = sortKeys[j - 1];
+					candidates.set(j, candidates.get(j - 1));
+					j--;
+				}
+				sortKeys[j] = key;
+				candidates.set(j, c);
+				n++;
+			}
+		}
+
+		candidates.subList(n, candidates.size()).clear();
+	}
+
 	/**
 	 * Returns a string representation of the ConnectivityCells object
 	 * @return a string representation of the ConnectivityCells object
@@ -268,10 +505,14 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		// how large array is initially chosen
 		private static final int EXPECTED_INTERFACE_COUNT = 5;
 		private ArrayList<NetworkInterface> interfaces;
+		/** row and column of this cell in the grid */
+		private final int row, col;
 
-		private GridCell() {
+		private GridCell(int row, int col) {
 			this.interfaces = new ArrayList<NetworkInterface>(
 					EXPECTED_INTERFACE_COUNT);
+			this.row = row;
+			this.col = col;
 		}
 
 		/**
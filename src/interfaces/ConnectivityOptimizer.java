@@ -4,15 +4,86 @@
  */
 package interfaces;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 
+import core.DTNSim;
 import core.NetworkInterface;
+import core.Settings;
+import core.World;
 
 /**
  * A superclass for schemes for optimizing the location of possible contacts
  * with network interfaces of a specific range
  */
 abstract public class ConnectivityOptimizer {
+	/**
+	 * Class name of the connectivity optimizer -setting id ({@value}).
+	 * Used in {@link World#OPTIMIZATION_SETTINGS_NS} name space. The class
+	 * must be in the interfaces package and have a constructor that takes
+	 * a {@link Settings} object. Default is {@link #DEF_OPTIMIZER}.
+	 */
+	public static final String OPTIMIZER_S = "connectivityOptimizer";
+	/** Default connectivity optimizer class name ({@value}) */
+	public static final String DEF_OPTIMIZER = "ConnectivityGrid";
+	/** package where the optimizer classes are looked from */
+	private static final String OPTIMIZER_PACKAGE = "interfaces.";
+
+	/** optimizer class name used in this simulation */
+	private static String optimizerClass;
+	/** created (other than grid) optimizers by interface type keys */
+	private static HashMap<Integer, ConnectivityOptimizer> optimizers;
+
+	static {
+		DTNSim.registerForReset(ConnectivityOptimizer.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		optimizers = new HashMap<Integer, ConnectivityOptimizer>();
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		optimizerClass = s.getSetting(OPTIMIZER_S, DEF_OPTIMIZER);
+	}
+
+	/**
+	 * Returns the connectivity optimizer for interfaces of the given type.
+	 * All interfaces whose type has the same key share the same optimizer.
+	 * The type of the optimizer is defined by the {@link #OPTIMIZER_S}
+	 * setting.
+	 * @param key A hash value that separates different interface types
+	 * @param maxRange Maximum range of the interfaces using the optimizer
+	 * @return The connectivity optimizer for the interface type
+	 */
+	public static ConnectivityOptimizer getOptimizer(int key,
+			double maxRange) {
+		if (DEF_OPTIMIZER.equals(optimizerClass)) {
+			return ConnectivityGrid.ConnectivityGridFactory(key, maxRange);
+		}
+
+		ConnectivityOptimizer opt = optimizers.get(key);
+		if (opt == null) {
+			Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+			opt = (ConnectivityOptimizer)s.createIntializedObject(
+					OPTIMIZER_PACKAGE + optimizerClass);
+			optimizers.put(key, opt);
+		}
+		return opt;
+	}
+
+	/**
+	 * Callback for visiting the interfaces near a network interface without
+	 * collecting them to a new collection
+	 * (see {@link ConnectivityOptimizer#visitNearInterfaces}).
+	 */
+	public interface NearInterfaceVisitor {
+		/**
+		 * Called for every near interface
+		 * @param ni The near interface
+		 */
+		public void visit(NetworkInterface ni);
+	}
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
@@ -40,9 +111,100 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Calls the visitor for every network interface that
+	 * {@link #getNearInterfaces(NetworkInterface)} would return, in the same
+	 * order. The visitor must not modify the optimizer.
+	 * The default implementation just iterates over the collection returned
+	 * by {@link #getNearInterfaces(NetworkInterface)}.
+	 *
+	 * @param ni network interface that needs to be connected
+	 * @param visitor The visitor to call
+	 */
+	public void visitNearInterfaces(NetworkInterface ni,
+			NearInterfaceVisitor visitor) {
+		for (NetworkInterface n : getNearInterfaces(ni)) {
+			visitor.visit(n);
+		}
+	}
+
+	/**
+	 * Called in the beginning of every round of host updates, before any
+	 * interface is updated. The default implementation does nothing.
+	 */
+	public void startUpdateRound() { }
+
+	/**
+	 * Returns true if interfaces should look for new connections only with
+	 * the interfaces that haven't done so yet in the current update round,
+	 * i.e., if every unordered pair of interfaces should be checked only
+	 * once per round. The default implementation returns false.
+	 * @return True if each pair should be checked only once per round
+	 */
+	public boolean checksPairsOnce() {
+		return false;
+	}
+
+	/**
+	 * Returns the number of the current update round
+	 * (see {@link #startUpdateRound()}). The default implementation
+	 * returns always 0.
+	 * @return The number of the current update round
+	 */
+	public int getUpdateRound() {
+		return 0;
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
 	 */
 	abstract public Collection<NetworkInterface> getAllInterfaces();
+
+	/**
+	 * Stores the current locations of all interfaces for the parallel
+	 * compute phase of the world update. After this call,
+	 * {@link #getSnapshotNearInterfaces(NetworkInterface, List)} can be
+	 * called concurrently from multiple threads until the optimizer is
+	 * modified again. The default implementation doesn't support snapshots.
+	 * @return True if the snapshot was taken, false if not supported
+	 */
+	public boolean snapshotLocations() {
+		return false;
+	}
+
+	/**
+	 * Finds all interfaces that might be connected with the given interface
+	 * based on the locations stored by the latest
+	 * {@link #snapshotLocations()} call. Does not modify the optimizer.
+	 * @param ni The network interface that needs to be connected
+	 * @param near The list where the found interfaces are added to
+	 * @return True if the interfaces were found, false if the optimizer has
+	 * no valid snapshot
+	 */
+	public boolean getSnapshotNearInterfaces(NetworkInterface ni,
+			List<NetworkInterface> near) {
+		return false;
+	}
+
+	/**
+	 * Removes from the given list all interfaces that
+	 * {@link #getNearInterfaces(NetworkInterface)} would not return for the
+	 * given interface at the moment and orders the rest the same way
+	 * as that method would.
+	 * @param ni The network interface that needs to be connected
+	 * @param candidates The candidate interfaces
+	 */
+	public void retainNearInterfaces(NetworkInterface ni,
+			List<NetworkInterface> candidates) {
+		Collection<NetworkInterface> near = getNearInterfaces(ni);
+		List<NetworkInterface> ordered = new ArrayList<NetworkInterface>();
+		for (NetworkInterface n : near) {
+			if (candidates.contains(n)) {
+				ordered.add(n);
+			}
+		}
+		candidates.clear();
+		candidates.addAll(ordered);
+	}
 }
@@ -4,8 +4,8 @@
  */
 package interfaces;
 
-import java.util.Collection;
 import core.Connection;
+import core.HostPositions;
 import core.NetworkInterface;
 import core.Settings;
 import core.VBRConnection;
@@ -95,16 +95,9 @@ public class DistanceCapacityInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
+		optimizer.visitNearInterfaces(this, connector);
 
-		/* update all connections */
-		for (Connection con : getConnections()) {
-			con.update();
-		}
+		updateConnections();
 	}
 
 	/**
@@ -134,7 +127,8 @@ public class DistanceCapacityInterface extends NetworkInterface {
 		int index;
 
 		/* distance to the other interface */
-		distance = ni.getLocation().distance(this.getLocation());
+		distance = HostPositions.distance(ni.getHost().getAddress(),
+				getHost().getAddress());
 
 		if (distance >= this.transmitRange) {
 			return 0;
@@ -4,8 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.Connection;
 import core.NetworkInterface;
 import core.Settings;
@@ -98,11 +96,17 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces)
-			connect(i);
+		optimizer.visitNearInterfaces(this, connector);
+
+		updateConnections();
+	}
 
+	/**
+	 * Recalculates the current transmission speed and updates all the
+	 * connections
+	 */
+	@Override
+	public void updateConnections() {
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
 		numberOfTransmissions = 0;
@@ -128,9 +132,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 						Math.log(1.0*numberOfActive))) /
 							ntrans );
 
-		for (Connection con : getConnections()) {
-			con.update();
-		}
+		super.updateConnections();
 	}
 
 	/**
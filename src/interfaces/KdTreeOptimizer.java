@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import core.Settings;
+
+/**
+ * Connectivity optimizer that keeps the interfaces in a two dimensional
+ * k-d tree. The tree is stored implicitly in an array: the median of every
+ * sub range is in the middle of the range and the halves are split by the
+ * other axis. Unlike the grid, the tree adapts to clustered locations and
+ * queries use the range of the querying interface. See
+ * {@link SpatialIndexOptimizer} for when the tree is rebuilt.
+ */
+public class KdTreeOptimizer extends SpatialIndexOptimizer {
+	/** interface indexes in the tree order */
+	private int[] tree;
+
+	/**
+	 * Constructor.
+	 * @param s The settings (not used)
+	 */
+	public KdTreeOptimizer(Settings s) {
+		this.tree = new int[0];
+	}
+
+	@Override
+	protected void build(boolean structureChanged) {
+		int n = interfaces.size();
+		if (tree.length != n) {
+			tree = new int[n];
+		}
+		for (int i = 0; i < n; i++) {
+			tree[i] = i;
+		}
+		build(0, n, true);
+	}
+
+	/**
+	 * Builds the sub tree of the given range
+	 * @param lo First index of the range (inclusive)
+	 * @param hi Last index of the range (exclusive)
+	 * @param xAxis Is the range split by the x axis
+	 */
+	private void build(int lo, int hi, boolean xAxis) {
+		if (hi - lo < 2) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		select(xAxis ? xs : ys, lo, hi - 1, mid);
+		build(lo, mid, !xAxis);
+		build(mid + 1, hi, !xAxis);
+	}
+
+	/**
+	 * Partially sorts the given range so that the k:th element is in its
+	 * sorted position and elements before (after) it are smaller (bigger)
+	 * @param coords Coordinates of the axis to sort by
+	 * @param left First index of the range (inclusive)
+	 * @param right Last index of the range (inclusive)
+	 * @param k The index to select
+	 */
+	private void select(double[] coords, int left, int right, int k) {
+		while (right > left) {
+			int pivot = tree[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (compare(coords, tree[i], pivot) < 0) {
+					i++;
+				}
+				while (compare(coords, tree[j], pivot) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = tree[i];
+					tree[i] = tree[j];
+					tree[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	@Override
+	protected void query(double x, double y, double range,
+			NearInterfaceVisitor visitor) {
+		query(0, tree.length, true, x, y, range, visitor);
+	}
+
+	/**
+	 * Visits the matching interfaces of the sub tree of the given range
+	 * @param lo First index of the range (inclusive)
+	 * @param hi Last index of the range (exclusive)
+	 * @param xAxis Is the range split by the x axis
+	 * @see #query(double, double, double, NearInterfaceVisitor)
+	 */
+	private void query(int lo, int hi, boolean xAxis, double x, double y,
+			double range, NearInterfaceVisitor visitor) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			int index = tree[mid];
+			double dx = xs[index] - x;
+			double dy = ys[index] - y;
+			double d = xAxis ? dx : dy;
+
+			if (d >= -range) {
+				query(lo, mid, !xAxis, x, y, range, visitor);
+			}
+			if (dx <= range && dx >= -range && dy <= range && dy >= -range) {
+				visitor.visit(interfaces.get(index));
+			}
+			if (d > range) {
+				return;
+			}
+			/* continue with the upper half */
+			lo = mid + 1;
+			xAxis = !xAxis;
+		}
+	}
+}
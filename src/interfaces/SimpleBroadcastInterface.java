@@ -4,7 +4,8 @@
  */
 package interfaces;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 
 import core.CBRConnection;
 import core.Connection;
@@ -16,6 +17,22 @@ import core.Settings;
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	/** interfaces within range found by {@link #prepareUpdate()} */
+	private List<NetworkInterface> preparedNear;
+	/** is preparedNear valid for the next update */
+	private boolean nearPrepared;
+	/** update round when this interface last looked for new connections */
+	private int checkRound = -1;
+	/** tries to connect to the visited interfaces that haven't looked for
+	 * new connections yet in the current update round */
+	private final ConnectivityOptimizer.NearInterfaceVisitor pairConnector =
+		new ConnectivityOptimizer.NearInterfaceVisitor() {
+			public void visit(NetworkInterface ni) {
+				if (!isCheckedThisRound(ni)) {
+					connect(ni);
+				}
+			}
+		};
 
 	/**
 	 * Reads the interface settings from the Settings file
@@ -87,11 +104,75 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
+		boolean pairsOnce = optimizer.checksPairsOnce();
+		if (pairsOnce) {
+			if (!isScanning()) {
+				/* the scanning interfaces will check their pairs with this */
+				nearPrepared = false;
+				return;
+			}
+			this.checkRound = optimizer.getUpdateRound();
+		}
+
+		if (nearPrepared) {
+			nearPrepared = false;
+			optimizer.retainNearInterfaces(this, preparedNear);
+			for (int i=0, n = preparedNear.size(); i < n; i++) {
+				NetworkInterface ni = preparedNear.get(i);
+				if (!pairsOnce || !isCheckedThisRound(ni)) {
+					connect(ni);
+				}
+			}
+			return;
+		}
+
+		optimizer.visitNearInterfaces(this,
+				pairsOnce ? pairConnector : connector);
+	}
+
+	/**
+	 * Returns true if the given interface has already looked for new
+	 * connections in the current update round (this interface included)
+	 * @param ni The interface to check
+	 * @return true if the interface has already been updated in this round
+	 */
+	private boolean isCheckedThisRound(NetworkInterface ni) {
+		return ni instanceof SimpleBroadcastInterface &&
+			((SimpleBroadcastInterface)ni).checkRound == this.checkRound;
+	}
+
+	/**
+	 * Finds the interfaces that are within range of this interface using the
+	 * optimizer's location snapshot. The next {@link #update()} then tries
+	 * to connect only to those instead of all near interfaces. Since the
+	 * activeness of all interfaces is static, the result of the update is
+	 * the same.
+	 */
+	@Override
+	public void prepareUpdate() {
+		nearPrepared = false;
+		if (optimizer == null) {
+			return;
+		}
+
+		if (preparedNear == null) {
+			preparedNear = new ArrayList<NetworkInterface>();
+		} else {
+			preparedNear.clear();
+		}
+		if (!optimizer.getSnapshotNearInterfaces(this, preparedNear)) {
+			return;
+		}
+
+		int n = 0;
+		for (int i=0, size = preparedNear.size(); i < size; i++) {
+			NetworkInterface ni = preparedNear.get(i);
+			if (ni != this && isWithinRange(ni)) {
+				preparedNear.set(n++, ni);
+			}
 		}
+		preparedNear.subList(n, preparedNear.size()).clear();
+		nearPrepared = true;
 	}
 
 	/**
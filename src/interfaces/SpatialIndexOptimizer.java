@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+import core.HostPositions;
+import core.NetworkInterface;
+
+/**
+ * <P>Superclass for connectivity optimizers that index the exact locations
+ * of the interfaces instead of grid cells.</P>
+ *
+ * <P>The index is rebuilt lazily: when the location of any interface has
+ * changed since the last build, the next query rebuilds the index from the
+ * current locations of all interfaces. Since hosts move only before their
+ * interfaces are updated, this means one build per update round. Queries
+ * return the interfaces whose location is within a box whose half width is
+ * the transmit range of the querying interface, i.e., a superset of the
+ * interfaces that can be within range.</P>
+ */
+public abstract class SpatialIndexOptimizer extends ConnectivityOptimizer {
+	/** all interfaces in the order they were added */
+	protected ArrayList<NetworkInterface> interfaces;
+	/** indexes of the interfaces in the interfaces list */
+	private HashMap<NetworkInterface, Integer> indexes;
+	/** x coordinates of the interfaces at the time of the latest build */
+	protected double[] xs;
+	/** y coordinates of the interfaces at the time of the latest build */
+	protected double[] ys;
+	/** has some interface moved since the latest build */
+	private boolean dirty;
+	/** has the set of interfaces changed since the latest build */
+	private boolean structureChanged;
+
+	/**
+	 * Constructor.
+	 */
+	public SpatialIndexOptimizer() {
+		this.interfaces = new ArrayList<NetworkInterface>();
+		this.indexes = new HashMap<NetworkInterface, Integer>();
+		this.xs = new double[0];
+		this.ys = new double[0];
+		this.dirty = true;
+		this.structureChanged = true;
+	}
+
+	public void addInterface(NetworkInterface ni) {
+		if (indexes.containsKey(ni)) {
+			return;
+		}
+		indexes.put(ni, interfaces.size());
+		interfaces.add(ni);
+		dirty = true;
+		structureChanged = true;
+	}
+
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface ni : interfaces) {
+			addInterface(ni);
+		}
+	}
+
+	/**
+	 * Removes a network interface from the index
+	 * @param ni The interface to be removed
+	 */
+	public void removeInterface(NetworkInterface ni) {
+		if (indexes.remove(ni) == null) {
+			return;
+		}
+		interfaces.remove(ni);
+		for (int i = 0, n = interfaces.size(); i < n; i++) {
+			indexes.put(interfaces.get(i), i);
+		}
+		dirty = true;
+		structureChanged = true;
+	}
+
+	public void updateLocation(NetworkInterface ni) {
+		if (dirty) {
+			return; /* rebuilt anyway */
+		}
+		Integer index = indexes.get(ni);
+		if (index == null) {
+			return;
+		}
+		int address = ni.getHost().getAddress();
+		if (xs[index] != HostPositions.getX(address) ||
+				ys[index] != HostPositions.getY(address)) {
+			dirty = true;
+		}
+	}
+
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		final ArrayList<NetworkInterface> niList =
+			new ArrayList<NetworkInterface>();
+		visitNearInterfaces(ni, new NearInterfaceVisitor() {
+			public void visit(NetworkInterface n) {
+				niList.add(n);
+			}
+		});
+		return niList;
+	}
+
+	@Override
+	public void visitNearInterfaces(NetworkInterface ni,
+			NearInterfaceVisitor visitor) {
+		if (!indexes.containsKey(ni)) {
+			return;
+		}
+		ensureBuilt();
+		int address = ni.getHost().getAddress();
+		query(HostPositions.getX(address), HostPositions.getY(address),
+				ni.getTransmitRange(), visitor);
+	}
+
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return interfaces;
+	}
+
+	/**
+	 * Rebuilds the index if any interface has moved since the latest build
+	 */
+	private void ensureBuilt() {
+		if (!dirty) {
+			return;
+		}
+
+		int n = interfaces.size();
+		if (xs.length != n) {
+			xs = new double[n];
+			ys = new double[n];
+		}
+		for (int i = 0; i < n; i++) {
+			int address = interfaces.get(i).getHost().getAddress();
+			xs[i] = HostPositions.getX(address);
+			ys[i] = HostPositions.getY(address);
+		}
+		build(structureChanged);
+		dirty = false;
+		structureChanged = false;
+	}
+
+	/**
+	 * Builds the index from the current coordinates (arrays {@link #xs} and
+	 * {@link #ys}, indexed like {@link #interfaces}).
+	 * @param structureChanged True if interfaces have been added or removed
+	 * since the previous build
+	 */
+	protected abstract void build(boolean structureChanged);
+
+	/**
+	 * Calls the visitor for every interface whose location is within the
+	 * given distance from the given point on both axes
+	 * @param x The x coordinate of the point
+	 * @param y The y coordinate of the point
+	 * @param range The maximum distance on each axis
+	 * @param visitor The visitor to call
+	 */
+	protected abstract void query(double x, double y, double range,
+			NearInterfaceVisitor visitor);
+
+	/**
+	 * Compares the coordinates of two interfaces on the given axis, using the
+	 * indexes as a tie breaker.
+	 * @param coords The coordinates of the axis ({@link #xs} or {@link #ys})
+	 * @param i Index of the first interface
+	 * @param j Index of the second interface
+	 * @return A negative value, zero, or a positive value if the first
+	 * interface is before, the same as, or after the second one
+	 */
+	protected static int compare(double[] coords, int i, int j) {
+		if (coords[i] < coords[j]) {
+			return -1;
+		} else if (coords[i] > coords[j]) {
+			return 1;
+		}
+		return i - j;
+	}
+}
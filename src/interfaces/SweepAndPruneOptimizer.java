@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import core.Settings;
+
+/**
+ * Connectivity optimizer that keeps the interfaces sorted by their x
+ * coordinate ("sweep and prune"). Since the interfaces move only a little
+ * between the updates, the order of the previous update is nearly sorted and
+ * is fixed with an insertion sort. Queries do a binary search for the start
+ * of the range and then scan the interfaces until the end of the range.
+ * See {@link SpatialIndexOptimizer} for when the order is updated.
+ */
+public class SweepAndPruneOptimizer extends SpatialIndexOptimizer {
+	/** interface indexes sorted by their x coordinates */
+	private int[] order;
+
+	/**
+	 * Constructor.
+	 * @param s The settings (not used)
+	 */
+	public SweepAndPruneOptimizer(Settings s) {
+		this.order = new int[0];
+	}
+
+	@Override
+	protected void build(boolean structureChanged) {
+		if (structureChanged) {
+			sortAll();
+			return;
+		}
+
+		/* insertion sort; nearly sorted arrays need only a few moves */
+		for (int i = 1, n = order.length; i < n; i++) {
+			int index = order[i];
+			int j = i - 1;
+			while (j >= 0 && compare(xs, order[j], index) > 0) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = index;
+		}
+	}
+
+	/**
+	 * Sorts all interfaces from scratch
+	 */
+	private void sortAll() {
+		int n = interfaces.size();
+		Integer[] sorted = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return SpatialIndexOptimizer.compare(xs, i1, i2);
+			}
+		});
+		order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = sorted[i];
+		}
+	}
+
+	@Override
+	protected void query(double x, double y, double range,
+			NearInterfaceVisitor visitor) {
+		double minX = x - range;
+		double maxX = x + range;
+
+		/* find the first interface with x >= minX */
+		int lo = 0;
+		int hi = order.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (xs[order[mid]] < minX) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+
+		for (int i = lo, n = order.length; i < n; i++) {
+			int index = order[i];
+			if (xs[index] > maxX) {
+				break;
+			}
+			double dy = ys[index] - y;
+			if (dy <= range && dy >= -range) {
+				visitor.visit(interfaces.get(index));
+			}
+		}
+	}
+}
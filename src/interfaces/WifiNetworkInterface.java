@@ -59,6 +59,15 @@ public class WifiNetworkInterface extends NetworkInterface {
         return new WifiNetworkInterface(this);
     }
 
+    /**
+     * Returns true: the noise factor is computed from the near interfaces
+     * found on every update
+     */
+    @Override
+    protected boolean requiresPolling() {
+        return true;
+    }
+
     @Override
     public int getTransmitSpeed(NetworkInterface ni) {
         double distance;
@@ -68,7 +77,8 @@ public class WifiNetworkInterface extends NetworkInterface {
         int index;
 
         /* distance to the other interface */
-        distance = ni.getLocation().distance(this.getLocation());
+        distance = HostPositions.distance(ni.getHost().getAddress(),
+                getHost().getAddress());
 
         if (distance >= this.transmitRange) {
             return 0;
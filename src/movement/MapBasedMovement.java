@@ -10,14 +10,14 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
-import java.util.Vector;
 
+import movement.map.MapGraph;
 import movement.map.MapNode;
+import movement.map.SimMapCache;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
@@ -55,8 +55,18 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	 */
 	public static final String MAP_SELECT_S = "okMaps";
 
+	/**
+	 * Map cache directory -setting id ({@value}). If set, the maps read
+	 * from the map files are stored to binary cache files in the directory
+	 * and later runs with unchanged map files load the maps from the cache
+	 * files (see {@link SimMapCache}). Default is to use no cache files.
+	 */
+	public static final String MAP_CACHE_S = "mapCache";
+
 	/** the indexes of the OK map files or null if all maps are OK */
 	private int [] okMapNodeTypes;
+	/** bit mask of the OK map node types (see {@link MapGraph#toTypeMask}) */
+	private int okTypeMask;
 
 	/** how many map files are read */
 	private int nrofMapFilesRead = 0;
@@ -116,6 +126,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 							" map files are read");
 				}
 			}
+			this.okTypeMask = MapGraph.toTypeMask(okMapNodeTypes);
 		}
 		else {
 			this.okMapNodeTypes = null;
@@ -129,6 +140,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	protected MapBasedMovement(MapBasedMovement mbm) {
 		super(mbm);
 		this.okMapNodeTypes = mbm.okMapNodeTypes;
+		this.okTypeMask = mbm.okTypeMask;
 		this.map = mbm.map;
 		this.minPathLength = mbm.minPathLength;
 		this.maxPathLength = mbm.maxPathLength;
@@ -180,58 +192,74 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	@Override
 	public Path getPath() {
 		Path p = new Path(generateSpeed());
-		MapNode curNode = lastMapNode;
-		MapNode prevNode = lastMapNode;
-		MapNode nextNode = null;
-		List<MapNode> neighbors;
-		Coord nextCoord;
+		MapGraph graph = getMap().getGraph();
+		int curNode = graph.getId(lastMapNode);
+		int prevNode = curNode;
+		int nextNode;
 
 		assert lastMapNode != null: "Tried to get a path before placement";
+		assert curNode >= 0 : "Last map node " + lastMapNode + " not on map";
 
 		// start paths from current node
-		p.addWaypoint(curNode.getLocation());
+		p.addWaypoint(lastMapNode.getLocation());
 
 		int pathLength = rng.nextInt(maxPathLength-minPathLength) +
 			minPathLength;
 
 		for (int i=0; i<pathLength; i++) {
-			neighbors = curNode.getNeighbors();
-			Vector<MapNode> n2 = new Vector<MapNode>(neighbors);
-			if (!this.backAllowed) {
-				n2.remove(prevNode); // to prevent going back
-			}
-
-			if (okMapNodeTypes != null) { //remove neighbor nodes that aren't ok
-				for (int j=0; j < n2.size(); ){
-					if (!n2.get(j).isType(okMapNodeTypes)) {
-						n2.remove(j);
-					}
-					else {
-						j++;
-					}
-				}
-			}
-
-			if (n2.size() == 0) { // only option is to go back
+			// choose a random node from the allowed neighbors
+			int nrofAllowed = countAllowedNeighbors(graph, curNode, prevNode);
+			if (nrofAllowed == 0) { // only option is to go back
 				nextNode = prevNode;
 			}
-			else { // choose a random node from remaining neighbors
-				nextNode = n2.get(rng.nextInt(n2.size()));
+			else {
+				nextNode = getAllowedNeighbor(graph, curNode, prevNode,
+						rng.nextInt(nrofAllowed));
 			}
 
 			prevNode = curNode;
-
-			nextCoord = nextNode.getLocation();
 			curNode = nextNode;
 
-			p.addWaypoint(nextCoord);
+			p.addWaypoint(graph.getNode(curNode).getLocation());
 		}
 
-		lastMapNode = curNode;
+		lastMapNode = graph.getNode(curNode);
 
 		return p;
 	}
 
+	/**
+	 * Returns true if moving from a node to its neighbor is allowed: the
+	 * neighbor is OK and it's not the previous node (unless going back is
+	 * allowed)
+	 */
+	private boolean isAllowed(MapGraph graph, int neighbor, int prevNode) {
+		if (!this.backAllowed && neighbor == prevNode) {
+			return false; // to prevent going back
+		}
+		return okMapNodeTypes == null || graph.isType(neighbor, okTypeMask);
+	}
+
+	private int countAllowedNeighbors(MapGraph graph, int node, int prevNode) {
+		int count = 0;
+		for (int j = 0, n = graph.getNrofNeighbors(node); j < n; j++) {
+			if (isAllowed(graph, graph.getNeighbor(node, j), prevNode)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private int getAllowedNeighbor(MapGraph graph, int node, int prevNode,
+			int index) {
+		for (int j = 0; ; j++) {
+			int neighbor = graph.getNeighbor(node, j);
+			if (isAllowed(graph, neighbor, prevNode) && index-- == 0) {
+				return neighbor;
+			}
+		}
+	}
+
 	/**
 	 * Selects and returns a random node that is OK from a list of nodes.
 	 * Whether node is OK, is determined by the okMapNodeTypes list.
@@ -265,7 +293,6 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	private SimMap readMap() {
 		SimMap simMap;
 		Settings settings = new Settings(MAP_BASE_MOVEMENT_NS);
-		WKTMapReader r = new WKTMapReader(true);
 
 		if (cachedMap == null) {
 			cachedMapFiles = new ArrayList<String>(); // no cache present
@@ -283,16 +310,47 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 			}
 		}
 
-		try {
-			int nrofMapFiles = settings.getInt(NROF_FILES_S);
+		int nrofMapFiles = settings.getInt(NROF_FILES_S);
+		for (int i = 1; i <= nrofMapFiles; i++ ) {
+			cachedMapFiles.add(settings.getSetting(FILE_S + i));
+		}
+		nrofMapFilesRead = nrofMapFiles;
+
+		simMap = readMapFiles(cachedMapFiles);
+		checkCoordValidity(simMap.getNodes());
+
+		cachedMap = simMap;
+		return simMap;
+	}
+
+	/**
+	 * Reads a sim map from map files, checks that it's connected, mirrors
+	 * it and moves its upper left corner to origo. If a map cache directory
+	 * is set (see {@link #MAP_CACHE_S}), the finished map is loaded from the
+	 * cache file of the map files, or stored to it if there isn't one (a
+	 * failure to store it is only warned about).
+	 * @param mapFiles Paths of the map files; the Nth file's nodes get type N
+	 * @return A new SimMap
+	 */
+	protected SimMap readMapFiles(List<String> mapFiles) {
+		Settings settings = new Settings(MAP_BASE_MOVEMENT_NS);
+		SimMapCache cache = null;
+		SimMap simMap;
 
-			for (int i = 1; i <= nrofMapFiles; i++ ) {
-				String pathFile = settings.getSetting(FILE_S + i);
-				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
+		if (settings.contains(MAP_CACHE_S)) {
+			cache = new SimMapCache(new File(settings.getSetting(MAP_CACHE_S)),
+					mapFiles);
+			simMap = cache.load();
+			if (simMap != null) {
+				return simMap; // checked and normalized when stored
 			}
+		}
 
-			nrofMapFilesRead = nrofMapFiles;
+		WKTMapReader r = new WKTMapReader(true);
+		try {
+			for (int i = 1; i <= mapFiles.size(); i++ ) {
+				r.addPaths(new File(mapFiles.get(i-1)), i);
+			}
 		} catch (IOException e) {
 			throw new SimError(e.toString(),e);
 		}
@@ -303,9 +361,16 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		simMap.mirror();
 		Coord offset = simMap.getMinBound().clone();
 		simMap.translate(-offset.getX(), -offset.getY());
-		checkCoordValidity(simMap.getNodes());
 
-		cachedMap = simMap;
+		if (cache != null) {
+			try {
+				cache.store(simMap);
+			} catch (IOException e) {
+				/* the map is fine; it's just read again by the next run */
+				System.err.println("Warning: can't write map cache file " +
+						cache.getCacheFile() + ": " + e);
+			}
+		}
 		return simMap;
 	}
 
@@ -327,12 +392,12 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		firstNode = nodes.get(0);
 
 		visited.add(firstNode);
-		unvisited.addAll(firstNode.getNeighbors());
+		unvisited.add(firstNode);
 
+		// nodes are marked visited when queued, so the queue isn't searched
 		while ((next = unvisited.poll()) != null) {
-			visited.add(next);
 			for (MapNode n: next.getNeighbors()) {
-				if (!visited.contains(n) && ! unvisited.contains(n)) {
+				if (visited.add(n)) {
 					unvisited.add(n);
 				}
 			}
@@ -410,19 +475,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	}
 
 	public void setLocation(Coord lastWaypoint) {
-		// TODO: This should be optimized
-		MapNode nearest = null;
-		double minDistance = Double.MAX_VALUE;
-		Iterator<MapNode> iterator = getMap().getNodes().iterator();
-		while (iterator.hasNext()) {
-			MapNode temp = iterator.next();
-			double distance = temp.getLocation().distance(lastWaypoint);
-			if (distance < minDistance) {
-				minDistance = distance;
-				nearest = temp;
-			}
-		}
-		lastMapNode = nearest;
+		lastMapNode = getMap().getClosestNode(lastWaypoint);
 	}
 
 	public boolean isReady() {
@@ -1,13 +1,8 @@
 package movement;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
 
 import core.Coord;
 import core.DTNHostStudent;
@@ -57,18 +52,18 @@ public class TUMScheduleMovement extends MapBasedMovement {
         MapNode destinationNode = null;
         if (state == TUMMovementState.CLASS) {
             Coord targetClass = this.roomsPoints.get(currentClass.getPOIIndex());
-            destinationNode = getClosestMapNode(targetClass, this.getMap().getNodes());
+            destinationNode = this.getMap().getClosestNode(targetClass);
         }
         if (state == TUMMovementState.NON_LECTURE) {
             // no class, send student to study/caffetteria/home
             // TODO: add smarter logic
             Coord nextLocation = nonLecturePoints.get(rng.nextInt(nonLecturePoints.size()));
-            destinationNode = getClosestMapNode(nextLocation, this.getMap().getNodes());
+            destinationNode = this.getMap().getClosestNode(nextLocation);
         }
         if (state == TUMMovementState.DONE && exitNode == null) {
             // any of the exist
-            exitNode = destinationNode = getClosestMapNode(
-                    this.startingPoints.get(rng.nextInt(this.startingPoints.size())), this.getMap().getNodes());
+            exitNode = destinationNode = this.getMap().getClosestNode(
+                    this.startingPoints.get(rng.nextInt(this.startingPoints.size())));
         }
         if (destinationNode != null) {
             List<MapNode> nodes = pathFinder.getShortestPath(lastMapNode,
@@ -160,8 +155,8 @@ public class TUMScheduleMovement extends MapBasedMovement {
     @Override
     public Coord getInitialLocation() {
 
-        MapNode closest = getClosestMapNode(
-                this.startingPoints.get(rng.nextInt(this.startingPoints.size())), this.getMap().getNodes());
+        MapNode closest = this.getMap().getClosestNode(
+                this.startingPoints.get(rng.nextInt(this.startingPoints.size())));
         lastMapNode = closest;
         location = closest.getLocation().clone();
         return location;
@@ -180,7 +175,6 @@ public class TUMScheduleMovement extends MapBasedMovement {
          */
         SimMap simMap;
         Settings settings = new Settings(MAP_BASE_MOVEMENT_NS);
-        WKTMapReader r = new WKTMapReader(true);
 
         if (cachedMap == null) {
             cachedMapFiles = new ArrayList<String>(); // no cache present
@@ -195,25 +189,16 @@ public class TUMScheduleMovement extends MapBasedMovement {
             }
         }
 
-        try {
-            int nrofMapFiles = settings.getInt(NROF_FILES_S);
-
-            for (int i = 1; i <= nrofMapFiles; i++) {
-                System.out.println("Reading map number " + i);
-                String pathFile = settings.getSetting(FILE_S + i);
-                cachedMapFiles.add(pathFile);
-                r.addPaths(new File(pathFile), i);
-            }
-        } catch (IOException e) {
-            throw new SimError(e.toString(), e);
+        int nrofMapFiles = settings.getInt(NROF_FILES_S);
+        for (int i = 1; i <= nrofMapFiles; i++) {
+            System.out.println("Reading map number " + i);
+            cachedMapFiles.add(settings.getSetting(FILE_S + i));
         }
 
-        simMap = r.getMap();
-        checkMapConnectedness(simMap.getNodes());
-        // mirrors the map (y' = -y) and moves its upper left corner to origo
-        simMap.mirror();
-        Coord offset = simMap.getMinBound().clone();
-        simMap.translate(-offset.getX(), -offset.getY());
+        // the map is mirrored (y' = -y) and its upper left corner moved to origo
+        simMap = readMapFiles(cachedMapFiles);
+        Coord offset = new Coord(-simMap.getOffset().getX(),
+                -simMap.getOffset().getY());
         checkCoordValidity(simMap.getNodes());
         Settings tumSettings = new Settings(TUM_MOVEMENT_NS);
         // all points will require mirror and translation as above
@@ -262,51 +247,6 @@ public class TUMScheduleMovement extends MapBasedMovement {
         }
     }
 
-    /**
-     * Checks that all map nodes can be reached from all other map nodes
-     * 
-     * @param nodes The list of nodes to check
-     * @throws SettingsError if all map nodes are not connected
-     */
-    private void checkMapConnectedness(List<MapNode> nodes) {
-        Set<MapNode> visited = new HashSet<MapNode>();
-        Queue<MapNode> unvisited = new LinkedList<MapNode>();
-        MapNode firstNode;
-        MapNode next = null;
-
-        if (nodes.size() == 0) {
-            throw new SimError("No map nodes in the given map");
-        }
-
-        firstNode = nodes.get(0);
-
-        visited.add(firstNode);
-        unvisited.addAll(firstNode.getNeighbors());
-
-        while ((next = unvisited.poll()) != null) {
-            visited.add(next);
-            for (MapNode n : next.getNeighbors()) {
-                if (!visited.contains(n) && !unvisited.contains(n)) {
-                    unvisited.add(n);
-                }
-            }
-        }
-
-        if (visited.size() != nodes.size()) { // some node couldn't be reached
-            MapNode disconnected = null;
-            for (MapNode n : nodes) { // find an example node
-                if (!visited.contains(n)) {
-                    disconnected = n;
-                    break;
-                }
-            }
-            throw new SettingsError("SimMap is not fully connected. Only " +
-                    visited.size() + " out of " + nodes.size() + " map nodes " +
-                    "can be reached from " + firstNode + ". E.g. " +
-                    disconnected + " can't be reached");
-        }
-    }
-
     /**
      * Checks map cache if the requested map file(s) match to the cached
      * sim map
@@ -332,27 +272,6 @@ public class TUMScheduleMovement extends MapBasedMovement {
         return cachedMap;
     }
 
-    /**
-     * Help method to find the closest coordinate from a list of coordinates,
-     * to a specific location
-     * 
-     * @param allCoords list of coordinates to compare
-     * @param coord     destination node
-     * @return closest to the destination
-     */
-    private static MapNode getClosestMapNode(Coord point, List<MapNode> nodes) {
-        MapNode closestCoord = null;
-        double minDistance = Double.POSITIVE_INFINITY;
-        for (MapNode temp : nodes) {
-            double distance = temp.getLocation().distance(point);
-            if (distance < minDistance) {
-                minDistance = distance;
-                closestCoord = temp;
-            }
-        }
-        return closestCoord;
-    }
-
     // Constructors and replicate
     public TUMScheduleMovement(final Settings settings) {
         super(settings);
@@ -360,7 +279,7 @@ public class TUMScheduleMovement extends MapBasedMovement {
         maxPathLength = 100;
         minPathLength = 10;
         backAllowed = false;
-        pathFinder = new DijkstraPathFinder(null);
+        pathFinder = new DijkstraPathFinder(getMap(), null);
     }
 
     public TUMScheduleMovement(final TUMScheduleMovement mbm) {
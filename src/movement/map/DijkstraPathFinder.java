@@ -15,7 +15,9 @@ import java.util.Queue;
 import java.util.Set;
 
 /**
- * Implementation of the Dijkstra's shortest path algorithm.
+ * Implementation of the Dijkstra's shortest path algorithm. If the path
+ * finder is created for a map, the paths between the map's nodes are
+ * answered from the map's shared {@link ShortestPathTrees}.
  */
 public class DijkstraPathFinder {
 	/** Value for infinite distance  */
@@ -33,6 +35,8 @@ public class DijkstraPathFinder {
 	private Map<MapNode, MapNode> prevNodes;
 
 	private int [] okMapNodes;
+	/** shortest path trees of the map or null if not created for a map */
+	private ShortestPathTrees trees;
 
 	/**
 	 * Constructor.
@@ -44,6 +48,19 @@ public class DijkstraPathFinder {
 		this.okMapNodes = okMapNodes;
 	}
 
+	/**
+	 * Constructor for finding paths on a map. The paths are the same as
+	 * without the map, but they are answered from the map's shortest path
+	 * trees.
+	 * @param map The map
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 */
+	public DijkstraPathFinder(SimMap map, int [] okMapNodes) {
+		this(okMapNodes);
+		this.trees = ShortestPathTrees.getService(map, okMapNodes);
+	}
+
 	/**
 	 * Initializes a new search with a source node
 	 * @param node The path's source node
@@ -71,6 +88,10 @@ public class DijkstraPathFinder {
 	 * a list of MapNodes or an empty list if such path is not available
 	 */
 	public List<MapNode> getShortestPath(MapNode from, MapNode to) {
+		if (trees != null && trees.contains(from) && trees.contains(to)) {
+			return trees.getShortestPath(from, to);
+		}
+
 		List<MapNode> path = new LinkedList<MapNode>();
 
 		if (from.compareTo(to) == 0) { // source and destination are the same
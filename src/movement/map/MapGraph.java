@@ -0,0 +1,178 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable compact (compressed sparse row) form of a map's graph. The
+ * nodes have integer IDs (their indexes in {@link SimMap#getNodes()}) and
+ * their coordinates and neighbors are stored in primitive arrays, so
+ * the graph can be traversed without creating objects. Neighbors are in the
+ * same order as in {@link MapNode#getNeighbors()}; neighbors that are not
+ * nodes of the map are left out.
+ * <P>
+ * The coordinates and neighbors are the ones at the time of the graph's
+ * creation (use {@link SimMap#getGraph()} to get an up to date graph); the
+ * node types are read from the map nodes.
+ * </P>
+ */
+public class MapGraph {
+	private final MapNode[] nodes;
+	private final Map<MapNode, Integer> ids;
+	private final double[] xs;
+	private final double[] ys;
+	/** index of the first neighbor of each node in {@link #neighbors}
+	 * (and the number of neighbors) */
+	private final int[] firstNeighbor;
+	/** IDs of the neighbors, by node */
+	private final int[] neighbors;
+
+	/**
+	 * Constructor. Creates the graph of map nodes.
+	 * @param nodes The map nodes in their ID order
+	 */
+	public MapGraph(List<MapNode> nodes) {
+		int n = nodes.size();
+		this.nodes = nodes.toArray(new MapNode[n]);
+		this.ids = new IdentityHashMap<MapNode, Integer>(n);
+		this.xs = new double[n];
+		this.ys = new double[n];
+		for (int i = 0; i < n; i++) {
+			MapNode node = this.nodes[i];
+			ids.put(node, i);
+			xs[i] = node.getLocation().getX();
+			ys[i] = node.getLocation().getY();
+		}
+
+		this.firstNeighbor = new int[n + 1];
+		int nrofEdges = 0;
+		for (int i = 0; i < n; i++) {
+			firstNeighbor[i] = nrofEdges;
+			for (MapNode neighbor : this.nodes[i].getNeighbors()) {
+				if (ids.containsKey(neighbor)) {
+					nrofEdges++;
+				}
+			}
+		}
+		firstNeighbor[n] = nrofEdges;
+
+		this.neighbors = new int[nrofEdges];
+		int e = 0;
+		for (int i = 0; i < n; i++) {
+			for (MapNode neighbor : this.nodes[i].getNeighbors()) {
+				Integer id = ids.get(neighbor);
+				if (id != null) {
+					neighbors[e++] = id;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of nodes in the graph
+	 * @return The number of nodes
+	 */
+	public int getNrofNodes() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the map node with the given ID
+	 * @param id ID of the node
+	 * @return The map node
+	 */
+	public MapNode getNode(int id) {
+		return nodes[id];
+	}
+
+	/**
+	 * Returns the ID of a map node
+	 * @param node The map node
+	 * @return ID of the node or -1 if the node is not in the graph
+	 */
+	public int getId(MapNode node) {
+		Integer id = ids.get(node);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the x coordinate of a node
+	 * @param id ID of the node
+	 * @return The x coordinate
+	 */
+	public double getX(int id) {
+		return xs[id];
+	}
+
+	/**
+	 * Returns the y coordinate of a node
+	 * @param id ID of the node
+	 * @return The y coordinate
+	 */
+	public double getY(int id) {
+		return ys[id];
+	}
+
+	/**
+	 * Returns the distance between two nodes. The result is the same as
+	 * with {@link core.Coord#distance(core.Coord)}.
+	 * @param id1 ID of the first node
+	 * @param id2 ID of the second node
+	 * @return The distance
+	 */
+	public double distance(int id1, int id2) {
+		double dx = xs[id1] - xs[id2];
+		double dy = ys[id1] - ys[id2];
+
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Returns the number of neighbors of a node
+	 * @param id ID of the node
+	 * @return The number of neighbors
+	 */
+	public int getNrofNeighbors(int id) {
+		return firstNeighbor[id + 1] - firstNeighbor[id];
+	}
+
+	/**
+	 * Returns a neighbor of a node
+	 * @param id ID of the node
+	 * @param index Index of the neighbor (0 ... number of neighbors - 1)
+	 * @return ID of the neighbor
+	 */
+	public int getNeighbor(int id, int index) {
+		return neighbors[firstNeighbor[id] + index];
+	}
+
+	/**
+	 * Returns a bit mask of map node types for {@link #isType(int, int)}
+	 * @param types The types (values in range [{@value MapNode#MIN_TYPE},
+	 * {@value MapNode#MAX_TYPE}])
+	 * @return The bit mask
+	 */
+	public static int toTypeMask(int[] types) {
+		int mask = 0;
+		for (int type : types) {
+			mask |= MapNode.typeToBitMask(type);
+		}
+		return mask;
+	}
+
+	/**
+	 * Returns true if the node's types match any of the types of a mask
+	 * @param id ID of the node
+	 * @param typeMask The types as returned by {@link #toTypeMask(int[])}
+	 * @return True if at least one of the types matched
+	 * @see MapNode#isType(int[])
+	 */
+	public boolean isType(int id, int typeMask) {
+		return (nodes[id].getTypeMask() & typeMask) != 0;
+	}
+}
@@ -77,13 +77,21 @@ public class MapNode implements Comparable<MapNode> {
 		return false;
 	}
 
+	/**
+	 * Returns the bit mask of this node's types
+	 * @return The bit mask or 0 if the node has no types
+	 */
+	int getTypeMask() {
+		return this.type;
+	}
+
 	/**
 	 * Converts type integer to a bit mask for setting & checking type
 	 * @param type The type to convert
 	 * @return A bit mask for the given type
 	 * @throws SettingsError if the type is out of range
 	 */
-	private int typeToBitMask(int type) {
+	static int typeToBitMask(int type) {
 		assert type >= MIN_TYPE && type <= MAX_TYPE : "Invalid node type "+type;
 		return 1 << type; // create the mask by bitwise shift
 	}
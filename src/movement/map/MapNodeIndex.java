@@ -0,0 +1,206 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import core.Coord;
+
+/**
+ * Grid based spatial index of map nodes for nearest node and radius
+ * queries. The nodes are put into square cells (about
+ * {@link #NODES_PER_CELL} nodes per cell on average) stored in compact
+ * arrays. A nearest node query searches the cells in growing rings around
+ * the query point and stops when the rest of the cells are farther than the
+ * closest node found so far, so only the cells near the point are visited.
+ * <P>
+ * The results are the same as with a linear scan of the node list: of
+ * equally distant nodes, the one that is first in the list (has the
+ * smallest ID) is returned and the radius queries return the nodes in the
+ * list order.
+ * </P>
+ */
+class MapNodeIndex {
+	/** Average number of nodes per cell */
+	private static final int NODES_PER_CELL = 2;
+
+	private final MapGraph graph;
+	private final double minX;
+	private final double minY;
+	private final double cellSize;
+	private final int rows;
+	private final int cols;
+	/** index of the first node of each cell in {@link #cellNodes} */
+	private final int[] cellStart;
+	/** IDs of the nodes, by cell */
+	private final int[] cellNodes;
+
+	/**
+	 * Constructor. Indexes the nodes of a map graph.
+	 * @param graph The graph
+	 */
+	public MapNodeIndex(MapGraph graph) {
+		int n = graph.getNrofNodes();
+		this.graph = graph;
+
+		double minX, minY, maxX, maxY;
+		minX = minY = Double.MAX_VALUE;
+		maxX = maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+			minX = Math.min(minX, graph.getX(i));
+			minY = Math.min(minY, graph.getY(i));
+			maxX = Math.max(maxX, graph.getX(i));
+			maxY = Math.max(maxY, graph.getY(i));
+		}
+		if (n == 0) {
+			minX = minY = maxX = maxY = 0;
+		}
+
+		double width = maxX - minX;
+		double height = maxY - minY;
+		/* the number of cells is O(n) also for very narrow maps */
+		double size = Math.max(
+				Math.sqrt(width * height * NODES_PER_CELL / Math.max(n, 1)),
+				Math.max(width, height) * NODES_PER_CELL / Math.max(n, 1));
+		if (!(size > 0)) { // all nodes at one point
+			size = 1;
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.cellSize = size;
+		this.cols = (int)(width / size) + 1;
+		this.rows = (int)(height / size) + 1;
+
+		/* counting sort of the nodes to the cells, in the list order */
+		this.cellStart = new int[rows * cols + 1];
+		int[] cells = new int[n];
+		for (int i = 0; i < n; i++) {
+			cells[i] = row(graph.getY(i)) * cols + col(graph.getX(i));
+			cellStart[cells[i] + 1]++;
+		}
+		for (int i = 0; i < rows * cols; i++) {
+			cellStart[i + 1] += cellStart[i];
+		}
+		this.cellNodes = new int[n];
+		int[] next = new int[rows * cols];
+		for (int i = 0; i < n; i++) {
+			cellNodes[cellStart[cells[i]] + next[cells[i]]++] = i;
+		}
+	}
+
+	private int col(double x) {
+		int col = (int)((x - minX) / cellSize);
+		return col < 0 ? 0 : (col >= cols ? cols - 1 : col);
+	}
+
+	private int row(double y) {
+		int row = (int)((y - minY) / cellSize);
+		return row < 0 ? 0 : (row >= rows ? rows - 1 : row);
+	}
+
+	/**
+	 * Returns the node closest to a coordinate
+	 * @param c The coordinate
+	 * @return The closest node or null if there are no nodes
+	 */
+	public MapNode getClosestNode(Coord c) {
+		double x = c.getX();
+		double y = c.getY();
+		int col = col(x);
+		int row = row(y);
+		int closest = -1;
+		double minDistance = Double.POSITIVE_INFINITY;
+
+		for (int r = 0; ; r++) {
+			int minCol = col - r, maxCol = col + r;
+			int minRow = row - r, maxRow = row + r;
+			/* the cells on the ring */
+			for (int j = Math.max(minRow, 0); j <= Math.min(maxRow, rows - 1);
+					j++) {
+				boolean edgeRow = j == minRow || j == maxRow;
+				for (int i = Math.max(minCol, 0); i <= Math.min(maxCol,
+						cols - 1); i++) {
+					if (!edgeRow && i != minCol && i != maxCol) {
+						i = maxCol - 1; // skip the inside of the ring
+						continue;
+					}
+					int cell = j * cols + i;
+					for (int k = cellStart[cell]; k < cellStart[cell + 1];
+							k++) {
+						int node = cellNodes[k];
+						double dx = graph.getX(node) - x;
+						double dy = graph.getY(node) - y;
+						double distance = Math.sqrt(dx * dx + dy * dy);
+						if (distance < minDistance ||
+								(distance == minDistance && node < closest)) {
+							minDistance = distance;
+							closest = node;
+						}
+					}
+				}
+			}
+
+			/* distance to the nearest cell outside the searched square */
+			double outside = Double.POSITIVE_INFINITY;
+			if (minCol > 0) {
+				outside = Math.min(outside, x - (minX + minCol * cellSize));
+			}
+			if (maxCol < cols - 1) {
+				outside = Math.min(outside,
+						minX + (maxCol + 1) * cellSize - x);
+			}
+			if (minRow > 0) {
+				outside = Math.min(outside, y - (minY + minRow * cellSize));
+			}
+			if (maxRow < rows - 1) {
+				outside = Math.min(outside,
+						minY + (maxRow + 1) * cellSize - y);
+			}
+			if (outside == Double.POSITIVE_INFINITY || minDistance < outside) {
+				break; // all cells searched or the rest are farther
+			}
+		}
+
+		return closest < 0 ? null : graph.getNode(closest);
+	}
+
+	/**
+	 * Returns the nodes within a distance from a coordinate
+	 * @param c The coordinate
+	 * @param radius The maximum distance
+	 * @return The nodes whose distance from the coordinate is at most the
+	 * radius, in the node list order
+	 */
+	public List<MapNode> getNodesWithin(Coord c, double radius) {
+		double x = c.getX();
+		double y = c.getY();
+		List<Integer> found = new ArrayList<Integer>();
+
+		for (int j = row(y - radius), maxRow = row(y + radius); j <= maxRow;
+				j++) {
+			for (int i = col(x - radius), maxCol = col(x + radius);
+					i <= maxCol; i++) {
+				int cell = j * cols + i;
+				for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+					int node = cellNodes[k];
+					double dx = graph.getX(node) - x;
+					double dy = graph.getY(node) - y;
+					if (Math.sqrt(dx * dx + dy * dy) <= radius) {
+						found.add(node);
+					}
+				}
+			}
+		}
+
+		Collections.sort(found);
+		List<MapNode> result = new ArrayList<MapNode>(found.size());
+		for (int node : found) {
+			result.add(graph.getNode(node));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import util.IndexedMinHeap;
+import core.DTNSim;
+import core.Settings;
+import core.World;
+
+/**
+ * Shortest path service of a map. The map's graph is converted once to
+ * compact arrays and the shortest paths are answered from shortest path
+ * trees: the first query from a node computes the tree of all shortest
+ * paths from that node and the following queries from the same node only
+ * follow the tree. The most recently used trees are kept (see
+ * {@link #NROF_TREES_S}). Since the movement models choose the
+ * destinations mostly from a limited set of nodes (points of interest,
+ * homes, offices, route stops, ...) and start from the previous
+ * destination, most paths are found from a kept tree.
+ * <P>
+ * The nodes are numbered in their {@link MapNode#compareTo(MapNode)} order,
+ * so the paths are the same as {@link DijkstraPathFinder}'s search finds.
+ * One service is shared by all the path finders that use the same map and
+ * the same map node types. The number of queries answered from a kept tree
+ * (hits) and the number of computed trees (misses) are counted for
+ * {@link report.PathCacheReport}.
+ * </P>
+ */
+public class ShortestPathTrees {
+	/** Maximum number of kept shortest path trees per map and map node
+	 * types -setting id ({@value}). Integer. Default is
+	 * {@link #DEF_NROF_TREES}. The setting is in the
+	 * {@link World#OPTIMIZATION_SETTINGS_NS} name space. */
+	public static final String NROF_TREES_S = "shortestPathTrees";
+	/** Default number of kept shortest path trees ({@value}) */
+	public static final int DEF_NROF_TREES = 1000;
+	/** Value for infinite distance  */
+	private static final double INFINITY = Double.MAX_VALUE;
+
+	/** the services of the maps */
+	private static Map<SimMap, List<ShortestPathTrees>> services;
+	/** all the services in their creation order */
+	private static List<ShortestPathTrees> allServices;
+
+	private final SimMap map;
+	private final int[] okMapNodes;
+	/** the map's graph */
+	private final MapGraph graph;
+	/** the map nodes in their natural (coordinate) order */
+	private final MapNode[] nodes;
+	/** indexes of the map nodes in {@link #nodes}, by graph ID */
+	private final int[] indexes;
+	/** index of the first edge of each node (and the number of edges) */
+	private final int[] firstEdge;
+	/** destination node of each edge */
+	private final int[] edgeTargets;
+	/** length of each edge */
+	private final double[] edgeLengths;
+	/** the kept trees (previous node of every node) by source node */
+	private final Map<Integer, int[]> trees;
+	/** number of queries answered from a kept tree */
+	private long nrofHits;
+	/** number of computed trees */
+	private long nrofMisses;
+
+	/* work arrays of the tree computation */
+	private final IndexedMinHeap heap;
+	private final double[] distances;
+	private final boolean[] visited;
+
+	static {
+		DTNSim.registerForReset(ShortestPathTrees.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Resets the services of all maps
+	 */
+	public static synchronized void reset() {
+		services = new IdentityHashMap<SimMap, List<ShortestPathTrees>>();
+		allServices = new ArrayList<ShortestPathTrees>();
+	}
+
+	/**
+	 * Returns the shortest path service of a map
+	 * @param map The map
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @return The service
+	 */
+	public static synchronized ShortestPathTrees getService(SimMap map,
+			int[] okMapNodes) {
+		List<ShortestPathTrees> mapServices = services.get(map);
+		if (mapServices == null) {
+			mapServices = new ArrayList<ShortestPathTrees>();
+			services.put(map, mapServices);
+		}
+		for (ShortestPathTrees s : mapServices) {
+			if (Arrays.equals(s.okMapNodes, okMapNodes)) {
+				return s;
+			}
+		}
+
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		int nrofTrees = s.getInt(NROF_TREES_S, DEF_NROF_TREES);
+		s.ensurePositiveValue(nrofTrees, NROF_TREES_S);
+
+		ShortestPathTrees service = new ShortestPathTrees(map, okMapNodes,
+				nrofTrees);
+		mapServices.add(service);
+		allServices.add(service);
+		return service;
+	}
+
+	/**
+	 * Returns all the services created since the last reset
+	 * @return The services in their creation order
+	 */
+	public static synchronized List<ShortestPathTrees> getServices() {
+		return new ArrayList<ShortestPathTrees>(allServices);
+	}
+
+	/**
+	 * Constructor. Converts the map to the compact form.
+	 * @param map The map
+	 * @param okMapNodes The map node types that are OK for paths or null if
+	 * all nodes are OK
+	 * @param nrofTrees Maximum number of kept trees
+	 */
+	private ShortestPathTrees(SimMap map, int[] okMapNodes,
+			final int nrofTrees) {
+		this.map = map;
+		this.okMapNodes = okMapNodes == null ? null : okMapNodes.clone();
+		this.graph = map.getGraph();
+		this.nodes = map.getNodes().toArray(new MapNode[0]);
+		Arrays.sort(this.nodes);
+
+		int n = nodes.length;
+		int[] ids = new int[n];
+		this.indexes = new int[n];
+		for (int i = 0; i < n; i++) {
+			ids[i] = graph.getId(nodes[i]);
+			indexes[ids[i]] = i;
+		}
+		int typeMask = okMapNodes == null ? 0 :
+			MapGraph.toTypeMask(okMapNodes);
+
+		/* edges to the OK neighbors on the map, in the order of the
+		 * neighbor lists */
+		this.firstEdge = new int[n + 1];
+		int nrofEdges = 0;
+		for (int i = 0; i < n; i++) {
+			firstEdge[i] = nrofEdges;
+			for (int j = 0; j < graph.getNrofNeighbors(ids[i]); j++) {
+				if (okMapNodes == null || graph.isType(
+						graph.getNeighbor(ids[i], j), typeMask)) {
+					nrofEdges++;
+				}
+			}
+		}
+		firstEdge[n] = nrofEdges;
+		this.edgeTargets = new int[nrofEdges];
+		this.edgeLengths = new double[nrofEdges];
+		int e = 0;
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < graph.getNrofNeighbors(ids[i]); j++) {
+				int neighbor = graph.getNeighbor(ids[i], j);
+				if (okMapNodes == null || graph.isType(neighbor, typeMask)) {
+					edgeTargets[e] = indexes[neighbor];
+					edgeLengths[e] = graph.distance(ids[i], neighbor);
+					e++;
+				}
+			}
+		}
+
+		this.trees = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, int[]> e) {
+				return size() > nrofTrees;
+			}
+		};
+		this.heap = new IndexedMinHeap(n);
+		this.distances = new double[n];
+		this.visited = new boolean[n];
+	}
+
+	/**
+	 * Returns the map of this service
+	 * @return The map
+	 */
+	public SimMap getMap() {
+		return this.map;
+	}
+
+	/**
+	 * Returns the map node types that are OK for the paths
+	 * @return The types or null if all nodes are OK
+	 */
+	public int[] getOkMapNodes() {
+		return this.okMapNodes == null ? null : this.okMapNodes.clone();
+	}
+
+	/**
+	 * Returns the number of nodes of the map
+	 * @return The number of nodes
+	 */
+	public int getNrofNodes() {
+		return this.nodes.length;
+	}
+
+	/**
+	 * Returns the number of currently kept trees
+	 * @return The number of kept trees
+	 */
+	public synchronized int getNrofTrees() {
+		return this.trees.size();
+	}
+
+	/**
+	 * Returns the number of queries that were answered from a kept tree
+	 * @return The number of cache hits
+	 */
+	public synchronized long getNrofHits() {
+		return this.nrofHits;
+	}
+
+	/**
+	 * Returns the number of queries that needed a new tree
+	 * @return The number of cache misses
+	 */
+	public synchronized long getNrofMisses() {
+		return this.nrofMisses;
+	}
+
+	/**
+	 * Returns true if the node is a node of this service's map
+	 * @param node The node
+	 * @return true if the node is a node of this service's map
+	 */
+	public boolean contains(MapNode node) {
+		return graph.getId(node) >= 0;
+	}
+
+	/**
+	 * Finds and returns a shortest path between two map nodes of the map
+	 * @param from The source of the path
+	 * @param to The destination of the path
+	 * @return a shortest path between the source and destination nodes in
+	 * a list of MapNodes or an empty list if such path is not available
+	 */
+	public synchronized List<MapNode> getShortestPath(MapNode from,
+			MapNode to) {
+		List<MapNode> path = new LinkedList<MapNode>();
+
+		if (from.compareTo(to) == 0) { // source and destination are the same
+			path.add(from);
+			return path;
+		}
+
+		int source = indexes[graph.getId(from)];
+		int[] prev = trees.get(source);
+		if (prev == null) {
+			prev = computeTree(source);
+			trees.put(source, prev);
+			nrofMisses++;
+		}
+		else {
+			nrofHits++;
+		}
+
+		int node = indexes[graph.getId(to)];
+		if (prev[node] < 0) {
+			return path; // no path
+		}
+		while (node != source) {
+			path.add(0, nodes[node]);
+			node = prev[node];
+		}
+		path.add(0, from);
+
+		return path;
+	}
+
+	/**
+	 * Computes the shortest path tree of a source node with the Dijkstra's
+	 * algorithm. Like {@link DijkstraPathFinder}, a node's previous node is
+	 * changed only if a strictly shorter path is found and the nodes with
+	 * equal distances are visited in their natural order.
+	 * @param source Index of the source node
+	 * @return Index of the previous node on the shortest path to every node
+	 * (-1 for the source and the unreachable nodes)
+	 */
+	private int[] computeTree(int source) {
+		int[] prev = new int[nodes.length];
+		Arrays.fill(prev, -1);
+		Arrays.fill(distances, INFINITY);
+		Arrays.fill(visited, false);
+
+		distances[source] = 0;
+		heap.put(source, 0);
+		while (!heap.isEmpty()) {
+			int node = heap.poll();
+			visited[node] = true;
+			double nodeDist = distances[node];
+
+			for (int e = firstEdge[node], end = firstEdge[node + 1]; e < end;
+					e++) {
+				int n = edgeTargets[e];
+				if (visited[n]) {
+					continue;
+				}
+				double nDist = nodeDist + edgeLengths[e];
+				if (distances[n] > nDist) {
+					prev[n] = node;
+					distances[n] = nDist;
+					heap.put(n, nDist);
+				}
+			}
+		}
+
+		return prev;
+	}
+}
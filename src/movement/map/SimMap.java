@@ -27,7 +27,13 @@ public class SimMap implements Serializable {
 	private boolean isMirrored;
 
 	/** is re-hash needed before using hash mode (some coordinates changed) */
-	private boolean needsRehash = false;
+	private volatile boolean needsRehash = false;
+	/** compact graph of the map or null if not created yet or some
+	 * coordinates have changed after creating it */
+	private transient volatile MapGraph graph;
+	/** spatial index of the nodes or null if not created yet or some
+	 * coordinates have changed after creating it */
+	private transient volatile MapNodeIndex index;
 
 	public SimMap(Map<Coord, MapNode> nodes) {
 		this.offset = new Coord(0,0);
@@ -37,6 +43,23 @@ public class SimMap implements Serializable {
 		setBounds();
 	}
 
+	/**
+	 * Constructor for maps whose state is already known (e.g., loaded from
+	 * a {@link SimMapCache}).
+	 * @param nodes The map nodes in their order
+	 * @param nodesMap The map nodes by their locations
+	 * @param offset Offset of the map translations
+	 * @param isMirrored Has the map data been mirrored after reading
+	 */
+	SimMap(List<MapNode> nodes, Map<Coord, MapNode> nodesMap, Coord offset,
+			boolean isMirrored) {
+		this.offset = offset;
+		this.nodes = new ArrayList<MapNode>(nodes);
+		this.nodesMap = nodesMap;
+		this.isMirrored = isMirrored;
+		setBounds();
+	}
+
 	/**
 	 * Returns all the map nodes in a list
 	 * @return all the map nodes in a list
@@ -53,13 +76,78 @@ public class SimMap implements Serializable {
 	 */
 	public MapNode getNodeByCoord(Coord c) {
 		if (needsRehash) { // some coordinates have changed after creating hash
+			rehash();
+		}
+
+		return nodesMap.get(c);
+	}
+
+	private synchronized void rehash() {
+		if (needsRehash) {
 			nodesMap.clear();
 			for (MapNode node : getNodes()) {
 				nodesMap.put(node.getLocation(), node); // re-hash
 			}
+			needsRehash = false;
 		}
+	}
 
-		return nodesMap.get(c);
+	/**
+	 * Returns the map node closest to given coordinates. Uses a spatial
+	 * index, so the time taken depends on the number of nodes near the
+	 * coordinates, not on the size of the map.
+	 * @param c The coordinate
+	 * @return The closest map node (the first one in the node list if
+	 * several are equally close) or null if the map has no nodes
+	 */
+	public MapNode getClosestNode(Coord c) {
+		return getIndex().getClosestNode(c);
+	}
+
+	/**
+	 * Returns the map nodes within a distance from given coordinates
+	 * @param c The coordinate
+	 * @param radius The maximum distance
+	 * @return The map nodes whose distance from the coordinate is at most
+	 * the radius, in the order of {@link #getNodes()}
+	 */
+	public List<MapNode> getNodesWithin(Coord c, double radius) {
+		return getIndex().getNodesWithin(c, radius);
+	}
+
+	/**
+	 * Returns the compact graph of the map. The node IDs of the graph are
+	 * the indexes of the nodes in {@link #getNodes()}. A new graph is
+	 * created if the map's coordinates have changed (by translating or
+	 * mirroring) after the previous call.
+	 * @return The graph
+	 */
+	public MapGraph getGraph() {
+		MapGraph graph = this.graph;
+		if (graph == null) {
+			synchronized (this) {
+				graph = this.graph;
+				if (graph == null) {
+					graph = new MapGraph(this.nodes);
+					this.graph = graph;
+				}
+			}
+		}
+		return graph;
+	}
+
+	private MapNodeIndex getIndex() {
+		MapNodeIndex index = this.index;
+		if (index == null) {
+			synchronized (this) {
+				index = this.index;
+				if (index == null) {
+					index = new MapNodeIndex(getGraph());
+					this.index = index;
+				}
+			}
+		}
+		return index;
 	}
 
 	/**
@@ -111,6 +199,8 @@ public class SimMap implements Serializable {
 		offset.translate(dx, dy);
 
 		needsRehash = true;
+		graph = null;
+		index = null;
 	}
 
 	/**
@@ -127,6 +217,8 @@ public class SimMap implements Serializable {
 		setBounds();
 		this.isMirrored = true;
 		needsRehash = true;
+		graph = null;
+		index = null;
 	}
 
 	/**
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import core.Coord;
+
+/**
+ * Binary cache of maps read from WKT files. A map that has been read,
+ * checked, mirrored and translated is stored to a cache file and later
+ * runs with the same map files load the finished map with one memory mapped
+ * read, without parsing the WKT files or checking the map again. The cache
+ * file is identified by the map files' paths, sizes and modification times,
+ * so changing a map file makes its old cache files unused.
+ * <P>
+ * The loaded map is identical to the stored one: the nodes are in the same
+ * order, have the same coordinates, types and neighbors (in the same order)
+ * and the map has the same offset and mirroring state.
+ * </P>
+ */
+public class SimMapCache {
+	/** Identifier of the cache files */
+	private static final int MAGIC = 0x4f4e454d;
+	/** Version of the cache file format; increase when the format or the
+	 * way the maps are read or normalized changes */
+	private static final int VERSION = 1;
+	private static final String CHARSET = "UTF-8";
+
+	private final File cacheFile;
+	/** description of the map files the cache is for */
+	private final String key;
+
+	/**
+	 * Constructor.
+	 * @param cacheDir Directory of the cache files
+	 * @param mapFiles Paths of the map files in their type order
+	 */
+	public SimMapCache(File cacheDir, List<String> mapFiles) {
+		StringBuilder key = new StringBuilder();
+		for (String mapFile : mapFiles) {
+			File f = new File(mapFile).getAbsoluteFile();
+			key.append(f.getPath()).append('|').append(f.length()).
+				append('|').append(f.lastModified()).append('\n');
+		}
+		this.key = key.toString();
+
+		CRC32 crc = new CRC32();
+		crc.update(toBytes(this.key));
+		this.cacheFile = new File(cacheDir, "map_" +
+				Long.toHexString(crc.getValue()) + ".bin");
+	}
+
+	private static byte[] toBytes(String s) {
+		try {
+			return s.getBytes(CHARSET);
+		} catch (IOException e) {
+			throw new AssertionError(e); // UTF-8 is always supported
+		}
+	}
+
+	/**
+	 * Returns the cache file of the map
+	 * @return The cache file
+	 */
+	public File getCacheFile() {
+		return this.cacheFile;
+	}
+
+	/**
+	 * Loads the map from the cache file
+	 * @return The map or null if there's no valid cache file for the map
+	 * files
+	 */
+	public SimMap load() {
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+
+		try {
+			RandomAccessFile raf = new RandomAccessFile(cacheFile, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						channel.size());
+				return read(buf);
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			return null; // unreadable; read the map files instead
+		} catch (BufferUnderflowException e) {
+			return null; // truncated file
+		}
+	}
+
+	private SimMap read(ByteBuffer buf) {
+		if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+			return null;
+		}
+		int keyLength = buf.getInt();
+		if (keyLength < 0 || keyLength > buf.remaining()) {
+			return null;
+		}
+		byte[] keyBytes = new byte[keyLength];
+		buf.get(keyBytes);
+		if (!Arrays.equals(keyBytes, toBytes(this.key))) {
+			return null; // cache of other files (with the same hash)
+		}
+
+		int n = buf.getInt();
+		List<MapNode> nodes = new ArrayList<MapNode>(n);
+		Map<Coord, MapNode> nodesMap = new HashMap<Coord, MapNode>(n * 2);
+		for (int i = 0; i < n; i++) {
+			MapNode node = new MapNode(new Coord(buf.getDouble(),
+					buf.getDouble()));
+			int types = buf.getInt();
+			for (int t = MapNode.MIN_TYPE; t <= MapNode.MAX_TYPE; t++) {
+				if ((types & MapNode.typeToBitMask(t)) != 0) {
+					node.addType(t);
+				}
+			}
+			nodes.add(node);
+			nodesMap.put(node.getLocation(), node);
+		}
+		for (MapNode node : nodes) {
+			for (int k = buf.getInt(); k > 0; k--) {
+				node.getNeighbors().add(nodes.get(buf.getInt()));
+			}
+		}
+		Coord offset = new Coord(buf.getDouble(), buf.getDouble());
+		boolean mirrored = buf.get() != 0;
+
+		return new SimMap(nodes, nodesMap, offset, mirrored);
+	}
+
+	/**
+	 * Stores a map to the cache file. The file is first written under a
+	 * temporary name, so other simulations never load a partial file, and
+	 * the temporary file is deleted also if storing fails.
+	 * @param map The map to store
+	 * @throws IOException if the file can't be written
+	 */
+	public void store(SimMap map) throws IOException {
+		File dir = cacheFile.getAbsoluteFile().getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Can't create map cache directory " + dir);
+		}
+		File tmp = File.createTempFile("map", ".tmp", dir);
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				write(map, out);
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(cacheFile)) {
+				cacheFile.delete(); // some platforms don't replace files
+				if (!tmp.renameTo(cacheFile)) {
+					throw new IOException("Can't create " + cacheFile);
+				}
+			}
+		} finally {
+			tmp.delete(); // left only if writing or renaming failed
+		}
+	}
+
+	private void write(SimMap map, DataOutputStream out) throws IOException {
+		List<MapNode> nodes = map.getNodes();
+		MapGraph graph = map.getGraph();
+		byte[] keyBytes = toBytes(this.key);
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(keyBytes.length);
+		out.write(keyBytes);
+
+		out.writeInt(nodes.size());
+		for (MapNode node : nodes) {
+			out.writeDouble(node.getLocation().getX());
+			out.writeDouble(node.getLocation().getY());
+			out.writeInt(node.getTypeMask());
+		}
+		for (MapNode node : nodes) {
+			List<MapNode> neighbors = node.getNeighbors();
+			out.writeInt(neighbors.size());
+			for (MapNode neighbor : neighbors) {
+				int id = graph.getId(neighbor);
+				if (id < 0) {
+					throw new IOException("Neighbor " + neighbor + " of " +
+							node + " is not on the map");
+				}
+				out.writeInt(id);
+			}
+		}
+		out.writeDouble(map.getOffset().getX());
+		out.writeDouble(map.getOffset().getY());
+		out.writeBoolean(map.isMirrored());
+	}
+}
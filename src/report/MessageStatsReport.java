@@ -5,9 +5,8 @@
 package report;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import core.DTNHost;
 import core.Message;
@@ -22,7 +21,8 @@ import core.MessageListener;
  * double values and zero for integer median(s).
  */
 public class MessageStatsReport extends Report implements MessageListener {
-	private Map<String, Double> creationTimes;
+	/** creation times of the messages by their ID indexes */
+	private double[] creationTimes;
 	private List<Double> latencies;
 	private List<Integer> hopCounts;
 	private List<Double> msgBufferTime;
@@ -48,7 +48,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 	@Override
 	protected void init() {
 		super.init();
-		this.creationTimes = new HashMap<String, Double>();
+		this.creationTimes = new double[64];
 		this.latencies = new ArrayList<Double>();
 		this.msgBufferTime = new ArrayList<Double>();
 		this.hopCounts = new ArrayList<Integer>();
@@ -100,9 +100,9 @@ public class MessageStatsReport extends Report implements MessageListener {
 		this.nrofRelayed++;
 		if (finalTarget) {
 			this.latencies.add(getSimTime() -
-				this.creationTimes.get(m.getId()) );
+				this.creationTimes[m.getIdIndex()] );
 			this.nrofDelivered++;
-			this.hopCounts.add(m.getHops().size() - 1);
+			this.hopCounts.add(m.getHopCount());
 
 			if (m.isResponse()) {
 				this.rtt.add(getSimTime() -	m.getRequest().getCreationTime());
@@ -118,7 +118,12 @@ public class MessageStatsReport extends Report implements MessageListener {
 			return;
 		}
 
-		this.creationTimes.put(m.getId(), getSimTime());
+		int index = m.getIdIndex();
+		if (index >= this.creationTimes.length) {
+			this.creationTimes = Arrays.copyOf(this.creationTimes,
+					Math.max(index + 1, 2 * this.creationTimes.length));
+		}
+		this.creationTimes[index] = getSimTime();
 		this.nrofCreated++;
 		if (m.getResponseSize() > 0) {
 			this.nrofResponseReqCreated++;
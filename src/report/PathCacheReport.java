@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import movement.map.ShortestPathTrees;
+import movement.map.SimMap;
+
+/**
+ * Reports how well the shared shortest path caches of the map based
+ * movement models work. For each map and set of OK map node types, the
+ * report tells the number of map nodes, the number of kept shortest path
+ * trees, the number of path queries answered from a kept tree (hits) and
+ * the number of queries that needed a new tree (misses). The counts include
+ * the movement warmup. The report is written when the simulation is done.
+ */
+public class PathCacheReport extends Report {
+
+	/**
+	 * Constructor.
+	 */
+	public PathCacheReport() {
+		init();
+	}
+
+	@Override
+	public void done() {
+		Map<SimMap, Integer> mapIds = new IdentityHashMap<SimMap, Integer>();
+		long hits = 0;
+		long misses = 0;
+
+		write("Path caches for scenario " + getScenarioName() +
+				"\nmap okTypes nodes trees hits misses hit_rate");
+		for (ShortestPathTrees s : ShortestPathTrees.getServices()) {
+			Integer mapId = mapIds.get(s.getMap());
+			if (mapId == null) {
+				mapId = mapIds.size() + 1;
+				mapIds.put(s.getMap(), mapId);
+			}
+			int[] okTypes = s.getOkMapNodes();
+			long h = s.getNrofHits();
+			long m = s.getNrofMisses();
+			hits += h;
+			misses += m;
+
+			write(mapId + " " + (okTypes == null ? "all" :
+					Arrays.toString(okTypes).replace(" ", "")) + " " +
+					s.getNrofNodes() + " " + s.getNrofTrees() + " " + h + " " +
+					m + " " + format(hitRate(h, m)));
+		}
+		write("total - - - " + hits + " " + misses + " " +
+				format(hitRate(hits, misses)));
+
+		super.done();
+	}
+
+	private double hitRate(long hits, long misses) {
+		return hits + misses > 0 ? (double)hits / (hits + misses) : Double.NaN;
+	}
+}
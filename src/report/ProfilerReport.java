@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import core.SimProfiler;
+import core.SimScenario;
+
+/**
+ * Reports where the wall clock time of the simulation is spent. Records the
+ * time and number of calls of the update phases (external event processing,
+ * host movement, interface updates, router updates and update listener
+ * callbacks) and the time of the interface and router updates and update
+ * listener calls per class. Time that is not spent in any of the phases
+ * (e.g., shuffling the update order) is reported as "other". The report is
+ * written when the simulation is done.
+ * <P>
+ * The summary also contains the throughput (simulated seconds per wall
+ * clock second), the peak heap usage, and the garbage collection time and
+ * count. The memory allocated in each phase and by each class is reported
+ * too (if the JVM supports measuring it) and the garbage collection time is
+ * divided between them in proportion to their allocations, since the
+ * collections are caused by the allocations but can happen anywhere.
+ * </P>
+ */
+public class ProfilerReport extends Report {
+	private SimProfiler profiler;
+
+	/**
+	 * Constructor. Sets a profiler to the world of the current scenario.
+	 */
+	public ProfilerReport() {
+		init();
+		this.profiler = new SimProfiler();
+		SimScenario.getInstance().getWorld().setProfiler(this.profiler);
+	}
+
+	@Override
+	public void done() {
+		SimProfiler.Counter updates = profiler.getUpdates();
+		double total = updates.getNanos() / 1e9;
+		double simTime = getSimTime();
+		double gcTime = profiler.getGcMillis() / 1e3;
+
+		write("Profile for scenario " + getScenarioName() +
+				"\nsim_time: " + format(simTime) +
+				"\nwall_time: " + format(total) +
+				"\nupdates: " + updates.getCalls() +
+				"\nsim_s_per_wall_s: " +
+				format(total > 0 ? simTime / total : Double.NaN) +
+				"\npeak_heap_mb: " + format(megabytes(
+						profiler.getPeakHeapBytes())) +
+				"\nallocated_mb: " + format(megabytes(updates.getBytes())) +
+				"\ngc_time: " + format(gcTime) +
+				"\ngc_count: " + profiler.getGcCount());
+
+		write("\nphase time_s share calls avg_us alloc_mb gc_s");
+		long phaseNanos = 0;
+		long phaseBytes = 0;
+		for (int i = 0; i < SimProfiler.NROF_PHASES; i++) {
+			SimProfiler.Counter c = profiler.getPhase(i);
+			phaseNanos += c.getNanos();
+			phaseBytes += c.getBytes();
+			writeCounter(SimProfiler.getPhaseName(i), c, total, gcTime,
+					updates.getBytes());
+		}
+		write("other " + format((updates.getNanos() - phaseNanos) / 1e9) +
+				" " + format(share(updates.getNanos() - phaseNanos, total)) +
+				" - - " + format(megabytes(updates.getBytes() - phaseBytes)) +
+				" " + format(gcShare(updates.getBytes() - phaseBytes, gcTime,
+						updates.getBytes())));
+
+		writeClasses("router", profiler.getRouterCounters(), total, gcTime,
+				updates.getBytes());
+		writeClasses("interface", profiler.getInterfaceCounters(), total,
+				gcTime, updates.getBytes());
+		writeClasses("update_listener", profiler.getListenerCounters(),
+				total, gcTime, updates.getBytes());
+
+		super.done();
+	}
+
+	/**
+	 * Writes the counters of the classes in the order of decreasing time
+	 */
+	private void writeClasses(String title, Map<Class<?>,
+			SimProfiler.Counter> counters, double total, double gcTime,
+			long totalBytes) {
+		List<Map.Entry<Class<?>, SimProfiler.Counter>> entries =
+			new ArrayList<Map.Entry<Class<?>, SimProfiler.Counter>>(
+					counters.entrySet());
+		Collections.sort(entries,
+				new Comparator<Map.Entry<Class<?>, SimProfiler.Counter>>() {
+			public int compare(Map.Entry<Class<?>, SimProfiler.Counter> e1,
+					Map.Entry<Class<?>, SimProfiler.Counter> e2) {
+				long n1 = e1.getValue().getNanos();
+				long n2 = e2.getValue().getNanos();
+				return n1 > n2 ? -1 : (n1 < n2 ? 1 : 0);
+			}
+		});
+
+		write("\n" + title + " time_s share calls avg_us alloc_mb gc_s");
+		for (Map.Entry<Class<?>, SimProfiler.Counter> e : entries) {
+			writeCounter(e.getKey().getSimpleName(), e.getValue(), total,
+					gcTime, totalBytes);
+		}
+	}
+
+	private void writeCounter(String name, SimProfiler.Counter c,
+			double total, double gcTime, long totalBytes) {
+		double avg = c.getCalls() > 0 ?
+				c.getNanos() / 1e3 / c.getCalls() : Double.NaN;
+		write(name + " " + format(c.getNanos() / 1e9) + " " +
+				format(share(c.getNanos(), total)) + " " + c.getCalls() +
+				" " + format(avg) + " " + format(megabytes(c.getBytes())) +
+				" " + format(gcShare(c.getBytes(), gcTime, totalBytes)));
+	}
+
+	/**
+	 * Returns the share of the garbage collection time caused by the given
+	 * allocations
+	 */
+	private double gcShare(long bytes, double gcTime, long totalBytes) {
+		return totalBytes > 0 ? gcTime * bytes / totalBytes : Double.NaN;
+	}
+
+	private double megabytes(long bytes) {
+		return bytes / (1024.0 * 1024.0);
+	}
+
+	/**
+	 * Returns the share of the given time of the total time
+	 */
+	private double share(long nanos, double total) {
+		return total > 0 ? nanos / 1e9 / total : Double.NaN;
+	}
+}
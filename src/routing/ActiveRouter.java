@@ -18,6 +18,7 @@ import util.Tuple;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageIdIndex;
 import core.MessageListener;
 import core.NetworkInterface;
 import core.Settings;
@@ -39,16 +40,24 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
-	/** how often TTL check (discarding old messages) is performed */
-	public static int TTL_CHECK_INTERVAL = 60;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
 
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
 
+	/** true if all transfers tried since the last reset were denied with
+	 * a result that doesn't change unless the messages change */
+	private boolean onlyStableDenials;
+	/** connections of the last sending attempt that started no transfers
+	 * or null if the next attempt must not be skipped */
+	private Connection[] failedConnections;
+	/** message state versions of the other hosts of the failed attempt's
+	 * connections */
+	private int[] failedPeerVersions;
+	/** message state version of this router at the last failed attempt */
+	private int failedVersion;
+
 	/**
 	 * Constructor. Creates a new message router based on the settings in
 	 * the given Settings object.
@@ -83,7 +92,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
+		this.failedConnections = null;
 	}
 
 	/**
@@ -178,15 +187,20 @@ public abstract class ActiveRouter extends MessageRouter {
 		int retVal;
 
 		if (!con.isReadyForTransfer()) {
+			this.onlyStableDenials = false;
 			return TRY_LATER_BUSY;
 		}
 
 		if (!policy.acceptSending(getHost(),
 				con.getOtherNode(getHost()), con, m)) {
+			this.onlyStableDenials = false;
 			return MessageRouter.DENIED_POLICY;
 		}
 
 		retVal = con.startTransfer(getHost(), m);
+		if (retVal != DENIED_OLD && retVal != DENIED_TTL) {
+			this.onlyStableDenials = false;
+		}
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
 		}
@@ -232,12 +246,12 @@ public abstract class ActiveRouter extends MessageRouter {
 			return TRY_LATER_BUSY; // only one connection at a time
 		}
 
-		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ||
-				super.isBlacklistedMessage(m.getId())) {
+		if ( hasMessage(m.getIdIndex()) || isDeliveredMessage(m) ||
+				super.isBlacklistedMessage(m.getIdIndex())) {
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 
-		if (m.getTtl() <= 0 && m.getTo() != getHost()) {
+		if (m.isExpired() && m.getTo() != getHost()) {
 			/* TTL has expired and this host is not the final recipient */
 			return DENIED_TTL;
 		}
@@ -259,8 +273,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 	/**
-	 * Removes messages from the buffer (oldest first) until
-	 * there's enough space for the new message.
+	 * Removes messages from the buffer (in the order given by
+	 * {@link #getNextMessageToRemove(boolean)}) until there's enough space
+	 * for the new message.
 	 * @param size Size of the new message
 	 * transferred, the transfer is aborted before message is removed
 	 * @return True if enough space could be freed, false if not
@@ -288,14 +303,48 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Returns true if the router isn't sending anything, has no energy
+	 * model and has no expired messages to drop (in addition to the checks
+	 * of {@link MessageRouter#isIdle()}).
+	 * @return true if the router is idle
+	 */
+	@Override
+	public boolean isIdle() {
+		if (!super.isIdle() || this.sendingConnections.size() > 0 ||
+				this.energy != null) {
+			return false;
+		}
+
+		Collection<Message> byExpiry = getMessagesInExpiryOrder();
+		return byExpiry.isEmpty() ||
+			byExpiry.iterator().next().getExpiryTime() > SimClock.getTime();
+	}
+
+	/**
+	 * Drops messages whose TTL has expired. Messages that are being sent
+	 * are dropped after the transfer has finished. Only the expired messages
+	 * (and the ones being sent) are checked.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl();
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
+		List<Message> expired = null;
+		double time = SimClock.getTime();
+
+		for (Message m : getMessagesInExpiryOrder()) {
+			if (m.getExpiryTime() > time) {
+				break; // the rest expire later
+			}
+			if (isSending(m.getIdIndex())) {
+				continue;
+			}
+			if (expired == null) {
+				expired = new ArrayList<Message>(1);
+			}
+			expired.add(m);
+		}
+
+		if (expired != null) {
+			for (Message m : expired) {
+				deleteMessage(m.getId(), true);
 			}
 		}
 	}
@@ -313,33 +362,26 @@ public abstract class ActiveRouter extends MessageRouter {
 
 
 	/**
-	 * Returns the oldest (by receive time) message in the message buffer
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * Returns the first message in the drop order of the message buffer
+	 * (that is not being sent if excludeMsgBeingSent is true). By default,
+	 * the oldest (by receive time) message is returned.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
-	 * being sent from the oldest message check (i.e. if oldest message is
-	 * being sent, the second oldest message is returned)
-	 * @return The oldest message or null if no message could be returned
+	 * being sent from the check (i.e. if the first message is being sent,
+	 * the second one is returned)
+	 * @return The message to remove or null if no message could be returned
 	 * (no messages in buffer or all messages in buffer are being sent and
 	 * exludeMsgBeingSent is true)
+	 * @see routing.util.DropPolicy
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+		for (Message m : getMessagesInDropOrder()) {
+			if (excludeMsgBeingSent && isSending(m.getIdIndex())) {
 				continue; // skip the message(s) that router is sending
 			}
-
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 
-		return oldest;
+		return null;
 	}
 
 	/**
@@ -442,8 +484,12 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Tries to send all messages that this router is carrying to all
 	 * connections this node has. Messages are ordered using the
-	 * {@link MessageRouter#sortByQueueMode(List)}. See
+	 * {@link MessageRouter#getSendQueue()}. See
 	 * {@link #tryMessagesToConnections(List, List)} for sending details.
+	 * If the previous attempt started no transfer because all the messages
+	 * were denied as old or expired, and neither the messages of this or the
+	 * other hosts nor the connections have changed since, the attempt is
+	 * skipped because it would fail the same way.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
 	 */
@@ -452,12 +498,62 @@ public abstract class ActiveRouter extends MessageRouter {
 		if (connections.size() == 0 || this.getNrofMessages() == 0) {
 			return null;
 		}
+		if (isUnchangedSinceLastAttempt(connections)) {
+			return null;
+		}
 
-		List<Message> messages =
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
+		this.onlyStableDenials = true;
+		Connection con = tryMessagesToConnections(getSendQueue(),
+				connections);
 
-		return tryMessagesToConnections(messages, connections);
+		if (con == null && this.onlyStableDenials) {
+			setFailedAttempt(connections);
+		}
+		else {
+			this.failedConnections = null;
+		}
+		return con;
+	}
+
+	/**
+	 * Returns true if the messages and the connections are the same as at
+	 * the last failed sending attempt (see {@link #setFailedAttempt(List)})
+	 * @param connections The current connections
+	 * @return true if nothing has changed since the last failed attempt
+	 */
+	private boolean isUnchangedSinceLastAttempt(
+			List<Connection> connections) {
+		if (this.failedConnections == null ||
+				this.failedVersion != getMessageStateVersion() ||
+				this.failedConnections.length != connections.size()) {
+			return false;
+		}
+
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			if (con != this.failedConnections[i] ||
+					con.getOtherNode(getHost()).getRouter().
+					getMessageStateVersion() != this.failedPeerVersions[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stores the state of the messages and the connections of a sending
+	 * attempt that started no transfer
+	 * @param connections The connections of the attempt
+	 */
+	private void setFailedAttempt(List<Connection> connections) {
+		int n = connections.size();
+		this.failedConnections = connections.toArray(new Connection[n]);
+		this.failedPeerVersions = new int[n];
+		for (int i=0; i<n; i++) {
+			this.failedPeerVersions[i] = connections.get(i).
+					getOtherNode(getHost()).getRouter().getMessageStateVersion();
+		}
+		this.failedVersion = getMessageStateVersion();
 	}
 
 	/**
@@ -551,11 +647,22 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return True if the message is being sent false if not
 	 */
 	public boolean isSending(String msgId) {
+		return isSending(MessageIdIndex.indexOf(msgId));
+	}
+
+	/**
+	 * Returns true if this router is currently sending a message with the
+	 * given ID index.
+	 * @param idIndex Index of the ID of the message
+	 * @return True if the message is being sent false if not
+	 * @see Message#getIdIndex()
+	 */
+	public boolean isSending(int idIndex) {
 		for (Connection con : this.sendingConnections) {
 			if (con.getMessage() == null) {
 				continue; // transmission is finalized
 			}
-			if (con.getMessage().getId().equals(msgId)) {
+			if (con.getMessage().getIdIndex() == idIndex) {
 				return true;
 			}
 		}
@@ -617,12 +724,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL &&
-				sendingConnections.size() == 0) {
-			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
-		}
+		dropExpiredMessages();
 
 		if (energy != null) {
 			/* TODO: add support for other interfaces */
@@ -5,18 +5,18 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
 import routing.util.RoutingInfo;
+import util.IntHashSet;
 import util.Tuple;
 import core.Connection;
 import core.DTNHost;
@@ -53,17 +53,14 @@ public class MaxPropRouter extends ActiveRouter {
 	private Map<Integer, MeetingProbabilitySet> allProbs;
 	/** the cost-to-node calculator */
 	private MaxPropDijkstra dijkstra;
-	/** IDs of the messages that are known to have reached the final dst */
-	private Set<String> ackedMessageIds;
-	/** mapping of the current costs for all messages. This should be set to
-	 * null always when the costs should be updated (a host is met or a new
-	 * message is received) */
-	private Map<Integer, Double> costsForMessages;
-	/** From host of the last cost calculation */
-	private DTNHost lastCostFrom;
-
-	/** Map of which messages have been sent to which hosts from this host */
-	private Map<DTNHost, Set<String>> sentMessages;
+	/** ID indexes of the messages that are known to have reached the final
+	 * dst */
+	private BitSet ackedMessageIds;
+
+	/** Map of which messages (ID indexes) have been sent to which hosts
+	 * from this host. Sparse sets, because only a few of all the messages
+	 * are sent to each host. */
+	private Map<DTNHost, IntHashSet> sentMessages;
 
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
@@ -115,9 +112,9 @@ public class MaxPropRouter extends ActiveRouter {
 		this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
-		this.ackedMessageIds = new HashSet<String>();
+		this.ackedMessageIds = new BitSet();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
-		this.sentMessages = new HashMap<DTNHost, Set<String>>();
+		this.sentMessages = new HashMap<DTNHost, IntHashSet>();
 	}
 
 	@Override
@@ -125,7 +122,7 @@ public class MaxPropRouter extends ActiveRouter {
 		super.changedConnection(con);
 
 		if (con.isUp()) { // new connection
-			this.costsForMessages = null; // invalidate old cost estimates
+			dijkstra.invalidate(); // meeting probabilities change
 
 			if (con.isInitiator(getHost())) {
 				/* initiator performs all the actions on behalf of the
@@ -139,11 +136,13 @@ public class MaxPropRouter extends ActiveRouter {
 				MaxPropRouter otherRouter = (MaxPropRouter)mRouter;
 
 				/* exchange ACKed message data */
-				this.ackedMessageIds.addAll(otherRouter.ackedMessageIds);
-				otherRouter.ackedMessageIds.addAll(this.ackedMessageIds);
+				this.ackedMessageIds.or(otherRouter.ackedMessageIds);
+				otherRouter.ackedMessageIds.or(this.ackedMessageIds);
 				deleteAckedMessages();
 				otherRouter.deleteAckedMessages();
 
+				otherRouter.dijkstra.invalidate();
+
 				/* update both meeting probabilities */
 				probs.updateMeetingProbFor(otherHost.getAddress());
 				otherRouter.probs.updateMeetingProbFor(getHost().getAddress());
@@ -183,20 +182,20 @@ public class MaxPropRouter extends ActiveRouter {
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
 	private void deleteAckedMessages() {
-		for (String id : this.ackedMessageIds) {
-			if (this.hasMessage(id) && !isSending(id)) {
-				this.deleteMessage(id, false);
+		for (Message m : getMessageCollection().toArray(new Message[0])) {
+			if (this.ackedMessageIds.get(m.getIdIndex()) &&
+					!isSending(m.getIdIndex())) {
+				this.deleteMessage(m.getId(), false);
 			}
 		}
 	}
 
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-		this.costsForMessages = null; // new message -> invalidate costs
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
-			this.ackedMessageIds.add(id);
+			this.ackedMessageIds.set(m.getIdIndex());
 		}
 		return m;
 	}
@@ -210,22 +209,21 @@ public class MaxPropRouter extends ActiveRouter {
 	@Override
 	protected void transferDone(Connection con) {
 		Message m = con.getMessage();
-		String id = m.getId();
 		DTNHost recipient = con.getOtherNode(getHost());
-		Set<String> sentMsgIds = this.sentMessages.get(recipient);
+		IntHashSet sentMsgIds = this.sentMessages.get(recipient);
 
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == recipient) {
-			this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
+			this.ackedMessageIds.set(m.getIdIndex()); // yes, add to ACKed messages
 			this.deleteMessage(m.getId(), false); // delete from buffer
 		}
 
 		/* update the map of where each message is already sent */
 		if (sentMsgIds == null) {
-			sentMsgIds = new HashSet<String>();
+			sentMsgIds = new IntHashSet();
 			this.sentMessages.put(recipient, sentMsgIds);
 		}
-		sentMsgIds.add(id);
+		sentMsgIds.add(m.getIdIndex());
 	}
 
 	/**
@@ -269,20 +267,21 @@ public class MaxPropRouter extends ActiveRouter {
 	 */
     @Override
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		List<Message> validMessages = new ArrayList<Message>();
+		Comparator<Message> comparator =
+			new MaxPropComparator(this.calcThreshold());
+		Message last = null;
 
-		for (Message m : messages) {
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+		/* the last message in MaxProp's order is dropped first */
+		for (Message m : this.getMessageCollection()) {
+			if (excludeMsgBeingSent && isSending(m.getIdIndex())) {
 				continue; // skip the message(s) that router is sending
 			}
-			validMessages.add(m);
+			if (last == null || comparator.compare(m, last) >= 0) {
+				last = m;
+			}
 		}
 
-		Collections.sort(validMessages,
-				new MaxPropComparator(this.calcThreshold()));
-
-		return validMessages.get(validMessages.size()-1); // return last message
+		return last;
 	}
 
 	@Override
@@ -303,40 +302,23 @@ public class MaxPropRouter extends ActiveRouter {
 	/**
 	 * Returns the message delivery cost between two hosts from this host's
 	 * point of view. If there is no path between "from" and "to" host,
-	 * Double.MAX_VALUE is returned. Paths are calculated only to hosts
-	 * that this host has messages to.
+	 * Double.MAX_VALUE is returned. The costs are cached until the meeting
+	 * probabilities change (see {@link MaxPropDijkstra}).
 	 * @param from The host where a message is coming from
 	 * @param to The host where a message would be destined to
 	 * @return The cost of the cheapest path to the destination or
 	 * Double.MAX_VALUE if such a path doesn't exist
 	 */
 	public double getCost(DTNHost from, DTNHost to) {
-		/* check if the cached values are OK */
-		if (this.costsForMessages == null || lastCostFrom != from) {
-			/* cached costs are invalid -> calculate new costs */
+		if (this.allProbs.get(getHost().getAddress()) != this.probs) {
+			/* own probabilities must be in the mapping too */
 			this.allProbs.put(getHost().getAddress(), this.probs);
-			int fromIndex = from.getAddress();
-
-			/* calculate paths only to nodes we have messages to
-			 * (optimization) */
-			Set<Integer> toSet = new HashSet<Integer>();
-			for (Message m : getMessageCollection()) {
-				toSet.add(m.getTo().getAddress());
-			}
-
-			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
-			this.lastCostFrom = from; // store source host for caching checks
-		}
-
-		if (costsForMessages.containsKey(to.getAddress())) {
-			return costsForMessages.get(to.getAddress());
-		}
-		else {
-			/* there's no known path to the given host */
-			return Double.MAX_VALUE;
+			dijkstra.invalidate();
 		}
+		return dijkstra.getCost(from.getAddress(), to.getAddress());
 	}
 
+
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
 	 * hop counts and their delivery probability
@@ -353,7 +335,7 @@ public class MaxPropRouter extends ActiveRouter {
 		for (Connection con : getConnections()) {
 			DTNHost other = con.getOtherNode(getHost());
 			MaxPropRouter othRouter = (MaxPropRouter)other.getRouter();
-			Set<String> sentMsgIds = this.sentMessages.get(other);
+			IntHashSet sentMsgIds = this.sentMessages.get(other);
 
 			if (othRouter.isTransferring()) {
 				continue; // skip hosts that are transferring
@@ -362,13 +344,13 @@ public class MaxPropRouter extends ActiveRouter {
 			for (Message m : msgCollection) {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
-				if (othRouter.hasMessage(m.getId()) ||
-						m.getHops().contains(other)) {
+				if (othRouter.hasMessage(m.getIdIndex()) ||
+						m.isOnPath(other)) {
 					continue;
 				}
 				/* skip message if this host has already sent it to the other
 				   host (regardless of if the other host still has it) */
-				if (sentMsgIds != null && sentMsgIds.contains(m.getId())) {
+				if (sentMsgIds != null && sentMsgIds.contains(m.getIdIndex())) {
 					continue;
 				}
 				/* message was a good candidate for sending */
@@ -4,6 +4,8 @@
  */
 package routing;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -15,12 +17,16 @@ import core.Application;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageIdIndex;
 import core.MessageListener;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import routing.util.DropPolicy;
+import routing.util.MessageBuffer;
 import routing.util.RoutingInfo;
+import util.LongHashMap;
 import util.Tuple;
 
 /**
@@ -56,6 +62,9 @@ public abstract class MessageRouter {
 	public static final String STR_Q_MODE_RANDOM = "RANDOM";
 	/** Setting string for FIFO queue mode */
 	public static final String STR_Q_MODE_FIFO = "FIFO";
+	/** Multiplier for scrambling message unique IDs in random queue mode
+	 * comparisons (the golden ratio multiplier of Fibonacci hashing) */
+	private static final int HASH_MULTIPLIER = 0x9E3779B9;
 
 	/* Return values when asking to start a transmission:
 	 * RCV_OK (0) means that the host accepts the message and transfer started,
@@ -83,14 +92,21 @@ public abstract class MessageRouter {
 	public static final int DENIED_UNSPECIFIED = -99;
 
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
+	/** The messages being transferred with keys from the message ID index
+	 * and the address of the host the message is from (see
+	 * {@link #incomingKey(int, DTNHost)}) */
+	private LongHashMap<Message> incomingMessages;
 	/** The messages this router is carrying */
-	private HashMap<String, Message> messages;
-	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
-	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	private MessageBuffer messages;
+	/** The messages this router has received as the final recipient (by
+	 * their ID indexes) */
+	private LongHashMap<Message> deliveredMessages;
+	/** ID indexes of the messages that Applications on this router have
+	 * blacklisted */
+	private BitSet blacklistedMessages;
+	/** Version of the message state; changed whenever the buffer, incoming,
+	 * delivered or blacklisted messages change */
+	private int messageStateVersion;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
@@ -99,6 +115,16 @@ public abstract class MessageRouter {
 	protected int msgTtl;
 	/** Queue mode for sending messages */
 	private int sendQueueMode;
+	/** Order of dropping messages from the buffer */
+	private DropPolicy dropPolicy;
+	/** Messages of the buffer in the buffer's order for the send queue or
+	 * null if the buffer has changed */
+	private List<Message> sendQueueBase;
+	/** Messages of the buffer in the send queue order or null if the
+	 * queue must be sorted again */
+	private List<Message> sendQueue;
+	/** Sim time (as integer) when the send queue was sorted */
+	private int sendQueueTime;
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
@@ -106,7 +132,9 @@ public abstract class MessageRouter {
 	/**
 	 * Constructor. Creates a new message router based on the settings in
 	 * the given Settings object. Size of the message buffer is read from
-	 * {@link #B_SIZE_S} setting. Default value is Integer.MAX_VALUE.
+	 * {@link #B_SIZE_S} setting. Default value is Integer.MAX_VALUE. The order
+	 * of dropping messages from the buffer is read from
+	 * {@link DropPolicy#DROP_POLICY_S} setting.
 	 * @param s The settings object
 	 */
 	public MessageRouter(Settings s) {
@@ -141,6 +169,8 @@ public abstract class MessageRouter {
 		else {
 			sendQueueMode = Q_MODE_RANDOM;
 		}
+
+		this.dropPolicy = DropPolicy.getPolicy(s);
 	}
 
 	/**
@@ -151,10 +181,13 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
-		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.incomingMessages = new LongHashMap<Message>();
+		this.messages = new MessageBuffer(dropPolicy);
+		this.deliveredMessages = new LongHashMap<Message>();
+		this.blacklistedMessages = new BitSet();
+		this.messageStateVersion = 0;
+		this.sendQueueBase = null;
+		this.sendQueue = null;
 		this.mListeners = mListeners;
 		this.host = host;
 	}
@@ -167,6 +200,7 @@ public abstract class MessageRouter {
 		this.bufferSize = r.bufferSize;
 		this.msgTtl = r.msgTtl;
 		this.sendQueueMode = r.sendQueueMode;
+		this.dropPolicy = r.dropPolicy;
 
 		this.applications = new HashMap<String, Collection<Application>>();
 		for (Collection<Application> apps : r.applications.values()) {
@@ -201,7 +235,17 @@ public abstract class MessageRouter {
 	 * @return The message
 	 */
 	protected Message getMessage(String id) {
-		return this.messages.get(id);
+		return getMessage(MessageIdIndex.indexOf(id));
+	}
+
+	/**
+	 * Returns a message by the index of its ID.
+	 * @param idIndex Index of the ID of the message
+	 * @return The message or null if there's no such message
+	 * @see Message#getIdIndex()
+	 */
+	protected Message getMessage(int idIndex) {
+		return idIndex < 0 ? null : this.messages.get(idIndex);
 	}
 
 	/**
@@ -210,7 +254,17 @@ public abstract class MessageRouter {
 	 * @return True if the router has message with this id, false if not
 	 */
 	public boolean hasMessage(String id) {
-		return this.messages.containsKey(id);
+		return hasMessage(MessageIdIndex.indexOf(id));
+	}
+
+	/**
+	 * Checks if this router has a message with certain id buffered.
+	 * @param idIndex Index of the ID of the message
+	 * @return True if the router has message with this id, false if not
+	 * @see Message#getIdIndex()
+	 */
+	public boolean hasMessage(int idIndex) {
+		return idIndex >= 0 && this.messages.contains(idIndex);
 	}
 
 	/**
@@ -222,7 +276,7 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return (this.deliveredMessages.containsKey(m.getIdIndex()));
 	}
 
 	/**
@@ -235,7 +289,17 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		return isBlacklistedMessage(MessageIdIndex.indexOf(id));
+	}
+
+	/**
+	 * Returns <code>true</code> if the message has been blacklisted.
+	 * @param idIndex Index of the ID of the message
+	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
+	 * @see #isBlacklistedMessage(String)
+	 */
+	protected boolean isBlacklistedMessage(int idIndex) {
+		return idIndex >= 0 && this.blacklistedMessages.get(idIndex);
 	}
 
 	/**
@@ -247,7 +311,29 @@ public abstract class MessageRouter {
 	 * @return a reference to the messages of this router in collection
 	 */
 	public Collection<Message> getMessageCollection() {
-		return this.messages.values();
+		return this.messages.getMessages();
+	}
+
+	/**
+	 * Returns the messages of this router in the order they should be dropped
+	 * when the buffer is full (as defined by the
+	 * {@link DropPolicy#DROP_POLICY_S} setting). The same note about
+	 * modifying the buffer while iterating applies as for
+	 * {@link #getMessageCollection()}.
+	 * @return The messages in the drop order
+	 */
+	protected Collection<Message> getMessagesInDropOrder() {
+		return this.messages.getMessagesInDropOrder();
+	}
+
+	/**
+	 * Returns the messages of this router that have a finite TTL in the
+	 * order their TTLs expire. The same note about modifying the buffer
+	 * while iterating applies as for {@link #getMessageCollection()}.
+	 * @return The messages in the expiry order
+	 */
+	protected Collection<Message> getMessagesInExpiryOrder() {
+		return this.messages.getMessagesInExpiryOrder();
 	}
 
 	/**
@@ -258,6 +344,33 @@ public abstract class MessageRouter {
 		return this.messages.size();
 	}
 
+	/**
+	 * Returns true if calling {@link #update()} would do nothing as long as
+	 * the messages (see {@link #getMessageStateVersion()}) and the
+	 * connections of the host don't change and the host doesn't move. Hosts
+	 * whose routers are idle can be left out of the world updates (see
+	 * {@link core.World#SKIP_IDLE_HOSTS_S}). The default implementation
+	 * returns true if the router has no applications, since they are
+	 * updated on every update. Routers that do time dependent work in their
+	 * updates must override this.
+	 * @return true if the router is idle
+	 */
+	public boolean isIdle() {
+		return this.applications.isEmpty();
+	}
+
+	/**
+	 * Returns the version of the message state of this router. The version
+	 * changes whenever messages are added to or removed from the buffer or
+	 * the incoming messages, or messages are delivered to or blacklisted at
+	 * this router, so other routers can tell if the answers of this router
+	 * to their transfer requests may have changed.
+	 * @return The version of the message state
+	 */
+	public int getMessageStateVersion() {
+		return this.messageStateVersion;
+	}
+
 	/**
 	 * Returns the size of the message buffer.
 	 * @return The size or Integer.MAX_VALUE if the size isn't defined.
@@ -274,17 +387,11 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public long getFreeBufferSize() {
-		long occupancy = 0;
-
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 
-		for (Message m : getMessageCollection()) {
-			occupancy += m.getSize();
-		}
-
-		return this.getBufferSize() - occupancy;
+		return this.getBufferSize() - this.messages.getOccupancy();
 	}
 
 	/**
@@ -383,11 +490,13 @@ public abstract class MessageRouter {
 			// -> put to buffer
 			addToMessages(aMessage, false);
 		} else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.put(aMessage.getIdIndex(), aMessage);
+			this.messageStateVersion++;
 		} else if (outgoing == null) {
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);
+			this.blacklistedMessages.set(aMessage.getIdIndex());
+			this.messageStateVersion++;
 		}
 
 		for (MessageListener ml : this.mListeners) {
@@ -405,7 +514,8 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		this.incomingMessages.put(incomingKey(m.getIdIndex(), from), m);
+		this.messageStateVersion++;
 	}
 
 	/**
@@ -416,7 +526,22 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		int idIndex = MessageIdIndex.indexOf(id);
+		if (idIndex < 0) {
+			return null;
+		}
+		this.messageStateVersion++;
+		return this.incomingMessages.remove(incomingKey(idIndex, from));
+	}
+
+	/**
+	 * Returns the key of an incoming message in the incoming messages buffer
+	 * @param idIndex Index of the ID of the message
+	 * @param from The host that sends the message
+	 * @return The key of the message
+	 */
+	private static long incomingKey(int idIndex, DTNHost from) {
+		return ((long)idIndex << 32) | from.getAddress();
 	}
 
 	/**
@@ -426,7 +551,13 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		int idIndex = MessageIdIndex.indexOf(id);
+		for (Message m : this.incomingMessages.values()) {
+			if (m.getIdIndex() == idIndex) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -437,7 +568,9 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		this.messages.add(m);
+		this.messageStateVersion++;
+		this.sendQueueBase = null;
 
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -452,8 +585,13 @@ public abstract class MessageRouter {
 	 * @return The removed message or null if message for the ID wasn't found
 	 */
 	protected Message removeFromMessages(String id) {
-		Message m = this.messages.remove(id);
-		return m;
+		int idIndex = MessageIdIndex.indexOf(id);
+		if (idIndex < 0) {
+			return null;
+		}
+		this.messageStateVersion++;
+		this.sendQueueBase = null;
+		return this.messages.remove(idIndex);
 	}
 
 	/**
@@ -556,6 +694,31 @@ public abstract class MessageRouter {
 		return list;
 	}
 
+	/**
+	 * Returns the messages of the buffer sorted (or shuffled) by
+	 * {@link #sortByQueueMode(List)}. The queue is cached: it is sorted again
+	 * only when the buffer has changed, or (in random queue mode) when the
+	 * sim time (as integer) that seeds the shuffling has changed. The
+	 * returned list must not be modified.
+	 * @return The messages in the send queue order
+	 */
+	@SuppressWarnings(value = "unchecked")
+	protected List<Message> getSendQueue() {
+		if (this.sendQueueBase == null) {
+			this.sendQueueBase = new ArrayList<Message>(getMessageCollection());
+			this.sendQueue = null;
+		}
+
+		if (this.sendQueue == null || (sendQueueMode == Q_MODE_RANDOM &&
+				this.sendQueueTime != SimClock.getIntTime())) {
+			this.sendQueue = sortByQueueMode(
+					new ArrayList<Message>(this.sendQueueBase));
+			this.sendQueueTime = SimClock.getIntTime();
+		}
+
+		return this.sendQueue;
+	}
+
 	/**
 	 * Gives the order of the two given messages as defined by the current
 	 * queue mode
@@ -567,12 +730,15 @@ public abstract class MessageRouter {
 	protected int compareByQueueMode(Message m1, Message m2) {
 		switch (sendQueueMode) {
 		case Q_MODE_RANDOM:
-			/* return randomly (enough) but consistently -1, 0 or 1 */
-			int hash_diff = m1.hashCode() - m2.hashCode();
-			if (hash_diff == 0) {
+			/* return randomly (enough) but consistently -1, 0 or 1. Identity
+			 * hash codes are not used since they depend on the JVM and on
+			 * the threads that happen to compute them */
+			int hash1 = m1.getUniqueId() * HASH_MULTIPLIER;
+			int hash2 = m2.getUniqueId() * HASH_MULTIPLIER;
+			if (hash1 == hash2) {
 				return 0;
 			}
-			return (hash_diff < 0 ? -1 : 1);
+			return (hash1 < hash2 ? -1 : 1);
 		case Q_MODE_FIFO:
 			double diff = m1.getReceiveTime() - m2.getReceiveTime();
 			if (diff == 0) {
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+
+/**
+ * Epidemic message router that uses summary vectors like the original
+ * epidemic routing (Vahdat and Becker). When a connection comes up, the
+ * hosts exchange the sets of (interned) message IDs they already have and
+ * each host offers only the messages the other one doesn't have. Messages
+ * that the host gets during the contact are offered too. Compared to
+ * {@link EpidemicRouter}, which offers the whole buffer on every update,
+ * the work per update depends on the number of messages left to offer.
+ * Messages whose final recipient is the other host are offered first.
+ */
+public class SummaryVectorEpidemicRouter extends ActiveRouter {
+	/** ID indexes of the messages in the buffer */
+	private BitSet bufferVector;
+	/** ID indexes of the messages that this host won't accept again
+	 * (delivered to or dropped by an application at this host) */
+	private BitSet finishedVector;
+	/** ID indexes of the messages still to offer, by connection */
+	private Map<Connection, BitSet> offers;
+
+	/**
+	 * Constructor. Creates a new message router based on the settings in
+	 * the given Settings object.
+	 * @param s The settings object
+	 */
+	public SummaryVectorEpidemicRouter(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param r The router prototype where setting values are copied from
+	 */
+	protected SummaryVectorEpidemicRouter(SummaryVectorEpidemicRouter r) {
+		super(r);
+		this.bufferVector = new BitSet();
+		this.finishedVector = new BitSet();
+		this.offers = new HashMap<Connection, BitSet>();
+	}
+
+	/**
+	 * Returns the summary vector of this router: the ID indexes of the
+	 * messages that this router would reject as old.
+	 * @return A new summary vector
+	 */
+	public BitSet getSummaryVector() {
+		BitSet summary = (BitSet)this.bufferVector.clone();
+		summary.or(this.finishedVector);
+		return summary;
+	}
+
+	@Override
+	public void changedConnection(Connection con) {
+		super.changedConnection(con);
+
+		if (con.isUp()) {
+			BitSet offer = (BitSet)this.bufferVector.clone();
+			MessageRouter otherRouter = con.getOtherNode(getHost()).getRouter();
+			if (otherRouter instanceof SummaryVectorEpidemicRouter) {
+				offer.andNot(((SummaryVectorEpidemicRouter)otherRouter).
+						getSummaryVector());
+			} /* else: no summary vector; offer all */
+			this.offers.put(con, offer);
+		}
+		else {
+			this.offers.remove(con);
+		}
+	}
+
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		this.bufferVector.set(m.getIdIndex());
+		for (BitSet offer : this.offers.values()) {
+			offer.set(m.getIdIndex());
+		}
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			this.bufferVector.clear(m.getIdIndex());
+		}
+		return m;
+	}
+
+	@Override
+	public Message messageTransferred(String id, DTNHost from) {
+		Message m = super.messageTransferred(id, from);
+
+		if (hasMessage(m.getIdIndex())) {
+			/* no need to offer the message back to the host it came from */
+			for (Map.Entry<Connection, BitSet> e : this.offers.entrySet()) {
+				if (e.getKey().getOtherNode(getHost()) == from) {
+					e.getValue().clear(m.getIdIndex());
+				}
+			}
+		}
+		else {
+			this.finishedVector.set(m.getIdIndex());
+		}
+		return m;
+	}
+
+	@Override
+	public void update() {
+		super.update();
+		if (isTransferring() || !canStartTransfer()) {
+			return; // transferring, don't try other connections yet
+		}
+
+		for (Connection con : getConnections()) {
+			BitSet offer = this.offers.get(con);
+			if (offer != null && tryOffer(con, offer)) {
+				return; // started a transfer
+			}
+		}
+	}
+
+	/**
+	 * Tries to start a transfer of the offered messages to the other host
+	 * of a connection. Messages that the other host rejects for good (it
+	 * already has or has delivered them or their TTL has expired) are removed
+	 * from the offer. Messages denied by the other host's policy stay in the
+	 * offer since the denial may be temporary (e.g., the immunity time of
+	 * {@link WaveRouter}).
+	 * @param con The connection
+	 * @param offer ID indexes of the messages to offer
+	 * @return true if a transfer was started
+	 */
+	private boolean tryOffer(Connection con, BitSet offer) {
+		DTNHost other = con.getOtherNode(getHost());
+		List<Message> deliverable = new ArrayList<Message>();
+		List<Message> messages = new ArrayList<Message>();
+
+		for (int i = offer.nextSetBit(0); i >= 0; i = offer.nextSetBit(i+1)) {
+			Message m = getMessage(i);
+			if (m == null) {
+				offer.clear(i); // not in the buffer anymore
+			}
+			else if (m.getTo() == other) {
+				deliverable.add(m);
+			}
+			else {
+				messages.add(m);
+			}
+		}
+
+		if (deliverable.size() == 0 && messages.size() == 0) {
+			return false;
+		}
+		sortByQueueMode(deliverable);
+		sortByQueueMode(messages);
+		deliverable.addAll(messages);
+
+		for (Message m : deliverable) {
+			int retVal = startTransfer(m, con);
+			if (retVal == RCV_OK) {
+				return true;
+			}
+			else if (retVal > 0) {
+				return false; // should try later
+			}
+			else if (retVal == DENIED_OLD || retVal == DENIED_TTL) {
+				offer.clear(m.getIdIndex()); // denied; don't offer again
+			}
+			/* other denials (e.g., no space or policy) may pass later */
+		}
+		return false;
+	}
+
+	@Override
+	protected void transferDone(Connection con) {
+		BitSet offer = this.offers.get(con);
+		if (offer != null) {
+			offer.clear(con.getMessage().getIdIndex());
+		}
+	}
+
+	@Override
+	public SummaryVectorEpidemicRouter replicate() {
+		return new SummaryVectorEpidemicRouter(this);
+	}
+}
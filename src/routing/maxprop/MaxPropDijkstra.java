@@ -4,36 +4,45 @@
  */
 package routing.maxprop;
 
-import java.util.Collection;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 
+import util.IndexedMinHeap;
+
 /**
- * Dijkstra's shortest path implementation for MaxProp Router module.
+ * <P>Dijkstra's shortest path implementation for MaxProp Router module.</P>
+ *
+ * <P>The meeting probability sets are converted to a graph of primitive
+ * arrays when costs are first requested and the searches use an indexed
+ * heap. The costs are cached per source node: a search runs only until the
+ * requested node is found and it is continued if costs to further nodes are
+ * requested later. The graph and the cached costs are kept until
+ * {@link #invalidate()} is called, which must be done whenever the
+ * probability sets change.</P>
  */
 public class MaxPropDijkstra {
 	/** Value for infinite distance  */
-	private static final Double INFINITY = Double.MAX_VALUE;
-	/** Initial size of the priority queue */
-	private static final int PQ_INIT_SIZE = 11;
-
-	/** Map of node distances from the source node */
-	private DistanceMap distancesFromStart;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<Integer> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<Integer> unvisited;
-	/** Map of previous nodes on the shortest path(s) -- only used for
-	 * debugging purposes */
-	private Map<Integer, Integer> prevNodes;
+	private static final double INFINITY = Double.MAX_VALUE;
+
 	/** Mapping of to other nodes' (whom this node has met) probability sets */
 	private Map<Integer, MeetingProbabilitySet> probs;
 
+	/** is the graph up to date with the probability sets */
+	private boolean graphValid;
+	/** graph node indexes of the node addresses */
+	private Map<Integer, Integer> indexes;
+	/** start of each node's edges in the edge arrays (and the end as the
+	 * last value) */
+	private int[] edgeStarts;
+	/** target node indexes of the edges */
+	private int[] edgeTargets;
+	/** costs of the edges */
+	private double[] edgeCosts;
+	/** (partial) searches by source node index */
+	private Map<Integer, Search> searches;
+
 	/**
 	 * Constructor.
 	 * @param probs A reference to the mapping of the known hosts meeting
@@ -41,22 +50,17 @@ public class MaxPropDijkstra {
 	 */
 	public MaxPropDijkstra(Map<Integer, MeetingProbabilitySet> probs) {
 		this.probs = probs;
+		this.searches = new HashMap<Integer, Search>();
+		this.graphValid = false;
 	}
 
 	/**
-	 * Initializes a new search with the first hop router node
-	 * @param firstHop The first hop router node
+	 * Discards the graph and the cached costs. Must be called when the
+	 * probability sets (or the mapping of them) change.
 	 */
-	private void initWith(Integer firstHop) {
-		this.unvisited = new PriorityQueue<Integer>(PQ_INIT_SIZE,
-				new DistanceComparator());
-		this.visited = new HashSet<Integer>();
-		this.prevNodes = new HashMap<Integer, Integer>();
-		this.distancesFromStart = new DistanceMap();
-
-		// set distance to source 0 and initialize unvisited queue
-		this.distancesFromStart.put(firstHop, 0);
-		this.unvisited.add(firstHop);
+	public void invalidate() {
+		this.graphValid = false;
+		this.searches.clear();
 	}
 
 	/**
@@ -65,160 +69,163 @@ public class MaxPropDijkstra {
 	 * come up as the next contact of the nodes.
 	 * @param from The index (address) of the start node
 	 * @param to The address set of destination nodes
-	 * @return A map of (destination node, cost) tuples
+	 * @return A map of (destination node, cost) tuples. Nodes that can't be
+	 * reached are not included.
 	 */
 	public Map<Integer, Double> getCosts(Integer from, Set<Integer> to) {
 		Map<Integer, Double> distMap = new HashMap<Integer, Double>();
-		int nrofNodesToFind = to.size();
-
-		initWith(from);
-		Integer node = null;
-
-		// always take the node with shortest distance
-		while ((node = unvisited.poll()) != null) {
-			if (to.contains(node)) {
-				// found one of the requested nodes
-				distMap.put(node, distancesFromStart.get(node));
-				nrofNodesToFind--;
-				if (nrofNodesToFind == 0) {
-					break; // all requested nodes found
-				}
+		for (Integer node : to) {
+			double cost = getCost(from, node);
+			if (cost != INFINITY) {
+				distMap.put(node, cost);
 			}
-
-			visited.add(node); // mark the node as visited
-			relax(node);       // add/update neighbor nodes' distances
 		}
-
 		return distMap;
 	}
 
 	/**
-	 * Relaxes the neighbors of a node (updates the shortest distances).
-	 * @param node The node whose neighbors are relaxed
+	 * Returns the total cost from a node to another node
+	 * @param from The index (address) of the start node
+	 * @param to The index (address) of the destination node
+	 * @return The cost of the cheapest path or Double.MAX_VALUE if no path
+	 * is known
 	 */
-	private void relax(Integer node) {
-		double nodeDist = distancesFromStart.get(node);
-		Collection<Integer> neighbors;
+	public double getCost(int from, int to) {
+		if (from == to) {
+			return 0;
+		}
+		if (!graphValid) {
+			buildGraph();
+		}
 
-		if (!this.probs.containsKey(node)) {
-			return; // node's neighbors are not known
+		Integer fromIndex = indexes.get(from);
+		Integer toIndex = indexes.get(to);
+		if (fromIndex == null || toIndex == null) {
+			return INFINITY;
 		}
 
-		neighbors =	this.probs.get(node).getAllProbs().keySet();
+		Search search = searches.get(fromIndex);
+		if (search == null) {
+			search = new Search(fromIndex);
+			searches.put(fromIndex, search);
+		}
+		return search.find(toIndex);
+	}
 
-		for (Integer n : neighbors) {
-			if (visited.contains(n)) {
-				continue; // skip visited nodes
+	/**
+	 * Builds the graph arrays from the probability sets. The cost of an edge
+	 * from node a to node b is the complement of the probability that the
+	 * next node a meets is b.
+	 */
+	private void buildGraph() {
+		this.indexes = new HashMap<Integer, Integer>();
+		int nrofEdges = 0;
+		for (Map.Entry<Integer, MeetingProbabilitySet> e : probs.entrySet()) {
+			getIndex(e.getKey());
+			for (Integer n : e.getValue().getAllProbs().keySet()) {
+				getIndex(n);
+				nrofEdges++;
 			}
+		}
 
-			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
+		int nrofNodes = indexes.size();
+		this.edgeStarts = new int[nrofNodes + 1];
+		this.edgeTargets = new int[nrofEdges];
+		this.edgeCosts = new double[nrofEdges];
 
-			if (distancesFromStart.get(n) > nDist) {
-				// stored distance > found dist -> update
-				prevNodes.put(n, node); // for debugging
-				setDistance(n, nDist);
+		/* count the edges of each node and then fill them in place */
+		for (Map.Entry<Integer, MeetingProbabilitySet> e : probs.entrySet()) {
+			edgeStarts[indexes.get(e.getKey()) + 1] =
+				e.getValue().getAllProbs().size();
+		}
+		for (int i = 0; i < nrofNodes; i++) {
+			edgeStarts[i + 1] += edgeStarts[i];
+		}
+		for (Map.Entry<Integer, MeetingProbabilitySet> e : probs.entrySet()) {
+			int edge = edgeStarts[indexes.get(e.getKey())];
+			for (Map.Entry<Integer, Double> p :
+					e.getValue().getAllProbs().entrySet()) {
+				edgeTargets[edge] = indexes.get(p.getKey());
+				edgeCosts[edge] = 1 - p.getValue();
+				edge++;
 			}
 		}
-	}
 
-	/**
-	 * Sets the distance from source node to a node
-	 * @param n The node whose distance is set
-	 * @param distance The distance of the node from the source node
-	 */
-	private void setDistance(Integer n, double distance) {
-		unvisited.remove(n); // remove node from old place in the queue
-		distancesFromStart.put(n, distance); // update distance
-		unvisited.add(n); // insert node to the new place in the queue
+		this.searches.clear();
+		this.graphValid = true;
 	}
 
 	/**
-	 * Returns the "distance" between two nodes, i.e., the complement of the
-	 * probability that the next node "from" meets is "to". Works only if there
-	 * exist a probability value for "from" meeting "to".
-	 * @param from The first node
-	 * @param to The second node
-	 * @return The distance between the two nodes
+	 * Returns the graph index of a node, assigning a new index if the node
+	 * doesn't have one yet
 	 */
-	private double getDistance(Integer from, Integer to) {
-		assert probs.containsKey(from) : "Node " + from + " has not met " + to +
-			" (it has met nodes " + probs.keySet() + ")";
-		return ( 1 - probs.get(from).getProbFor(to) );
-	}
-
-	/**
-	 * Comparator that compares two nodes by their distance from
-	 * the source node.
-	 */
-	private class DistanceComparator implements
-		Comparator<Integer> {
-
-		/**
-		 * Compares two map nodes by their distance from the source node
-		 * @return -1, 0 or 1 if node1's distance is smaller, equal to, or
-		 * bigger than node2's distance
-		 */
-		public int compare(Integer node1, Integer node2) {
-			double dist1 = distancesFromStart.get(node1);
-			double dist2 = distancesFromStart.get(node2);
-
-			if (dist1 > dist2) {
-				return 1;
-			}
-			else if (dist1 < dist2) {
-				return -1;
-			}
-			else {
-				return node1.compareTo(node2);
-			}
+	private int getIndex(Integer address) {
+		Integer index = indexes.get(address);
+		if (index == null) {
+			index = indexes.size();
+			indexes.put(address, index);
 		}
+		return index;
 	}
 
 	/**
-	 * Simple Map implementation for storing distances.
+	 * State of a search from one source node. Nodes whose shortest distance
+	 * is known are settled; the rest are found by continuing the search.
 	 */
-	private class DistanceMap {
-		private HashMap<Integer, Double> map;
+	private class Search {
+		private double[] distances;
+		private boolean[] settled;
+		private IndexedMinHeap unvisited;
 
 		/**
-		 * Constructor. Creates an empty distance map
+		 * Starts a new search
+		 * @param source Index of the source node
 		 */
-		public DistanceMap() {
-			this.map = new HashMap<Integer, Double>();
+		public Search(int source) {
+			int nrofNodes = edgeStarts.length - 1;
+			this.distances = new double[nrofNodes];
+			this.settled = new boolean[nrofNodes];
+			this.unvisited = new IndexedMinHeap(nrofNodes);
+			Arrays.fill(distances, INFINITY);
+			distances[source] = 0;
+			unvisited.put(source, 0);
 		}
 
 		/**
-		 * Returns the distance to a node. If no distance value
-		 * is found, returns {@link MaxPropDijkstra#INFINITY} as the value.
-		 * @param node The node whose distance is requested
-		 * @return The distance to that node
+		 * Continues the search until the given node is settled or all
+		 * reachable nodes have been visited
+		 * @param target Index of the node to find
+		 * @return Distance to the node or {@link MaxPropDijkstra#INFINITY}
+		 * if the node can't be reached
 		 */
-		public double get(Integer node) {
-			Double value = map.get(node);
-			if (value != null) {
-				return value;
-			}
-			else {
-				return INFINITY;
+		public double find(int target) {
+			while (!settled[target] && !unvisited.isEmpty()) {
+				int node = unvisited.poll();
+				settled[node] = true;
+				relax(node);
 			}
+			return distances[target];
 		}
 
 		/**
-		 * Puts a new distance value for a map node
-		 * @param node The node
-		 * @param distance Distance to that node
+		 * Relaxes the neighbors of a node (updates the shortest distances).
+		 * @param node The node whose neighbors are relaxed
 		 */
-		public void  put(Integer node, double distance) {
-			map.put(node, distance);
-		}
+		private void relax(int node) {
+			double nodeDist = distances[node];
+			for (int e = edgeStarts[node], end = edgeStarts[node + 1];
+					e < end; e++) {
+				int n = edgeTargets[e];
+				if (settled[n]) {
+					continue; // skip visited nodes
+				}
 
-		/**
-		 * Returns a string representation of the map's contents
-		 * @return a string representation of the map's contents
-		 */
-		public String toString() {
-			return map.toString();
+				double nDist = nodeDist + edgeCosts[e];
+				if (distances[n] > nDist) {
+					distances[n] = nDist;
+					unvisited.put(n, nDist);
+				}
+			}
 		}
 	}
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Comparator;
+
+import core.Message;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * <P>Order in which messages are dropped from a full message buffer. The
+ * policy is a comparator of messages; the first message in the order is
+ * dropped first. The order of two messages must not change while they are
+ * in the buffer, so that the buffer can keep the messages sorted (see
+ * {@link MessageBuffer}).</P>
+ *
+ * <P>The policy is selected with the setting {@link #DROP_POLICY_S} of
+ * the host group's namespace (e.g., <CODE>Group.dropPolicy = LARGEST</CODE>).
+ * The value is one of the built-in policies
+ * ({@value #STR_OLDEST}, {@value #STR_EXPIRING} or {@value #STR_LARGEST}) or
+ * the name of a DropPolicy class that has a constructor without any
+ * parameters.</P>
+ */
+public abstract class DropPolicy implements Comparator<Message> {
+	/** Drop policy -setting id ({@value}). Default = {@value #STR_OLDEST} */
+	public static final String DROP_POLICY_S = "dropPolicy";
+	/** Setting string for dropping the oldest (by receive time) messages
+	 * first */
+	public static final String STR_OLDEST = "OLDEST";
+	/** Setting string for dropping the messages whose TTL expires first */
+	public static final String STR_EXPIRING = "EXPIRING";
+	/** Setting string for dropping the largest messages first */
+	public static final String STR_LARGEST = "LARGEST";
+
+	/**
+	 * Returns the drop policy defined in the settings
+	 * @param s The settings where the {@link #DROP_POLICY_S} setting is read
+	 * @return The policy or an {@link OldestFirst} policy if no policy is
+	 * defined
+	 */
+	public static DropPolicy getPolicy(Settings s) {
+		if (!s.contains(DROP_POLICY_S)) {
+			return new OldestFirst();
+		}
+
+		String name = s.getSetting(DROP_POLICY_S).trim();
+		if (name.equalsIgnoreCase(STR_OLDEST)) {
+			return new OldestFirst();
+		} else if (name.equalsIgnoreCase(STR_EXPIRING)) {
+			return new ExpiringFirst();
+		} else if (name.equalsIgnoreCase(STR_LARGEST)) {
+			return new LargestFirst();
+		}
+
+		Object policy = s.createObject(name);
+		if (!(policy instanceof DropPolicy)) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(DROP_POLICY_S) + ": " + name +
+					" is not a DropPolicy");
+		}
+		return (DropPolicy)policy;
+	}
+
+	/**
+	 * Drops the messages in the order they were received (oldest first).
+	 */
+	public static class OldestFirst extends DropPolicy {
+		public int compare(Message m1, Message m2) {
+			return Double.compare(m1.getReceiveTime(), m2.getReceiveTime());
+		}
+	}
+
+	/**
+	 * Drops the messages in the order their TTLs expire (messages with an
+	 * infinite TTL last).
+	 */
+	public static class ExpiringFirst extends DropPolicy {
+		public int compare(Message m1, Message m2) {
+			return Double.compare(m1.getExpiryTime(), m2.getExpiryTime());
+		}
+	}
+
+	/**
+	 * Drops the messages in the order of their size (largest first).
+	 */
+	public static class LargestFirst extends DropPolicy {
+		public int compare(Message m1, Message m2) {
+			return m2.getSize() - m1.getSize();
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+import util.LongHashMap;
+import core.Message;
+
+/**
+ * Message buffer of a router. In addition to the messages by their (interned)
+ * IDs (see {@link Message#getIdIndex()}), the
+ * buffer keeps the total size of the messages, the messages sorted in
+ * the order of a drop policy, and the messages with a finite TTL sorted by
+ * their expiry time, so that the free space, the next message to drop and
+ * the expired messages are found without going through all the messages.
+ */
+public class MessageBuffer {
+	private LongHashMap<Message> messages;
+	/** the messages in the drop order */
+	private TreeSet<Message> dropOrder;
+	/** the messages with a finite TTL in the order they expire */
+	private TreeSet<Message> expiryOrder;
+	/** total size of the messages */
+	private long occupancy;
+
+	/**
+	 * Constructor.
+	 * @param policy The policy that defines the order in which messages
+	 * are dropped
+	 */
+	public MessageBuffer(final DropPolicy policy) {
+		this.messages = new LongHashMap<Message>();
+		this.occupancy = 0;
+		/* messages that the policy doesn't order are ordered by their IDs
+		 * (that are unique in the buffer) */
+		this.dropOrder = new TreeSet<Message>(new Comparator<Message>() {
+			public int compare(Message m1, Message m2) {
+				int c = policy.compare(m1, m2);
+				return c != 0 ? c : m1.getId().compareTo(m2.getId());
+			}
+		});
+		this.expiryOrder = new TreeSet<Message>(new Comparator<Message>() {
+			public int compare(Message m1, Message m2) {
+				int c = Double.compare(m1.getExpiryTime(), m2.getExpiryTime());
+				return c != 0 ? c : m1.getIdIndex() - m2.getIdIndex();
+			}
+		});
+	}
+
+	/**
+	 * Adds a message to the buffer. A message with the same ID is replaced.
+	 * @param m The message to add
+	 */
+	public void add(Message m) {
+		Message old = messages.put(m.getIdIndex(), m);
+		if (old != null) {
+			dropOrder.remove(old);
+			expiryOrder.remove(old);
+			occupancy -= old.getSize();
+		}
+		dropOrder.add(m);
+		if (m.getExpiryTime() != Double.MAX_VALUE) {
+			expiryOrder.add(m);
+		}
+		occupancy += m.getSize();
+	}
+
+	/**
+	 * Removes a message from the buffer
+	 * @param id Index of the ID of the message to remove
+	 * @return The removed message or null if there was no message with
+	 * the ID
+	 */
+	public Message remove(int id) {
+		Message m = messages.remove(id);
+		if (m != null) {
+			dropOrder.remove(m);
+			expiryOrder.remove(m);
+			occupancy -= m.getSize();
+		}
+		return m;
+	}
+
+	/**
+	 * Returns a message by ID
+	 * @param id Index of the ID of the message
+	 * @return The message or null if there's no message with the ID
+	 */
+	public Message get(int id) {
+		return messages.get(id);
+	}
+
+	/**
+	 * Returns true if the buffer has a message with the ID
+	 * @param id Index of the ID of the message
+	 * @return true if the buffer has a message with the ID
+	 */
+	public boolean contains(int id) {
+		return messages.containsKey(id);
+	}
+
+	/**
+	 * Returns the messages of the buffer. The returned collection is a view
+	 * of the buffer; it must not be modified and it changes when messages
+	 * are added or removed.
+	 * @return The messages
+	 */
+	public Collection<Message> getMessages() {
+		return messages.values();
+	}
+
+	/**
+	 * Returns the messages in the order they should be dropped. The returned
+	 * collection is a view of the buffer like {@link #getMessages()}.
+	 * @return The messages in the drop order
+	 */
+	public Collection<Message> getMessagesInDropOrder() {
+		return dropOrder;
+	}
+
+	/**
+	 * Returns the messages that have a finite TTL in the order their TTLs
+	 * expire. The returned collection is a view of the buffer like
+	 * {@link #getMessages()}.
+	 * @return The messages in the expiry order
+	 */
+	public Collection<Message> getMessagesInExpiryOrder() {
+		return expiryOrder;
+	}
+
+	/**
+	 * Returns the number of messages in the buffer
+	 * @return The number of messages in the buffer
+	 */
+	public int size() {
+		return messages.size();
+	}
+
+	/**
+	 * Returns the total size of the messages in the buffer
+	 * @return The total size of the messages (bytes)
+	 */
+	public long getOccupancy() {
+		return occupancy;
+	}
+}
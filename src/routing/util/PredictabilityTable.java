@@ -0,0 +1,204 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Arrays;
+
+import core.SimClock;
+
+/**
+ * <P>Delivery predictability table for the PRoPHET routers. The
+ * predictabilities are stored in primitive arrays of an open addressing hash
+ * table that is keyed by the host addresses, so no objects are created when
+ * the predictabilities are read or updated.</P>
+ *
+ * <P>The predictabilities are aged lazily: every entry stores the (sim)time
+ * when it was last aged, and when the entry is read, it is first aged by
+ * <CODE>P = P_old * (GAMMA ^ k)</CODE>, where k is the number of time units
+ * elapsed since that time. Hence there's no need to age the whole table
+ * whenever time advances.</P>
+ *
+ * <P>Entries can be iterated over by their slot indexes:</P>
+ * <PRE>
+ * for (int i = t.nextSlot(0); i >= 0; i = t.nextSlot(i + 1)) {
+ *     int address = t.getAddressAt(i);
+ *     double p = t.getValueAt(i);
+ * }
+ * </PRE>
+ */
+public class PredictabilityTable {
+	/** marker of an empty slot */
+	private static final int EMPTY = -1;
+	/** initial capacity (must be a power of two) */
+	private static final int INIT_CAPACITY = 16;
+
+	/** host addresses of the slots */
+	private int[] addresses;
+	/** predictabilities of the slots */
+	private double[] values;
+	/** (sim)times when the predictabilities were last aged */
+	private double[] times;
+	/** number of entries */
+	private int size;
+	/** (sim)time when any of the entries was last aged or set */
+	private double lastAgeTime;
+
+	private double gamma;
+	private double secondsInTimeUnit;
+
+	/**
+	 * Constructor.
+	 * @param gamma The aging constant
+	 * @param secondsInTimeUnit How many seconds one time unit is when
+	 * calculating the aging
+	 */
+	public PredictabilityTable(double gamma, double secondsInTimeUnit) {
+		this.gamma = gamma;
+		this.secondsInTimeUnit = secondsInTimeUnit;
+		this.addresses = new int[INIT_CAPACITY];
+		this.values = new double[INIT_CAPACITY];
+		this.times = new double[INIT_CAPACITY];
+		Arrays.fill(addresses, EMPTY);
+		this.size = 0;
+	}
+
+	/**
+	 * Sets the aging constant. All the entries are first aged with the old
+	 * value up to the time when the table was last read or updated, so the
+	 * new value only applies to the time after that (like it would if the
+	 * whole table was aged on every read).
+	 * @param gamma The new aging constant
+	 */
+	public void setGamma(double gamma) {
+		if (gamma != this.gamma) {
+			for (int i = nextSlot(0); i >= 0; i = nextSlot(i + 1)) {
+				ageTo(i, lastAgeTime);
+			}
+		}
+		this.gamma = gamma;
+	}
+
+	/**
+	 * Returns the current predictability for a host
+	 * @param address Address of the host
+	 * @return The current (aged) predictability or 0 if there's no entry
+	 * for the host
+	 */
+	public double get(int address) {
+		int slot = findSlot(address);
+		return addresses[slot] == EMPTY ? 0 : getValueAt(slot);
+	}
+
+	/**
+	 * Sets the current predictability for a host
+	 * @param address Address of the host
+	 * @param value The new predictability
+	 */
+	public void put(int address, double value) {
+		int slot = findSlot(address);
+		if (addresses[slot] == EMPTY) {
+			if (2 * (size + 1) > addresses.length) {
+				grow();
+				slot = findSlot(address);
+			}
+			addresses[slot] = address;
+			size++;
+		}
+		values[slot] = value;
+		this.lastAgeTime = SimClock.getTime();
+		times[slot] = lastAgeTime;
+	}
+
+	/**
+	 * Returns the number of hosts in the table
+	 * @return The number of hosts in the table
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the index of the first used slot at or after the given index
+	 * @param slot The index to start from
+	 * @return Index of the next used slot or -1 if there are no more entries
+	 */
+	public int nextSlot(int slot) {
+		for (int i = slot; i < addresses.length; i++) {
+			if (addresses[i] != EMPTY) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the host address of a used slot
+	 * @param slot Index of the slot
+	 * @return The host address
+	 */
+	public int getAddressAt(int slot) {
+		return addresses[slot];
+	}
+
+	/**
+	 * Returns the current predictability of a used slot (aging it first)
+	 * @param slot Index of the slot
+	 * @return The current predictability
+	 */
+	public double getValueAt(int slot) {
+		this.lastAgeTime = SimClock.getTime();
+		ageTo(slot, lastAgeTime);
+		return values[slot];
+	}
+
+	/**
+	 * Ages the predictability of a used slot to the given time
+	 */
+	private void ageTo(int slot, double time) {
+		double timeDiff = (time - times[slot]) / secondsInTimeUnit;
+		if (timeDiff != 0) {
+			values[slot] *= Math.pow(gamma, timeDiff);
+			times[slot] = time;
+		}
+	}
+
+	/**
+	 * Returns the slot of the address or the empty slot where it should
+	 * be added
+	 */
+	private int findSlot(int address) {
+		int mask = addresses.length - 1;
+		int hash = address * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (addresses[slot] != EMPTY && addresses[slot] != address) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the capacity of the table
+	 */
+	private void grow() {
+		int[] oldAddresses = addresses;
+		double[] oldValues = values;
+		double[] oldTimes = times;
+		int capacity = oldAddresses.length * 2;
+
+		this.addresses = new int[capacity];
+		this.values = new double[capacity];
+		this.times = new double[capacity];
+		Arrays.fill(addresses, EMPTY);
+
+		for (int i = 0; i < oldAddresses.length; i++) {
+			if (oldAddresses[i] != EMPTY) {
+				int slot = findSlot(oldAddresses[i]);
+				addresses[slot] = oldAddresses[i];
+				values[slot] = oldValues[i];
+				times[slot] = oldTimes[i];
+			}
+		}
+	}
+}
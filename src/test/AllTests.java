@@ -39,6 +39,7 @@ public class AllTests {
 		suite.addTestSuite(ContactTimesReportTest.class);
 		suite.addTestSuite(TotalContactTimeReportTest.class);
 		suite.addTestSuite(EpidemicRouterTest.class);
+		suite.addTestSuite(SummaryVectorEpidemicRouterTest.class);
 		suite.addTestSuite(ProphetRouterTest.class);
 		suite.addTestSuite(SettingsTest.class);
 		suite.addTestSuite(DijkstraPathFinderTest.class);
@@ -50,6 +51,15 @@ public class AllTests {
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(SpatialIndexOptimizerTest.class);
+		suite.addTestSuite(ConnectivityGridTest.class);
+		suite.addTestSuite(ContactPredictionEngineTest.class);
+		suite.addTestSuite(PredictabilityTableTest.class);
+		suite.addTestSuite(IndexedMinHeapTest.class);
+		suite.addTestSuite(MessageBufferTest.class);
+		suite.addTestSuite(LongHashMapTest.class);
+		suite.addTestSuite(IntHashSetTest.class);
+		suite.addTestSuite(SimMapTest.class);
 		//$JUnit-END$
 		return suite;
 	}
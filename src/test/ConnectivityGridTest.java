@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.World;
+
+/**
+ * Tests the connectivity grid's mode where every pair of interfaces is
+ * checked only once per update round against the default mode.
+ */
+public class ConnectivityGridTest extends TestCase {
+	private static final int NROF_HOSTS = 200;
+	private static final double RANGE = 10;
+	private static final double WORLD_SIZE = 200;
+	private static final double MAX_STEP = 4;
+	private static final int NROF_ROUNDS = 50;
+
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+	}
+
+	protected void tearDown() throws Exception {
+		setPairsOnce(false);
+		super.tearDown();
+	}
+
+	public void testPairsOnceFindsSameContacts() {
+		setPairsOnce(false);
+		List<Set<String>> contacts = runRounds();
+		setPairsOnce(true);
+		List<Set<String>> pairsOnceContacts = runRounds();
+
+		assertEquals(NROF_ROUNDS, contacts.size());
+		for (int i = 0; i < NROF_ROUNDS; i++) {
+			assertEquals("Contacts after round " + i, contacts.get(i),
+					pairsOnceContacts.get(i));
+		}
+		assertFalse(contacts.get(NROF_ROUNDS - 1).isEmpty());
+	}
+
+	private void setPairsOnce(boolean pairsOnce) {
+		TestSettings s = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		s.putSetting(ConnectivityGrid.CHECK_PAIRS_ONCE_S, "" + pairsOnce);
+		ConnectivityGrid.reset();
+	}
+
+	/**
+	 * Moves randomly placed hosts in random steps and updates their
+	 * interfaces the way the world does
+	 * @return The connected pairs of hosts (as "[index]-[index]" strings)
+	 * after every update round
+	 */
+	private List<Set<String>> runRounds() {
+		Random rng = new Random(1);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < NROF_HOSTS; i++) {
+			Coord c = new Coord(rng.nextDouble() * WORLD_SIZE,
+					rng.nextDouble() * WORLD_SIZE);
+			hosts.add(createHost(c));
+		}
+		ConnectivityOptimizer opt =
+			hosts.get(0).getInterfaces().get(0).getOptimizer();
+
+		List<Set<String>> contacts = new ArrayList<Set<String>>();
+		for (int round = 0; round < NROF_ROUNDS; round++) {
+			for (DTNHost h : hosts) {
+				Coord c = h.getLocation().clone();
+				c.translate((rng.nextDouble() - 0.5) * 2 * MAX_STEP,
+						(rng.nextDouble() - 0.5) * 2 * MAX_STEP);
+				h.setLocation(c);
+			}
+
+			opt.startUpdateRound();
+			for (DTNHost h : hosts) {
+				h.getInterfaces().get(0).update();
+			}
+			contacts.add(connectedPairs(hosts));
+		}
+		return contacts;
+	}
+
+	private DTNHost createHost(Coord location) {
+		List<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
+		interfaces.add(new SimpleBroadcastInterface(ts));
+		return new DTNHost(new ArrayList<MessageListener>(), null, "g",
+				interfaces, new ModuleCommunicationBus(),
+				new StationaryMovement(location), new PassiveRouter(ts));
+	}
+
+	private Set<String> connectedPairs(List<DTNHost> hosts) {
+		Set<String> pairs = new TreeSet<String>();
+		for (int i = 0; i < hosts.size(); i++) {
+			for (Connection c : hosts.get(i).getConnections()) {
+				int other = hosts.indexOf(c.getOtherNode(hosts.get(i)));
+				pairs.add(Math.min(i, other) + "-" + Math.max(i, other));
+			}
+		}
+		return pairs;
+	}
+}
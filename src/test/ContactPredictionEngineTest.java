@@ -0,0 +1,170 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import interfaces.DistanceCapacityInterface;
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Connection;
+import core.ConnectionListener;
+import core.ContactPredictionEngine;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the contact prediction engine.
+ */
+public class ContactPredictionEngineTest extends TestCase {
+	private static final double DELTA = 0.00001;
+
+	private DTNHost h1, h2, h3;
+	private ContactPredictionEngine engine;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), ts);
+
+		h1 = utils.createHost(new Coord(0, 0));
+		h2 = utils.createHost(new Coord(50, 0));
+		h3 = utils.createHost(new Coord(50, 5));
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		hosts.add(h1);
+		hosts.add(h2);
+		hosts.add(h3);
+		engine = new ContactPredictionEngine(hosts);
+	}
+
+	public void testInitialContacts() {
+		assertEquals(0.0, engine.nextEventsTime(), DELTA);
+		engine.nextEvent().processEvent(null);
+		assertTrue(isConnected(h2, h3));
+		assertFalse(isConnected(h1, h2));
+		assertEquals(Double.MAX_VALUE, engine.nextEventsTime());
+	}
+
+	public void testMovingHost() {
+		engine.nextEvent().processEvent(null); // h2-h3 connection
+		engine.newDestination(h1, new Coord(100, 0), 2);
+
+		/* h1 gets within 10 meters from h2 after 20 seconds (h2 is not near
+		 * the first prediction windows of h1) */
+		assertEquals(20.0, engine.nextEventsTime(), DELTA);
+		engine.nextEvent().processEvent(null);
+		assertTrue(isConnected(h1, h2));
+		assertFalse(isConnected(h1, h3));
+
+		/* and within sqrt(10^2 - 5^2) meters from h3 a bit later */
+		double t = (50 - Math.sqrt(75)) / 2;
+		assertEquals(t, engine.nextEventsTime(), DELTA);
+		engine.nextEvent().processEvent(null);
+		assertTrue(isConnected(h1, h3));
+
+		/* the contacts end in the reverse order */
+		assertEquals(50 - t, engine.nextEventsTime(), DELTA);
+		engine.nextEvent().processEvent(null);
+		assertFalse(isConnected(h1, h3));
+		assertTrue(isConnected(h1, h2));
+		assertEquals(30.0, engine.nextEventsTime(), DELTA);
+		engine.nextEvent().processEvent(null);
+		assertFalse(isConnected(h1, h2));
+
+		/* h1 stops at its destination */
+		assertEquals(Double.MAX_VALUE, engine.nextEventsTime());
+	}
+
+	public void testNewDestinationCancelsPredictions() {
+		engine.nextEvent().processEvent(null);
+		engine.newDestination(h1, new Coord(100, 0), 2);
+		assertEquals(20.0, engine.nextEventsTime(), DELTA);
+
+		/* h1 turns back at time 10 */
+		SimClock.getInstance().setTime(10);
+		h1.setLocation(new Coord(20, 0));
+		engine.newDestination(h1, new Coord(0, 0), 2);
+		assertEquals(Double.MAX_VALUE, engine.nextEventsTime());
+	}
+
+	public void testDistanceCapacityInterface() {
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.putSetting(DistanceCapacityInterface.TRANSMIT_SPEEDS_S, "10,5,1");
+		DTNHost d1 = createHost(new Coord(0, 0), ts);
+		DTNHost d2 = createHost(new Coord(5, 0), ts);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		hosts.add(d1);
+		hosts.add(d2);
+		engine = new ContactPredictionEngine(hosts);
+
+		assertEquals(0.0, engine.nextEventsTime(), DELTA);
+		engine.nextEvent().processEvent(null);
+		assertTrue(isConnected(d1, d2));
+
+		/* host updates without polling still update the connections */
+		CountingInterface ni = (CountingInterface)d1.getInterfaces().get(0);
+		int updates = ni.nrofConnectionUpdates;
+		d1.update(false);
+		d1.update(false);
+		assertEquals(updates + 2, ni.nrofConnectionUpdates);
+		assertTrue(isConnected(d1, d2));
+	}
+
+	private DTNHost createHost(Coord location, TestSettings ts) {
+		List<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
+		interfaces.add(new CountingInterface(ts));
+		return new DTNHost(new ArrayList<MessageListener>(), null, "d",
+				interfaces, new ModuleCommunicationBus(),
+				new StationaryMovement(location), new PassiveRouter(ts));
+	}
+
+	/**
+	 * Distance capacity interface that counts its connection updates
+	 */
+	private static class CountingInterface extends DistanceCapacityInterface {
+		private int nrofConnectionUpdates;
+
+		public CountingInterface(TestSettings ts) {
+			super(ts);
+		}
+
+		public CountingInterface(CountingInterface ni) {
+			super(ni);
+		}
+
+		@Override
+		public NetworkInterface replicate() {
+			return new CountingInterface(this);
+		}
+
+		@Override
+		public void updateConnections() {
+			nrofConnectionUpdates++;
+			super.updateConnections();
+		}
+	}
+
+	private boolean isConnected(DTNHost a, DTNHost b) {
+		for (Connection c : a.getConnections()) {
+			if (c.getOtherNode(a) == b) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -3,6 +3,7 @@ package test;
 
 import core.Coord;
 import core.DTNHost;
+import core.HostPositions;
 import core.MessageListener;
 import core.MovementListener;
 import core.NetworkInterface;
@@ -67,6 +68,33 @@ public class DTNHostTest extends TestCase {
     assertFalse("Radio reported as active.", host.isRadioActive());
   }
 
+  /**
+   * Tests that the location of a host is a view to the position store that
+   * follows the host until the location is replaced.
+   */
+  @Test
+  public void testLocationView() {
+    final TestUtils utils = new TestUtils(null, null, new TestSettings());
+    final DTNHost h1 = utils.createHost(new Coord(1, 2));
+    final DTNHost h2 = utils.createHost(new Coord(4, 6));
+    assertEquals(5.0,
+        HostPositions.distance(h1.getAddress(), h2.getAddress()));
+
+    final Coord view = h1.getLocation();
+    final Coord copy = view.clone();
+    view.translate(3, 0);
+    assertEquals(new Coord(4, 2), h1.getLocation());
+    assertEquals(4.0,
+        HostPositions.distance(h1.getAddress(), h2.getAddress()));
+    assertEquals(new Coord(1, 2), copy);
+
+    h1.setLocation(new Coord(10, 10));
+    assertEquals(new Coord(4, 2), view);
+    assertEquals(10.0, HostPositions.getX(h1.getAddress()));
+    view.translate(1, 1);
+    assertEquals(new Coord(10, 10), h1.getLocation());
+  }
+
   private static MovementModel makeMovementModel() {
     return new MovementModel() {
       @Override
@@ -4,11 +4,15 @@
  */
 package test;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import junit.framework.TestCase;
 import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
+import movement.map.ShortestPathTrees;
+import movement.map.SimMap;
 import core.Coord;
 
 public class DijkstraPathFinderTest extends TestCase {
@@ -86,5 +90,75 @@ public class DijkstraPathFinderTest extends TestCase {
 		return path;
 	}
 
+	/**
+	 * Tests that the paths found from the shortest path trees of a map are
+	 * the same as the ones found by searching (also when there are many
+	 * shortest paths, e.g., from n1 to n5)
+	 */
+	public void testMapPathFinding() {
+		new TestSettings();
+		MapNode[] nodes = {n1, n2, n3, n4, n5, n6, n7, n8};
+		Map<Coord, MapNode> cmMap = new HashMap<Coord, MapNode>();
+		for (MapNode n : nodes) {
+			cmMap.put(n.getLocation(), n);
+		}
+		SimMap map = new SimMap(cmMap);
+
+		/* paths of type 2 nodes can't go through n6 */
+		for (MapNode n : nodes) {
+			n.addType(n == n6 ? 1 : 2);
+		}
+		int[] okTypes = {2};
+		for (int[] types : new int[][] {null, okTypes}) {
+			DijkstraPathFinder search = new DijkstraPathFinder(types);
+			DijkstraPathFinder trees = new DijkstraPathFinder(map, types);
+			for (MapNode from : nodes) {
+				if (types != null && from == n6) {
+					continue;
+				}
+				for (MapNode to : nodes) {
+					assertEquals(search.getShortestPath(from, to),
+							trees.getShortestPath(from, to));
+				}
+			}
+		}
+
+		r = new DijkstraPathFinder(map, null);
+		checkPath(getPath(n1,n5), n1, n2, n5);
+		checkPath(getPath(n4,n8), n4, n5, n6, n7, n8);
+		/* nodes that are not on the map are searched */
+		MapNode n9 = newNode(30, 10);
+		n8.addNeighbor(n9);
+		checkPath(getPath(n7,n9), n7, n8, n9);
+		r = new DijkstraPathFinder(map, okTypes);
+		checkPath(getPath(n4,n8), n4, n1, n2, n3, n7, n8);
+	}
+
+	public void testPathCacheCounters() {
+		new TestSettings();
+		MapNode[] nodes = {n1, n2, n3, n4, n5, n6, n7, n8};
+		Map<Coord, MapNode> cmMap = new HashMap<Coord, MapNode>();
+		for (MapNode n : nodes) {
+			cmMap.put(n.getLocation(), n);
+		}
+		SimMap map = new SimMap(cmMap);
+		ShortestPathTrees service = ShortestPathTrees.getService(map, null);
+		assertSame(service, ShortestPathTrees.getService(map, null));
+		assertTrue(ShortestPathTrees.getServices().contains(service));
+
+		r = new DijkstraPathFinder(map, null);
+		getPath(n1, n5);
+		assertEquals(0, service.getNrofHits());
+		assertEquals(1, service.getNrofMisses());
+		/* the same tree answers all paths from the same node */
+		getPath(n1, n5);
+		getPath(n1, n8);
+		assertEquals(2, service.getNrofHits());
+		assertEquals(1, service.getNrofMisses());
+		getPath(n5, n1);
+		assertEquals(2, service.getNrofMisses());
+		assertEquals(2, service.getNrofTrees());
+	}
+
 
 }
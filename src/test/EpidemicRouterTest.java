@@ -499,6 +499,51 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 
+	/**
+	 * Tests that a message is sent again after the other host, which had
+	 * the message already, has dropped it
+	 */
+	public void testResendAfterPeerDrop() {
+		h1.createNewMessage(new Message(h1, h3, msgId1, 1));
+		checkCreates(1);
+		h1.connect(h2);
+		updateAllNodes();
+		checkTransferStart(h1, h2, msgId1);
+		clock.advance(1);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+
+		clock.advance(1);
+		updateAllNodes(); // h2 has the message; nothing to send
+		assertFalse(mc.next());
+
+		h2.deleteMessage(msgId1, true);
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		clock.advance(1);
+		updateAllNodes();
+		checkTransferStart(h1, h2, msgId1);
+	}
+
+	public void testTtlExpiryTime() {
+		Message m1 = new Message(h1,h3, msgId1, 1);
+		h1.createNewMessage(m1);
+		checkCreates(1);
+
+		clock.advance(TTL*60 - 1);
+		updateAllNodes();
+		assertFalse(mc.next()); // one second left
+
+		clock.advance(1);
+		updateAllNodes(); // removed exactly when the TTL expires
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(h1, mc.getLastFrom());
+		assertTrue(mc.getLastDropped());
+		assertFalse(mc.next());
+	}
+
 	public void testResponse() {
 		Message m1 = new Message(h1,h3, msgId1, 1);
 		m1.setResponseSize(1);
@@ -5,12 +5,16 @@
 package test;
 
 import input.BinaryEventsReader;
+import input.CompactEventsReader;
+import input.ConnectionEvent;
 import input.ExternalEvent;
 import input.ExternalEventsQueue;
 import input.ExternalEventsReader;
 import input.MessageCreateEvent;
 import input.StandardEventsReader;
 
+import core.SimError;
+
 import java.io.File;
 import java.io.PrintWriter;
 import java.util.List;
@@ -63,6 +67,29 @@ public class ExternalEventsQueueTest extends TestCase {
 		preload = 1;
 		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(),preload);
 		checkEeq(eeq, preload);
+
+		preload = 3;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload,
+				false);
+		checkEeq(eeq, preload);
+	}
+
+	public void testPrefetchError() throws Exception {
+		File invalidFile = File.createTempFile("eeqInvalidTest", ".tmp");
+		PrintWriter out = new PrintWriter(invalidFile);
+		out.println("1.0	C	M1	p1	p2	100");
+		out.println("2.0	S	M1	p1");
+		out.close();
+
+		eeq = new ExternalEventsQueue(invalidFile.getAbsolutePath(), 1);
+		assertEquals(1.0, eeq.nextEventsTime());
+		try {
+			eeq.nextEvent(); // reaches the invalid line
+			fail("Invalid event line didn't cause an error");
+		} catch (SimError e) {
+			// expected
+		}
+		assertTrue(invalidFile.delete());
 	}
 
 
@@ -82,6 +109,57 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 
+	public void testCompactEEQ() throws Exception{
+		int preload = 4;
+		File tmpFile = File.createTempFile("TempCompactTest",
+				CompactEventsReader.COMPACT_EXT);
+		String fileName = tmpFile.getAbsolutePath();
+		ExternalEventsReader r = new StandardEventsReader(tempFile);
+		assertEquals(msgTimes.length,
+				CompactEventsReader.storeToCompactFile(fileName, r));
+		r.close();
+
+		ExternalEventsReader cr = new CompactEventsReader(tmpFile);
+		List<ExternalEvent> events = cr.readEvents(100);
+		cr.close();
+		r = new StandardEventsReader(tempFile);
+		List<ExternalEvent> stdEvents = r.readEvents(100);
+		r.close();
+		assertEquals(stdEvents.size(), events.size());
+		for (int i=0; i < events.size(); i++) {
+			assertEquals(stdEvents.get(i).toString(),
+					events.get(i).toString());
+		}
+
+		eeq = new ExternalEventsQueue(fileName, preload);
+		checkEeq(eeq, preload);
+
+		assertTrue(tmpFile.delete());
+	}
+
+	public void testCompactConnectionEvents() throws Exception {
+		File txtFile = File.createTempFile("TempConnTest", ".txt");
+		PrintWriter out = new PrintWriter(txtFile);
+		out.println("1.5 CONN 1 2 up");
+		out.println("2.5 CONN n2 n1 down btInterface");
+		out.close();
+		File tmpFile = File.createTempFile("TempConnTest",
+				CompactEventsReader.COMPACT_EXT);
+		ExternalEventsReader r = new StandardEventsReader(txtFile);
+		CompactEventsReader.storeToCompactFile(tmpFile.getAbsolutePath(), r);
+		r.close();
+
+		eeq = new ExternalEventsQueue(tmpFile.getAbsolutePath(), 1);
+		ConnectionEvent ce = (ConnectionEvent)eeq.nextEvent();
+		assertEquals("CONN up @1.5 1<->2", ce.toString());
+		ce = (ConnectionEvent)eeq.nextEvent();
+		assertEquals("CONN down @2.5 2<->1", ce.toString());
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+
+		assertTrue(tmpFile.delete());
+		assertTrue(txtFile.delete());
+	}
+
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
 		assertEquals(msgTimes[0],eeq.nextEventsTime());
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.IndexedMinHeap;
+
+/**
+ * Tests for the indexed binary heap
+ */
+public class IndexedMinHeapTest extends TestCase {
+	private static final int NROF_ITEMS = 500;
+
+	public void testOrder() {
+		Random rng = new Random(1);
+		IndexedMinHeap heap = new IndexedMinHeap(NROF_ITEMS);
+		double[] keys = new double[NROF_ITEMS];
+
+		for (int i = 0; i < NROF_ITEMS; i++) {
+			keys[i] = rng.nextInt(100);
+			heap.put(i, keys[i]);
+		}
+		/* change some keys both up and down */
+		for (int i = 0; i < NROF_ITEMS; i += 3) {
+			keys[i] = rng.nextInt(100);
+			heap.put(i, keys[i]);
+		}
+
+		double lastKey = -1;
+		int lastItem = -1;
+		for (int i = 0; i < NROF_ITEMS; i++) {
+			assertFalse(heap.isEmpty());
+			double key = heap.peekKey();
+			int item = heap.poll();
+			assertFalse(heap.contains(item));
+			assertEquals(keys[item], key);
+			assertTrue(key > lastKey || (key == lastKey && item > lastItem));
+			lastKey = key;
+			lastItem = item;
+		}
+		assertTrue(heap.isEmpty());
+	}
+
+	public void testClear() {
+		IndexedMinHeap heap = new IndexedMinHeap(10);
+		heap.put(3, 1.0);
+		heap.put(5, 0.5);
+		heap.clear();
+		assertTrue(heap.isEmpty());
+		assertFalse(heap.contains(3));
+
+		heap.put(3, 2.0);
+		assertEquals(3, heap.poll());
+	}
+}
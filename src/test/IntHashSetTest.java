@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import util.IntHashSet;
+
+/**
+ * Tests for the primitive int set
+ */
+public class IntHashSetTest extends TestCase {
+	private static final int NROF_OPERATIONS = 5000;
+
+	public void testAgainstHashSet() {
+		Random rng = new Random(1);
+		IntHashSet set = new IntHashSet();
+		Set<Integer> reference = new HashSet<Integer>();
+
+		for (int i = 0; i < NROF_OPERATIONS; i++) {
+			/* small value range (with big values too) so that values
+			 * collide, get added again and removed */
+			int value = rng.nextInt(300) + (rng.nextBoolean() ? 0 : 1 << 30);
+			if (rng.nextInt(3) == 0) {
+				assertEquals(reference.remove(value), set.remove(value));
+			} else {
+				assertEquals(reference.add(value), set.add(value));
+			}
+			assertEquals(reference.size(), set.size());
+		}
+
+		for (int value = 0; value < 300; value++) {
+			assertEquals(reference.contains(value), set.contains(value));
+			assertEquals(reference.contains(value + (1 << 30)),
+					set.contains(value + (1 << 30)));
+		}
+	}
+
+	public void testEmpty() {
+		IntHashSet set = new IntHashSet();
+		assertEquals(0, set.size());
+		assertFalse(set.contains(0));
+		assertFalse(set.remove(0));
+		assertTrue(set.add(0));
+		assertTrue(set.contains(0));
+		assertFalse(set.add(0));
+		assertEquals(1, set.size());
+	}
+}
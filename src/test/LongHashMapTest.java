@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.LongHashMap;
+
+/**
+ * Tests for the primitive key hash map
+ */
+public class LongHashMapTest extends TestCase {
+	private static final int NROF_OPERATIONS = 5000;
+
+	public void testAgainstHashMap() {
+		Random rng = new Random(1);
+		LongHashMap<Integer> map = new LongHashMap<Integer>();
+		Map<Long, Integer> reference = new HashMap<Long, Integer>();
+
+		for (int i = 0; i < NROF_OPERATIONS; i++) {
+			/* small key range (with big keys too) so that keys collide,
+			 * get replaced and removed */
+			long key = rng.nextInt(300) + (rng.nextBoolean() ? 0 : 1L << 40);
+			if (rng.nextInt(3) == 0) {
+				assertEquals(reference.remove(key), map.remove(key));
+			} else {
+				assertEquals(reference.put(key, i), map.put(key, i));
+			}
+			assertEquals(reference.size(), map.size());
+		}
+
+		for (Map.Entry<Long, Integer> e : reference.entrySet()) {
+			assertTrue(map.containsKey(e.getKey()));
+			assertEquals(e.getValue(), map.get(e.getKey()));
+		}
+		int nrofValues = 0;
+		for (Integer value : map.values()) {
+			assertTrue(reference.containsValue(value));
+			nrofValues++;
+		}
+		assertEquals(reference.size(), nrofValues);
+	}
+
+	public void testNullValue() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		map.put(5, null);
+		assertTrue(map.containsKey(5));
+		assertNull(map.get(5));
+		assertFalse(map.containsKey(6));
+		assertEquals(1, map.size());
+	}
+
+	public void testModificationDuringIteration() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		map.put(1, "a");
+		map.put(2, "b");
+		Iterator<String> i = map.values().iterator();
+		i.next();
+		map.put(3, "c");
+		try {
+			i.next();
+			fail("Modification during iteration not detected");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+}
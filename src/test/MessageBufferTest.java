@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+import routing.util.DropPolicy;
+import routing.util.MessageBuffer;
+import core.DTNHost;
+import core.Message;
+import core.MessageIdIndex;
+import core.SimClock;
+
+/**
+ * Tests for the message buffer of the routers and the drop policies
+ */
+public class MessageBufferTest extends TestCase {
+	private TestUtils utils;
+	private DTNHost h1;
+	private DTNHost h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		utils = new TestUtils(null, null, new TestSettings());
+		h1 = utils.createHost();
+		h2 = utils.createHost();
+	}
+
+	private Message newMessage(String id, int size, double time, int ttl) {
+		SimClock.getInstance().setTime(time);
+		Message m = new Message(h1, h2, id, size);
+		m.setTtl(ttl);
+		return m;
+	}
+
+	public void testOccupancy() {
+		MessageBuffer buffer = new MessageBuffer(new DropPolicy.OldestFirst());
+		buffer.add(newMessage("M1", 100, 0, 10));
+		buffer.add(newMessage("M2", 50, 1, 10));
+		assertEquals(150, buffer.getOccupancy());
+		assertEquals(2, buffer.size());
+
+		buffer.add(newMessage("M1", 20, 2, 10)); // replaces old M1
+		assertEquals(70, buffer.getOccupancy());
+		assertEquals(2, buffer.size());
+		assertEquals(20, buffer.get(MessageIdIndex.indexOf("M1")).getSize());
+
+		assertEquals("M2", buffer.remove(MessageIdIndex.indexOf("M2")).getId());
+		assertNull(buffer.remove(MessageIdIndex.indexOf("M2")));
+		assertEquals(20, buffer.getOccupancy());
+		assertFalse(buffer.contains(MessageIdIndex.indexOf("M2")));
+		assertEquals(1, buffer.getMessagesInDropOrder().size());
+	}
+
+	public void testOldestFirst() {
+		MessageBuffer buffer = new MessageBuffer(new DropPolicy.OldestFirst());
+		buffer.add(newMessage("M1", 10, 5, 10));
+		buffer.add(newMessage("M2", 10, 1, 10));
+		buffer.add(newMessage("M3", 10, 3, 10));
+		buffer.add(newMessage("M0", 10, 3, 10)); // tie is ordered by id
+		assertDropOrder(buffer, "M2", "M0", "M3", "M1");
+	}
+
+	public void testExpiringFirst() {
+		MessageBuffer buffer = new MessageBuffer(
+				new DropPolicy.ExpiringFirst());
+		buffer.add(newMessage("M1", 10, 0, 30));
+		buffer.add(newMessage("M2", 10, 0, Message.INFINITE_TTL));
+		buffer.add(newMessage("M3", 10, 0, 20));
+		buffer.add(newMessage("M4", 10, 15 * 60, 10));
+		assertDropOrder(buffer, "M3", "M4", "M1", "M2");
+	}
+
+	public void testLargestFirst() {
+		MessageBuffer buffer = new MessageBuffer(
+				new DropPolicy.LargestFirst());
+		buffer.add(newMessage("M1", 10, 0, 10));
+		buffer.add(newMessage("M2", 30, 1, 10));
+		buffer.add(newMessage("M3", 20, 2, 10));
+		assertDropOrder(buffer, "M2", "M3", "M1");
+
+		buffer.remove(MessageIdIndex.indexOf("M2"));
+		assertDropOrder(buffer, "M3", "M1");
+	}
+
+	public void testExpiryOrder() {
+		MessageBuffer buffer = new MessageBuffer(new DropPolicy.OldestFirst());
+		buffer.add(newMessage("M1", 10, 0, 30));
+		buffer.add(newMessage("M2", 10, 0, Message.INFINITE_TTL));
+		buffer.add(newMessage("M3", 10, 0, 20));
+		buffer.add(newMessage("M4", 10, 15 * 60, 10));
+
+		/* messages with an infinite TTL never expire */
+		Iterator<Message> i = buffer.getMessagesInExpiryOrder().iterator();
+		assertEquals("M3", i.next().getId());
+		assertEquals("M4", i.next().getId());
+		assertEquals("M1", i.next().getId());
+		assertFalse(i.hasNext());
+
+		buffer.remove(MessageIdIndex.indexOf("M4"));
+		assertEquals(2, buffer.getMessagesInExpiryOrder().size());
+	}
+
+	private void assertDropOrder(MessageBuffer buffer, String... ids) {
+		Iterator<Message> i = buffer.getMessagesInDropOrder().iterator();
+		for (String id : ids) {
+			assertEquals(id, i.next().getId());
+		}
+		assertFalse(i.hasNext());
+	}
+}
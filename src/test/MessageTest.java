@@ -4,13 +4,19 @@
  */
 package test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import core.ConnectionListener;
 import core.DTNHost;
 import core.Message;
+import core.MessageListener;
+import core.NetworkInterface;
 import core.SimClock;
 
 public class MessageTest extends TestCase {
@@ -60,5 +66,43 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testReplicate() {
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), ts);
+		DTNHost h1 = utils.createHost();
+		DTNHost h2 = utils.createHost();
+		DTNHost h3 = utils.createHost();
+
+		Message m1 = new Message(h1, h3, "R", 100);
+		m1.addProperty("foo", "value1");
+		m1.addNodeOnPath(h2);
+		Message m2 = m1.replicate();
+		m2.addNodeOnPath(h3);
+		m2.updateProperty("foo", "value2");
+		m1.addProperty("bar", "value3");
+
+		/* the replicates' paths and properties are independent */
+		assertEquals(1, m1.getHopCount());
+		assertEquals(2, m2.getHopCount());
+		assertFalse(m1.isOnPath(h3));
+		assertTrue(m2.isOnPath(h3));
+		assertEquals("value1", m1.getProperty("foo"));
+		assertEquals("value2", m2.getProperty("foo"));
+		assertNull(m2.getProperty("bar"));
+
+		List<DTNHost> hops = m2.getHops();
+		assertEquals(3, hops.size());
+		assertEquals(h1, hops.get(0));
+		assertEquals(h2, hops.get(1));
+		assertEquals(h3, hops.get(2));
+		hops.remove(0);
+		assertEquals(3, m2.getHops().size());
+	}
+
 
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import routing.util.PredictabilityTable;
+import core.SimClock;
+
+/**
+ * Tests for the delivery predictability table of the PRoPHET routers
+ */
+public class PredictabilityTableTest extends TestCase {
+	private static final double GAMMA = 0.98;
+	private static final double SECONDS_IN_UNIT = 30;
+	private PredictabilityTable table;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		table = new PredictabilityTable(GAMMA, SECONDS_IN_UNIT);
+	}
+
+	public void testPutAndGet() {
+		Map<Integer, Double> expected = new HashMap<Integer, Double>();
+		for (int i = 0; i < 1000; i++) {
+			int address = (i * 7919) % 5000;
+			table.put(address, 1.0 / (i + 1));
+			expected.put(address, 1.0 / (i + 1));
+		}
+
+		assertEquals(expected.size(), table.size());
+		for (Map.Entry<Integer, Double> e : expected.entrySet()) {
+			assertEquals(e.getValue(), table.get(e.getKey()));
+		}
+		assertEquals(0.0, table.get(5001));
+
+		int nrofSlots = 0;
+		for (int i = table.nextSlot(0); i >= 0; i = table.nextSlot(i + 1)) {
+			int address = table.getAddressAt(i);
+			assertEquals(expected.get(address), table.getValueAt(i));
+			nrofSlots++;
+		}
+		assertEquals(expected.size(), nrofSlots);
+	}
+
+	public void testLazyAging() {
+		table.put(1, 0.5);
+		table.put(2, 0.5);
+
+		SimClock.getInstance().advance(SECONDS_IN_UNIT * 2);
+		double p1 = 0.5 * Math.pow(GAMMA, 2);
+		assertEquals(p1, table.get(1));
+
+		SimClock.getInstance().advance(SECONDS_IN_UNIT);
+		assertEquals(p1 * GAMMA, table.get(1));
+		/* entry 2 is aged for all the elapsed time when it's first read */
+		assertEquals(0.5 * Math.pow(GAMMA, 3), table.get(2), 1e-15);
+
+		table.put(2, 0.9);
+		assertEquals(0.9, table.get(2));
+	}
+
+	public void testGammaChange() {
+		final double newGamma = 0.5;
+		table.put(1, 0.5);
+		table.put(2, 0.5);
+
+		SimClock.getInstance().advance(SECONDS_IN_UNIT * 2);
+		double p1 = 0.5 * Math.pow(GAMMA, 2);
+		assertEquals(p1, table.get(1));
+
+		/* the time before the last read is aged with the old gamma, also for
+		 * the entry that wasn't read */
+		table.setGamma(newGamma);
+		SimClock.getInstance().advance(SECONDS_IN_UNIT);
+		assertEquals(p1 * newGamma, table.get(1));
+		assertEquals(p1 * newGamma, table.get(2), 1e-15);
+
+		/* time after the last read is aged with the gamma that is set when
+		 * the table is read next */
+		SimClock.getInstance().advance(SECONDS_IN_UNIT);
+		table.setGamma(GAMMA);
+		SimClock.getInstance().advance(SECONDS_IN_UNIT);
+		assertEquals(p1 * newGamma * GAMMA * GAMMA, table.get(2), 1e-15);
+	}
+}
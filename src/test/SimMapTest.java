@@ -0,0 +1,228 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import input.WKTMapReader;
+import junit.framework.TestCase;
+import movement.map.MapGraph;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import movement.map.SimMapCache;
+import core.Coord;
+
+/**
+ * Tests for the node lookups, the graph and the cache files of SimMap
+ */
+public class SimMapTest extends TestCase {
+	private static final int NROF_NODES = 500;
+	private static final int NROF_QUERIES = 2000;
+
+	private SimMap map;
+	private Random rng;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		rng = new Random(1);
+		Map<Coord, MapNode> nodes = new HashMap<Coord, MapNode>();
+		for (int i = 0; i < NROF_NODES; i++) {
+			/* integer coordinates so that some nodes are equally close */
+			Coord c = new Coord(rng.nextInt(400), rng.nextInt(100));
+			nodes.put(c, new MapNode(c));
+		}
+		map = new SimMap(nodes);
+	}
+
+	public void testClosestNode() {
+		for (int i = 0; i < NROF_QUERIES; i++) {
+			/* points inside and outside the map area */
+			Coord c = new Coord(rng.nextInt(600) - 100, rng.nextInt(300) - 100);
+			assertSame(closest(c), map.getClosestNode(c));
+		}
+		for (MapNode n : map.getNodes()) {
+			assertSame(n, map.getClosestNode(n.getLocation()));
+		}
+	}
+
+	public void testNodesWithin() {
+		for (int i = 0; i < NROF_QUERIES / 10; i++) {
+			Coord c = new Coord(rng.nextInt(600) - 100, rng.nextInt(300) - 100);
+			double radius = rng.nextInt(60);
+			List<MapNode> expected = new ArrayList<MapNode>();
+			for (MapNode n : map.getNodes()) {
+				if (n.getLocation().distance(c) <= radius) {
+					expected.add(n);
+				}
+			}
+			assertEquals(expected, map.getNodesWithin(c, radius));
+		}
+	}
+
+	public void testGraph() {
+		List<MapNode> nodes = map.getNodes();
+		for (int i = 0; i < nodes.size(); i++) {
+			/* connect each node to a few random nodes */
+			for (int j = 0; j < 3; j++) {
+				nodes.get(i).addNeighbor(nodes.get(rng.nextInt(nodes.size())));
+			}
+		}
+		MapNode outside = new MapNode(new Coord(-1, -1));
+		nodes.get(0).addNeighbor(outside);
+
+		MapGraph graph = map.getGraph();
+		assertEquals(nodes.size(), graph.getNrofNodes());
+		assertEquals(-1, graph.getId(outside));
+		for (int id = 0; id < graph.getNrofNodes(); id++) {
+			MapNode n = graph.getNode(id);
+			assertSame(nodes.get(id), n);
+			assertEquals(id, graph.getId(n));
+			assertEquals(n.getLocation().getX(), graph.getX(id));
+			assertEquals(n.getLocation().getY(), graph.getY(id));
+
+			List<MapNode> neighbors = new ArrayList<MapNode>();
+			for (int k = 0; k < graph.getNrofNeighbors(id); k++) {
+				neighbors.add(graph.getNode(graph.getNeighbor(id, k)));
+			}
+			List<MapNode> expected = new ArrayList<MapNode>(n.getNeighbors());
+			expected.remove(outside);
+			assertEquals(expected, neighbors);
+		}
+
+		nodes.get(1).addType(2);
+		assertTrue(graph.isType(1, MapGraph.toTypeMask(new int[] {1, 2})));
+		assertFalse(graph.isType(1, MapGraph.toTypeMask(new int[] {1})));
+		assertFalse(graph.isType(0, MapGraph.toTypeMask(new int[] {2})));
+
+		assertSame(graph, map.getGraph());
+		map.translate(10, 10);
+		assertNotSame(graph, map.getGraph());
+		assertEquals(graph.getX(0) + 10, map.getGraph().getX(0));
+	}
+
+	public void testLookupsAfterTranslate() {
+		MapNode n = map.getNodes().get(0);
+		Coord c = n.getLocation().clone();
+		assertSame(n, map.getNodeByCoord(c));
+		assertSame(n, map.getClosestNode(c));
+
+		map.translate(1000, 500);
+		c.translate(1000, 500);
+		assertSame(n, map.getNodeByCoord(c));
+		assertSame(n, map.getNodeByCoord(c));
+		assertSame(n, map.getClosestNode(c));
+		assertSame(closest(new Coord(0, 0)), map.getClosestNode(new Coord(0, 0)));
+	}
+
+	public void testCache() throws IOException {
+		File dir = File.createTempFile("mapcache", "");
+		dir.delete();
+		File mapFile = new File(dir, "map.wkt");
+		dir.mkdirs();
+		writeFile(mapFile, "LINESTRING (1.5 1.0, 2.0 1.0, 3.0 1.0)\n" +
+				"LINESTRING (1.5 1.0, 1.0 2.25, 2.0 1.0)\n");
+		List<String> files = new ArrayList<String>();
+		files.add(mapFile.getPath());
+		files.add(mapFile.getPath());
+
+		try {
+			WKTMapReader r = new WKTMapReader(true);
+			r.addPaths(mapFile, 1);
+			r.addPaths(mapFile, 2);
+			SimMap read = r.getMap();
+			read.mirror();
+			read.translate(-read.getMinBound().getX(),
+					-read.getMinBound().getY());
+
+			SimMapCache cache = new SimMapCache(dir, files);
+			assertNull(cache.load());
+			cache.store(read);
+			SimMap loaded = new SimMapCache(dir, files).load();
+			assertNotNull(loaded);
+
+			assertEquals(read.getNodes().toString(),
+					loaded.getNodes().toString());
+			for (int i = 0; i < read.getNodes().size(); i++) {
+				MapNode n = loaded.getNodes().get(i);
+				assertEquals(read.getNodes().get(i).getNeighbors().toString(),
+						n.getNeighbors().toString());
+				assertSame(n, loaded.getNodeByCoord(n.getLocation()));
+				assertTrue(n.isType(1) && n.isType(2) && !n.isType(3));
+			}
+			assertEquals(read.getOffset(), loaded.getOffset());
+			assertEquals(read.getMinBound(), loaded.getMinBound());
+			assertEquals(read.getMaxBound(), loaded.getMaxBound());
+			assertTrue(loaded.isMirrored());
+
+			/* a changed map file isn't loaded from the old cache file */
+			writeFile(mapFile, "LINESTRING (1.0 1.0, 2.0 1.0)\n");
+			assertNull(new SimMapCache(dir, files).load());
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	public void testCacheStoreFailure() throws IOException {
+		File dir = File.createTempFile("mapcache", "");
+		dir.delete();
+		dir.mkdirs();
+		List<String> files = new ArrayList<String>();
+		files.add(new File(dir, "map.wkt").getPath());
+		SimMapCache cache = new SimMapCache(dir, files);
+		/* a non-empty directory in place of the cache file can't be
+		 * replaced */
+		File blocker = new File(cache.getCacheFile(), "blocker");
+		blocker.getParentFile().mkdirs();
+		writeFile(blocker, "");
+
+		try {
+			WKTMapReader r = new WKTMapReader(true);
+			r.addPaths(new StringReader("LINESTRING (1 1, 2 1)\n"), 1);
+			cache.store(r.getMap());
+			fail("Storing to a directory should fail");
+		} catch (IOException e) {
+			// expected; no temporary files may be left behind
+			assertEquals(1, dir.listFiles().length);
+		} finally {
+			blocker.delete();
+			cache.getCacheFile().delete();
+			dir.delete();
+		}
+	}
+
+	private void writeFile(File file, String contents) throws IOException {
+		FileWriter w = new FileWriter(file);
+		w.write(contents);
+		w.close();
+	}
+
+	/**
+	 * Finds the closest node by scanning all the nodes
+	 */
+	private MapNode closest(Coord c) {
+		MapNode closest = null;
+		double minDistance = Double.POSITIVE_INFINITY;
+		for (MapNode n : map.getNodes()) {
+			double distance = n.getLocation().distance(c);
+			if (distance < minDistance) {
+				minDistance = distance;
+				closest = n;
+			}
+		}
+		return closest;
+	}
+}
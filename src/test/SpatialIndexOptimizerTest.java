@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.KdTreeOptimizer;
+import interfaces.SpatialIndexOptimizer;
+import interfaces.SweepAndPruneOptimizer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+
+/**
+ * Tests the k-d tree and sweep and prune connectivity optimizers against
+ * a brute force search.
+ */
+public class SpatialIndexOptimizerTest extends TestCase {
+	private static final int NROF_HOSTS = 300;
+	private static final double RANGE = 10;
+	private static final double WORLD_SIZE = 200;
+	private static final int NROF_ROUNDS = 5;
+
+	private List<DTNHost> hosts;
+	private Random rng;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), ts);
+
+		rng = new Random(1);
+		hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < NROF_HOSTS; i++) {
+			/* some hosts in the exact same locations */
+			Coord c = (i % 10 == 0 && i > 0) ? hosts.get(i - 1).getLocation()
+					: randomCoord();
+			hosts.add(utils.createHost(c.clone()));
+		}
+	}
+
+	private Coord randomCoord() {
+		return new Coord(rng.nextDouble() * WORLD_SIZE,
+				rng.nextDouble() * WORLD_SIZE);
+	}
+
+	public void testKdTree() {
+		checkOptimizer(new KdTreeOptimizer(null));
+	}
+
+	public void testSweepAndPrune() {
+		checkOptimizer(new SweepAndPruneOptimizer(null));
+	}
+
+	private void checkOptimizer(SpatialIndexOptimizer opt) {
+		for (DTNHost h : hosts) {
+			opt.addInterface(h.getInterfaces().get(0));
+		}
+
+		for (int round = 0; round < NROF_ROUNDS; round++) {
+			for (DTNHost h : hosts) {
+				NetworkInterface ni = h.getInterfaces().get(0);
+				opt.updateLocation(ni);
+				assertEquals(bruteForce(ni),
+						new HashSet<NetworkInterface>(opt.getNearInterfaces(ni)));
+			}
+
+			/* move some of the hosts a bit */
+			for (int i = 0; i < NROF_HOSTS; i += 3) {
+				Coord c = hosts.get(i).getLocation();
+				hosts.get(i).setLocation(new Coord(
+						Math.max(0, c.getX() + rng.nextDouble() * 20 - 10),
+						Math.max(0, c.getY() + rng.nextDouble() * 20 - 10)));
+			}
+		}
+
+		/* removed interfaces are not returned anymore */
+		NetworkInterface removed = hosts.get(1).getInterfaces().get(0);
+		opt.removeInterface(removed);
+		for (DTNHost h : hosts) {
+			NetworkInterface ni = h.getInterfaces().get(0);
+			assertFalse(opt.getNearInterfaces(ni).contains(removed));
+		}
+		assertEquals(NROF_HOSTS - 1, opt.getAllInterfaces().size());
+	}
+
+	private Set<NetworkInterface> bruteForce(NetworkInterface ni) {
+		Set<NetworkInterface> near = new HashSet<NetworkInterface>();
+		Coord c = ni.getLocation();
+		for (DTNHost h : hosts) {
+			Coord o = h.getLocation();
+			if (Math.abs(o.getX() - c.getX()) <= RANGE &&
+					Math.abs(o.getY() - c.getY()) <= RANGE) {
+				near.add(h.getInterfaces().get(0));
+			}
+		}
+		return near;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import routing.MessageRouter;
+import routing.SummaryVectorEpidemicRouter;
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+
+/**
+ * Tests for SummaryVectorEpidemicRouter
+ */
+public class SummaryVectorEpidemicRouterTest extends AbstractRouterTest {
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		setRouterProto(new SummaryVectorEpidemicRouter(ts));
+		super.setUp();
+	}
+
+	/**
+	 * Tests that connected hosts exchange only the messages the other one
+	 * doesn't have, including the ones created during the contact
+	 */
+	public void testExchange() {
+		h1.createNewMessage(new Message(h1, h5, msgId1, 1));
+		h2.createNewMessage(new Message(h2, h5, msgId2, 1));
+		checkCreates(2);
+
+		h1.connect(h2);
+		Set<String> relays = runUntilIdle();
+		assertEquals(2, relays.size());
+		assertTrue(relays.contains(msgId1 + " h1->h2"));
+		assertTrue(relays.contains(msgId2 + " h2->h1"));
+
+		h1.createNewMessage(new Message(h1, h5, msgId3, 1));
+		checkCreates(1);
+		relays = runUntilIdle();
+		assertEquals(1, relays.size());
+		assertTrue(relays.contains(msgId3 + " h1->h2"));
+
+		BitSet summary = getRouter(h1).getSummaryVector();
+		assertEquals(3, summary.cardinality());
+		assertEquals(summary, getRouter(h2).getSummaryVector());
+	}
+
+	/**
+	 * Tests that messages to the other host are offered first
+	 */
+	public void testDeliverableFirst() {
+		h1.createNewMessage(new Message(h1, h5, msgId1, 1));
+		h1.createNewMessage(new Message(h1, h2, msgId2, 1));
+		h1.createNewMessage(new Message(h1, h6, msgId3, 1));
+		checkCreates(3);
+
+		h1.connect(h2);
+		updateAllNodes();
+		checkTransferStart(h1, h2, msgId2);
+	}
+
+	/**
+	 * Tests that a message denied by the other host's policy is offered
+	 * again later
+	 */
+	public void testPolicyDenialIsNotPermanent() throws Exception {
+		setRouterProto(new PolicyRouter(ts));
+		super.setUp();
+		try {
+			PolicyRouter.deny = true;
+			h1.createNewMessage(new Message(h1, h5, msgId1, 1));
+			checkCreates(1);
+			h1.connect(h2);
+			assertEquals(0, runUntilIdle().size());
+
+			PolicyRouter.deny = false;
+			Set<String> relays = runUntilIdle();
+			assertEquals(1, relays.size());
+			assertTrue(relays.contains(msgId1 + " h1->h2"));
+		} finally {
+			PolicyRouter.deny = false;
+		}
+	}
+
+	/**
+	 * Updates the nodes until no more messages are transferred
+	 * @return The transfers as "id from->to" strings
+	 */
+	private Set<String> runUntilIdle() {
+		Set<String> relays = new HashSet<String>();
+		for (int i = 0; i < 10; i++) {
+			updateAllNodes();
+			clock.advance(1);
+		}
+		while (mc.next()) {
+			if (mc.getLastType().equals(mc.TYPE_RELAY)) {
+				relays.add(mc.getLastMsg().getId() + " " + mc.getLastFrom() +
+						"->" + mc.getLastTo());
+			}
+			else {
+				assertEquals(mc.TYPE_START, mc.getLastType());
+			}
+		}
+		return relays;
+	}
+
+	private SummaryVectorEpidemicRouter getRouter(DTNHost host) {
+		return (SummaryVectorEpidemicRouter)host.getRouter();
+	}
+
+	/** Router whose policy denies all messages while deny is true */
+	private static class PolicyRouter extends SummaryVectorEpidemicRouter {
+		private static boolean deny = false;
+
+		public PolicyRouter(Settings s) {
+			super(s);
+		}
+
+		protected PolicyRouter(PolicyRouter r) {
+			super(r);
+		}
+
+		@Override
+		protected int checkReceiving(Message m, DTNHost from) {
+			if (deny) {
+				return DENIED_POLICY;
+			}
+			return super.checkReceiving(m, from);
+		}
+
+		@Override
+		public PolicyRouter replicate() {
+			return new PolicyRouter(this);
+		}
+	}
+}
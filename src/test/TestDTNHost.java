@@ -14,6 +14,7 @@ import core.ModuleCommunicationBus;
 import core.NetworkInterface;
 import core.Settings;
 import core.SimClock;
+import core.SimProfiler;
 
 /**
  * A test stub of DTNHost for testing. All fields are public so they can be
@@ -53,6 +54,11 @@ public class TestDTNHost extends DTNHost {
 		this.lastUpdate = SimClock.getTime();
 	}
 
+	@Override
+	public void update(boolean up, SimProfiler profiler) {
+		update(up);
+	}
+
 	@Override
 	public int receiveMessage(Message m, DTNHost from) {
 		this.recvMessage = m;
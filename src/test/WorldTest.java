@@ -5,15 +5,27 @@
 package test;
 
 import input.EventQueue;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
 import core.DTNHost;
+import core.Message;
+import core.MessageListener;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
+import core.Settings;
 import core.SimClock;
+import core.SimProfiler;
 import core.UpdateListener;
 import core.World;
 
@@ -74,6 +86,208 @@ public class WorldTest extends TestCase {
 		assertNrofUpdates(nrofRounds);
 	}
 
+	public void testParallelUpdate() throws Exception {
+		TestSettings ts = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ts.putSetting(World.PARALLEL_UPDATES_S, "true");
+		ts.putSetting(World.NROF_THREADS_S, "2");
+		try {
+			setUp();
+			world.scheduleUpdate(0.25);
+			for (int i=0; i<10; i++) {
+				world.update();
+			}
+		} finally {
+			ts.putSetting(World.PARALLEL_UPDATES_S, "false");
+		}
+
+		assertEquals(1.0, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(11);
+
+		/* the pool is shut down and the later updates are serial */
+		world.close();
+		world.update();
+		assertEquals(1.0 + upInterval, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(12);
+	}
+
+	public void testParallelUpdateMatchesSerial() {
+		List<DTNHost> serial = runShuttleScenario(false);
+		List<DTNHost> parallel = runShuttleScenario(true);
+
+		assertEquals(serial.size(), parallel.size());
+		int nrofConnected = 0;
+		for (int i=0; i<serial.size(); i++) {
+			assertEquals("Location of host " + i,
+					serial.get(i).getLocation(), parallel.get(i).getLocation());
+			assertEquals("Connections of host " + i,
+					connectionsOf(serial.get(i), serial),
+					connectionsOf(parallel.get(i), parallel));
+			if (serial.get(i).getConnections().size() > 0) {
+				nrofConnected++;
+			}
+		}
+		assertTrue(nrofConnected > 0);
+	}
+
+	/**
+	 * Runs a scenario where hosts shuttle between two random locations
+	 * and four hosts come into the range of a stationary host in the same
+	 * update. The update order randomizing is on (by default).
+	 * @param parallel If true, the updates are done in parallel
+	 * @return The hosts of the scenario at the end of the run
+	 */
+	private List<DTNHost> runShuttleScenario(boolean parallel) {
+		final int nrofHosts = 200; // enough for several parallel tasks
+		final double range = 10;
+		final double size = 300;
+		SimClock.reset();
+		ConnectivityGrid.reset();
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + range);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+
+		Random rng = new Random(1);
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<nrofHosts; i++) {
+			Coord a = new Coord(rng.nextDouble() * size,
+					rng.nextDouble() * size);
+			Coord b = new Coord(rng.nextDouble() * size,
+					rng.nextDouble() * size);
+			hosts.add(createHost(new ShuttleMovement(a, b,
+					1 + rng.nextDouble() * 4), ts));
+		}
+
+		/* hosts that all get within the range of the center host after
+		 * 15 seconds (and of each other a bit later) */
+		Coord center = new Coord(size + 100, size + 100);
+		hosts.add(createHost(new StationaryMovement(center), ts));
+		double[][] dirs = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+		for (double[] d : dirs) {
+			Coord start = new Coord(center.getX() + d[0] * (range + 15),
+					center.getY() + d[1] * (range + 15));
+			hosts.add(createHost(new ShuttleMovement(start, center, 1), ts));
+		}
+
+		TestSettings ws = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ws.putSetting(World.PARALLEL_UPDATES_S, "" + parallel);
+		ws.putSetting(World.NROF_THREADS_S, "4");
+		World w;
+		try {
+			w = new World(hosts, (int)size * 2, (int)size * 2, 1.0,
+					new ArrayList<UpdateListener>(), true,
+					new ArrayList<EventQueue>());
+		} finally {
+			ws.putSetting(World.PARALLEL_UPDATES_S, "false");
+		}
+
+		try {
+			for (int i=0; i<15; i++) {
+				w.update();
+			}
+			/* the center host is connected to all the arriving hosts */
+			DTNHost centerHost = hosts.get(nrofHosts);
+			assertEquals(4, centerHost.getConnections().size());
+
+			for (int i=15; i<200; i++) {
+				w.update();
+			}
+		} finally {
+			w.close();
+		}
+		return hosts;
+	}
+
+	private DTNHost createHost(MovementModel mm, TestSettings ts) {
+		List<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
+		interfaces.add(new SimpleBroadcastInterface(ts));
+		return new DTNHost(new ArrayList<MessageListener>(), null, "s",
+				interfaces, new ModuleCommunicationBus(), mm,
+				new PassiveRouter(ts));
+	}
+
+	/**
+	 * Returns the connections of a host as a list of "[index of the other
+	 * host]:[i if the host initiated the connection, r if not]" strings
+	 */
+	private List<String> connectionsOf(DTNHost host, List<DTNHost> hosts) {
+		List<String> cons = new ArrayList<String>();
+		for (Connection c : host.getConnections()) {
+			cons.add(hosts.indexOf(c.getOtherNode(host)) + ":" +
+					(c.isInitiator(host) ? "i" : "r"));
+		}
+		return cons;
+	}
+
+	/**
+	 * Movement model that moves the host back and forth between two
+	 * locations with a constant speed
+	 */
+	private static class ShuttleMovement extends MovementModel {
+		private Coord a, b;
+		private double speed;
+
+		public ShuttleMovement(Coord a, Coord b, double speed) {
+			this.a = a;
+			this.b = b;
+			this.speed = speed;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return a.clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(speed);
+			p.addWaypoint(b.clone());
+			p.addWaypoint(a.clone());
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime();
+		}
+
+		@Override
+		public ShuttleMovement replicate() {
+			return new ShuttleMovement(a, b, speed);
+		}
+	}
+
+	public void testProfiledUpdate() {
+		SimProfiler profiler = new SimProfiler();
+		world.setProfiler(profiler);
+		world.scheduleUpdate(0.25);
+		for (int i=0; i<10; i++) {
+			world.update();
+		}
+
+		assertEquals(1.0, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(11);
+		assertEquals(10, profiler.getUpdates().getCalls());
+		assertEquals(10, profiler.getPhase(SimProfiler.MOVEMENT).getCalls());
+		assertEquals(1, profiler.getPhase(SimProfiler.EVENTS).getCalls());
+
+		long phases = 0;
+		long phaseBytes = 0;
+		for (int i=0; i<SimProfiler.NROF_PHASES; i++) {
+			phases += profiler.getPhase(i).getNanos();
+			phaseBytes += profiler.getPhase(i).getBytes();
+		}
+		assertTrue(phases <= profiler.getUpdates().getNanos());
+		assertTrue(phaseBytes <= profiler.getUpdates().getBytes());
+		assertTrue(profiler.getGcMillis() >= 0);
+		assertTrue(profiler.getPeakHeapBytes() > 0);
+	}
+
 	private void assertNrofUpdates(int nrof) {
 		for (TestDTNHost h : testHosts) {
 			assertEquals(nrof, h.nrofUpdate);
@@ -102,6 +316,64 @@ public class WorldTest extends TestCase {
 	}
 
 
+	public void testSkipIdleHosts() {
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), new TestSettings());
+		TestSettings ts = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ts.putSetting(World.SKIP_IDLE_HOSTS_S, "true");
+		try {
+			utils.setMessageRouterProto(new CountingRouter(ts));
+			DTNHost h1 = utils.createHost(new Coord(0, 0));
+			DTNHost h2 = utils.createHost(new Coord(50, 0));
+			this.world = new World(utils.getAllHosts(), worldSizeX,
+					worldSizeY, upInterval, new ArrayList<UpdateListener>(),
+					simulateConnections, eQueues);
+			CountingRouter.nrofUpdates = 0;
+
+			world.update(); // first update of both hosts
+			assertEquals(2, CountingRouter.nrofUpdates);
+			world.update(); // both idle
+			world.update();
+			assertEquals(2, CountingRouter.nrofUpdates);
+
+			h1.createNewMessage(new Message(h1, h2, "M1", 1));
+			world.update(); // new message wakes up h1
+			assertEquals(3, CountingRouter.nrofUpdates);
+			world.update();
+			assertEquals(3, CountingRouter.nrofUpdates);
+
+			world.scheduleUpdate(SimClock.getTime() + upInterval / 2);
+			world.update(); // scheduled update wakes up all
+			assertEquals(5, CountingRouter.nrofUpdates);
+		} finally {
+			ts.putSetting(World.SKIP_IDLE_HOSTS_S, "false");
+		}
+	}
+
+	/** Router that counts the updates of all its instances */
+	private static class CountingRouter extends PassiveRouter {
+		private static int nrofUpdates;
+
+		public CountingRouter(Settings s) {
+			super(s);
+		}
+
+		protected CountingRouter(CountingRouter r) {
+			super(r);
+		}
+
+		@Override
+		public void update() {
+			super.update();
+			nrofUpdates++;
+		}
+
+		@Override
+		public CountingRouter replicate() {
+			return new CountingRouter(this);
+		}
+	}
+
 	/** Dummy scenario for providing test values for the World */
 	@SuppressWarnings("serial")
 	private class TestScenario extends core.SimScenario {
@@ -132,6 +132,9 @@ public abstract class DTNSimUI {
 		for (Report r : this.reports) {
 			r.done();
 		}
+		if (this.world != null) {
+			this.world.close();
+		}
 	}
 
 	/**
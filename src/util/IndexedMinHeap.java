@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of integer items (0...capacity-1) with double keys. The
+ * position of every item in the heap is tracked, so the key of an item
+ * can be decreased in O(log n) time, as needed by e.g. Dijkstra's
+ * algorithm. Items with equal keys are ordered by the item number.
+ */
+public class IndexedMinHeap {
+	/** heap array of items */
+	private int[] heap;
+	/** position of each item in the heap or -1 if it is not in the heap */
+	private int[] positions;
+	/** keys of the items */
+	private double[] keys;
+	private int size;
+
+	/**
+	 * Constructor.
+	 * @param capacity Number of different items (items are 0...capacity-1)
+	 */
+	public IndexedMinHeap(int capacity) {
+		this.heap = new int[capacity];
+		this.positions = new int[capacity];
+		this.keys = new double[capacity];
+		Arrays.fill(positions, -1);
+		this.size = 0;
+	}
+
+	/**
+	 * Returns true if the heap is empty
+	 * @return true if the heap is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns true if the item is in the heap
+	 * @param item The item
+	 * @return true if the item is in the heap
+	 */
+	public boolean contains(int item) {
+		return positions[item] >= 0;
+	}
+
+	/**
+	 * Adds an item to the heap or, if it is in the heap already, changes its
+	 * key (to a smaller or bigger value)
+	 * @param item The item
+	 * @param key The key of the item
+	 */
+	public void put(int item, double key) {
+		int pos = positions[item];
+		if (pos < 0) {
+			pos = size++;
+			heap[pos] = item;
+			positions[item] = pos;
+			keys[item] = key;
+			siftUp(pos);
+		}
+		else {
+			double old = keys[item];
+			keys[item] = key;
+			if (key < old) {
+				siftUp(pos);
+			} else {
+				siftDown(pos);
+			}
+		}
+	}
+
+	/**
+	 * Returns the key of the first item. The heap must not be empty.
+	 * @return The smallest key of the heap
+	 */
+	public double peekKey() {
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Removes and returns the item with the smallest key. The heap must not
+	 * be empty.
+	 * @return The item with the smallest key
+	 */
+	public int poll() {
+		int first = heap[0];
+		positions[first] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		return first;
+	}
+
+	/**
+	 * Removes all items from the heap
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private boolean less(int item1, int item2) {
+		double k1 = keys[item1];
+		double k2 = keys[item2];
+		return k1 < k2 || (k1 == k2 && item1 < item2);
+	}
+
+	private void siftUp(int pos) {
+		int item = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!less(item, heap[parent])) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			positions[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = item;
+		positions[item] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int item = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && less(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!less(heap[child], item)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			positions[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = item;
+		positions[item] = pos;
+	}
+}
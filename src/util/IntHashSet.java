@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+/**
+ * Set of primitive int values. The values are stored in an open addressing
+ * table that grows with the number of values (not with the largest
+ * value, like a BitSet), so the set suits well for few values from a large
+ * range. No objects are created when the set is read or updated.
+ */
+public class IntHashSet {
+	/** initial capacity (must be a power of two) */
+	private static final int INIT_CAPACITY = 8;
+
+	private int[] values;
+	private boolean[] used;
+	private int size;
+
+	/**
+	 * Constructor.
+	 */
+	public IntHashSet() {
+		this.values = new int[INIT_CAPACITY];
+		this.used = new boolean[INIT_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns true if the set contains the value
+	 * @param value The value
+	 * @return true if the set contains the value
+	 */
+	public boolean contains(int value) {
+		return used[findSlot(value)];
+	}
+
+	/**
+	 * Adds a value to the set
+	 * @param value The value
+	 * @return true if the value was added, false if it was already in the set
+	 */
+	public boolean add(int value) {
+		int slot = findSlot(value);
+		if (used[slot]) {
+			return false;
+		}
+
+		if (2 * (size + 1) > values.length) {
+			grow();
+			slot = findSlot(value);
+		}
+		values[slot] = value;
+		used[slot] = true;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes a value from the set
+	 * @param value The value
+	 * @return true if the value was removed, false if it wasn't in the set
+	 */
+	public boolean remove(int value) {
+		int slot = findSlot(value);
+		if (!used[slot]) {
+			return false;
+		}
+		int mask = values.length - 1;
+
+		/* shift the following entries of the probe sequence backwards so
+		 * that no entry is left behind the emptied slot */
+		int empty = slot;
+		int next = (empty + 1) & mask;
+		while (used[next]) {
+			int home = hash(values[next]) & mask;
+			if (((next - home) & mask) >= ((next - empty) & mask)) {
+				values[empty] = values[next];
+				empty = next;
+			}
+			next = (next + 1) & mask;
+		}
+		used[empty] = false;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Returns the number of values in the set
+	 * @return The number of values in the set
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	private static int hash(int value) {
+		int h = value * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns the slot of the value or the empty slot where it should be
+	 * added
+	 */
+	private int findSlot(int value) {
+		int mask = values.length - 1;
+		int slot = hash(value) & mask;
+		while (used[slot] && values[slot] != value) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the capacity of the table
+	 */
+	private void grow() {
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		int capacity = oldValues.length * 2;
+
+		this.values = new int[capacity];
+		this.used = new boolean[capacity];
+
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldUsed[i]) {
+				int slot = findSlot(oldValues[i]);
+				values[slot] = oldValues[i];
+				used[slot] = true;
+			}
+		}
+	}
+}
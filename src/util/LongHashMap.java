@@ -0,0 +1,231 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map with primitive long (or int) keys. The keys are stored in an
+ * open addressing table, so no key objects are created when the map is
+ * read or updated. Null values are allowed.
+ * @param <V> Type of the values
+ */
+public class LongHashMap<V> {
+	/** initial capacity (must be a power of two) */
+	private static final int INIT_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private boolean[] used;
+	private int size;
+	/** number of structural modifications (for detecting modifications
+	 * during iteration) */
+	private int modCount;
+
+	/**
+	 * Constructor.
+	 */
+	public LongHashMap() {
+		this.keys = new long[INIT_CAPACITY];
+		this.values = new Object[INIT_CAPACITY];
+		this.used = new boolean[INIT_CAPACITY];
+		this.size = 0;
+		this.modCount = 0;
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key
+	 * @return The value or null if the map doesn't contain the key
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int slot = findSlot(key);
+		return used[slot] ? (V)values[slot] : null;
+	}
+
+	/**
+	 * Returns true if the map contains the key
+	 * @param key The key
+	 * @return true if the map contains the key
+	 */
+	public boolean containsKey(long key) {
+		return used[findSlot(key)];
+	}
+
+	/**
+	 * Sets the value of a key
+	 * @param key The key
+	 * @param value The value
+	 * @return The previous value of the key or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		int slot = findSlot(key);
+		if (used[slot]) {
+			V old = (V)values[slot];
+			values[slot] = value;
+			return old;
+		}
+
+		if (2 * (size + 1) > keys.length) {
+			grow();
+			slot = findSlot(key);
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		used[slot] = true;
+		size++;
+		modCount++;
+		return null;
+	}
+
+	/**
+	 * Removes a key from the map
+	 * @param key The key
+	 * @return The value of the removed key or null if there was no such key
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int slot = findSlot(key);
+		if (!used[slot]) {
+			return null;
+		}
+		V old = (V)values[slot];
+		int mask = keys.length - 1;
+
+		/* shift the following entries of the probe sequence backwards so
+		 * that no entry is left behind the emptied slot */
+		int empty = slot;
+		int next = (empty + 1) & mask;
+		while (used[next]) {
+			int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - empty) & mask)) {
+				keys[empty] = keys[next];
+				values[empty] = values[next];
+				empty = next;
+			}
+			next = (next + 1) & mask;
+		}
+		used[empty] = false;
+		values[empty] = null;
+		size--;
+		modCount++;
+		return old;
+	}
+
+	/**
+	 * Returns the number of keys in the map
+	 * @return The number of keys in the map
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns a collection view of the values. The view can't be modified
+	 * and its iterators throw ConcurrentModificationException if keys are
+	 * added or removed during the iteration.
+	 * @return The values
+	 */
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				return new ValueIterator();
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	/**
+	 * Returns the slot of the key or the empty slot where it should be added
+	 */
+	private int findSlot(long key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (used[slot] && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the capacity of the table
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		boolean[] oldUsed = used;
+		int capacity = oldKeys.length * 2;
+
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.used = new boolean[capacity];
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int slot = findSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				used[slot] = true;
+			}
+		}
+	}
+
+	/**
+	 * Iterator over the values of the used slots
+	 */
+	private class ValueIterator implements Iterator<V> {
+		private int next;
+		private int expectedModCount;
+
+		public ValueIterator() {
+			this.expectedModCount = modCount;
+			this.next = nextUsed(0);
+		}
+
+		private int nextUsed(int slot) {
+			while (slot < used.length && !used[slot]) {
+				slot++;
+			}
+			return slot;
+		}
+
+		public boolean hasNext() {
+			return next < used.length;
+		}
+
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (next >= used.length) {
+				throw new NoSuchElementException();
+			}
+			V value = (V)values[next];
+			next = nextUsed(next + 1);
+			return value;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}